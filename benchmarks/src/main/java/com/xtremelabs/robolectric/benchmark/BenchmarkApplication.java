@@ -0,0 +1,41 @@
+package com.xtremelabs.robolectric.benchmark;
+
+import android.app.Application;
+import com.xtremelabs.robolectric.R;
+import com.xtremelabs.robolectric.Robolectric;
+import com.xtremelabs.robolectric.res.ResourceLoader;
+import com.xtremelabs.robolectric.shadows.ShadowApplication;
+
+import java.io.File;
+
+/**
+ * Sets up an application the way {@link com.xtremelabs.robolectric.RobolectricTestRunner} does before each test, with
+ * the resources from Robolectric's own tests. Only used from inside the instrumenting class loader.
+ * <p/>
+ * The resources are looked for relative to the working directory, which is right when the benchmarks are run from the
+ * {@code benchmarks} directory; set {@code robolectric.benchmark.resourceDirectory} and
+ * {@code robolectric.benchmark.assetsDirectory} to run them from elsewhere.
+ */
+public class BenchmarkApplication {
+    public static final File RESOURCE_DIRECTORY =
+            new File(System.getProperty("robolectric.benchmark.resourceDirectory", "../src/test/resources/res"));
+    public static final File ASSETS_DIRECTORY =
+            new File(System.getProperty("robolectric.benchmark.assetsDirectory", "../src/test/resources/assets"));
+    public static final int SDK_VERSION = 10;
+
+    public static ResourceLoader newResourceLoader() {
+        try {
+            return new ResourceLoader(SDK_VERSION, R.class, RESOURCE_DIRECTORY, ASSETS_DIRECTORY);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void setUp() {
+        ResourceLoader resourceLoader = newResourceLoader();
+        Robolectric.bindDefaultShadowClasses();
+        resourceLoader.setLayoutQualifierSearchPath();
+        Robolectric.resetStaticState();
+        Robolectric.application = ShadowApplication.bind(new Application(), resourceLoader);
+    }
+}
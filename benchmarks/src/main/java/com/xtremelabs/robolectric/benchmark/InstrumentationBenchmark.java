@@ -0,0 +1,69 @@
+package com.xtremelabs.robolectric.benchmark;
+
+import com.xtremelabs.robolectric.bytecode.AndroidTranslator;
+import com.xtremelabs.robolectric.bytecode.ClassCache;
+import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
+import javassist.ClassPool;
+import javassist.LoaderClassPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Instruments one android class per operation with {@link AndroidTranslator#onLoad}, reading it from android.jar into
+ * a new {@link ClassPool} each time. The class cache it writes to is a temporary one, so entries already there are
+ * only skipped, as they would be after the first run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class InstrumentationBenchmark {
+    @Param({"android.view.View", "android.widget.TextView", "android.app.Activity", "android.content.Intent"})
+    public String className;
+
+    private File cacheDirectory;
+    private ClassCache classCache;
+    private ClassPool classPool;
+    private AndroidTranslator androidTranslator;
+
+    @Setup public void setUpCache() throws Exception {
+        cacheDirectory = File.createTempFile("robolectric-benchmark", "");
+        cacheDirectory.delete();
+        classCache = new ClassCache(cacheDirectory.getAbsolutePath(), AndroidTranslator.CACHE_VERSION);
+    }
+
+    @Setup(Level.Invocation) public void setUpClassPool() {
+        classPool = new ClassPool();
+        classPool.appendClassPath(new LoaderClassPath(InstrumentationBenchmark.class.getClassLoader()));
+        androidTranslator = new AndroidTranslator(ShadowWrangler.getInstance(), classCache);
+    }
+
+    @TearDown public void tearDownCache() {
+        delete(cacheDirectory);
+    }
+
+    @Benchmark public Object onLoad() throws Exception {
+        androidTranslator.onLoad(classPool, className);
+        return classPool.get(className);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
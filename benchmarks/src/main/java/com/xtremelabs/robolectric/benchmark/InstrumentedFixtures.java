@@ -0,0 +1,23 @@
+package com.xtremelabs.robolectric.benchmark;
+
+import com.xtremelabs.robolectric.bytecode.RobolectricClassLoader;
+import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
+
+/**
+ * Creates benchmark fixtures inside a {@link RobolectricClassLoader}, the way
+ * {@link com.xtremelabs.robolectric.RobolectricTestRunner} creates its delegate, so the android classes they use are
+ * instrumented and shadowed. Benchmarks only see a fixture through {@code operations}, an interface that is loaded
+ * outside the instrumenting class loader.
+ */
+class InstrumentedFixtures {
+    static <T> T create(Class<T> operations, Class<? extends T> fixtureClass) {
+        RobolectricClassLoader classLoader = new RobolectricClassLoader(ShadowWrangler.getInstance());
+        classLoader.delegateLoadingOf(operations.getName());
+        ShadowWrangler.getInstance().beforeTest();
+        try {
+            return operations.cast(classLoader.bootstrap(fixtureClass).newInstance());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
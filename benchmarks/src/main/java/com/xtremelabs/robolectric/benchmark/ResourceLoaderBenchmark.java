@@ -0,0 +1,58 @@
+package com.xtremelabs.robolectric.benchmark;
+
+import com.xtremelabs.robolectric.R;
+import com.xtremelabs.robolectric.res.ResourceLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates a {@link ResourceLoader} for Robolectric's test resources and looks up a string and a layout, as the first
+ * test run with a project's resources does. Resources are normally shared by every loader for the same R class, so
+ * that sharing is undone before each operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ResourceLoaderBenchmark {
+    public interface Operations {
+        Object loadResources();
+    }
+
+    public static class InstrumentedOperations implements Operations {
+        private final Map<?, ?> resourcesByRClass;
+
+        public InstrumentedOperations() throws Exception {
+            Field resourcesByRClassField = ResourceLoader.class.getDeclaredField("resourcesByRClass");
+            resourcesByRClassField.setAccessible(true);
+            resourcesByRClass = (Map<?, ?>) resourcesByRClassField.get(null);
+        }
+
+        @Override public Object loadResources() {
+            synchronized (resourcesByRClass) {
+                resourcesByRClass.clear();
+            }
+            ResourceLoader resourceLoader = BenchmarkApplication.newResourceLoader();
+            resourceLoader.getStringValue(R.string.hello);
+            return resourceLoader.getLayoutViewNode("layout/main");
+        }
+    }
+
+    private Operations operations;
+
+    @Setup public void setUp() {
+        operations = InstrumentedFixtures.create(Operations.class, InstrumentedOperations.class);
+    }
+
+    @Benchmark public Object loadResources() {
+        return operations.loadResources();
+    }
+}
@@ -0,0 +1,102 @@
+package com.xtremelabs.robolectric.benchmark;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import com.xtremelabs.robolectric.util.DatabaseConfig;
+import com.xtremelabs.robolectric.util.SQLiteMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inserts rows into and queries an in-memory database through {@code ShadowSQLiteDatabase}, backed by sqlite-jdbc as
+ * {@link com.xtremelabs.robolectric.RobolectricTestRunner} sets it up by default. Each iteration starts with
+ * {@value #ROW_COUNT} rows in the table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SQLiteDatabaseBenchmark {
+    static final int ROW_COUNT = 100;
+
+    public interface Operations {
+        void resetTable(int rowCount);
+
+        long insert();
+
+        int query();
+
+        void close();
+    }
+
+    public static class InstrumentedOperations implements Operations {
+        private final SQLiteDatabase database;
+        private final ContentValues values = new ContentValues();
+
+        public InstrumentedOperations() {
+            BenchmarkApplication.setUp();
+            DatabaseConfig.setDatabaseMap(new SQLiteMap());
+            database = SQLiteDatabase.openDatabase("path", null, 0);
+            database.execSQL("CREATE TABLE items (_id INTEGER PRIMARY KEY AUTOINCREMENT, name VARCHAR(255), count INTEGER)");
+            values.put("name", "item");
+            values.put("count", 42);
+        }
+
+        @Override public void resetTable(int rowCount) {
+            database.delete("items", null, null);
+            for (int i = 0; i < rowCount; i++) {
+                insert();
+            }
+        }
+
+        @Override public long insert() {
+            return database.insert("items", null, values);
+        }
+
+        @Override public int query() {
+            Cursor cursor = database.query("items", new String[] {"_id", "name", "count"}, "count = ?",
+                    new String[] {"42"}, null, null, null);
+            int total = 0;
+            while (cursor.moveToNext()) {
+                total += cursor.getInt(2);
+            }
+            cursor.close();
+            return total;
+        }
+
+        @Override public void close() {
+            database.close();
+        }
+    }
+
+    private Operations operations;
+
+    @Setup public void setUp() {
+        operations = InstrumentedFixtures.create(Operations.class, InstrumentedOperations.class);
+    }
+
+    @Setup(Level.Iteration) public void resetTable() {
+        operations.resetTable(ROW_COUNT);
+    }
+
+    @TearDown public void tearDown() {
+        operations.close();
+    }
+
+    @Benchmark public long insert() {
+        return operations.insert();
+    }
+
+    @Benchmark public int query() {
+        return operations.query();
+    }
+}
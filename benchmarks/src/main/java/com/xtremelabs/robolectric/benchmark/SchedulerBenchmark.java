@@ -0,0 +1,50 @@
+package com.xtremelabs.robolectric.benchmark;
+
+import com.xtremelabs.robolectric.util.Scheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Posts {@code count} runnables to a new {@link Scheduler} with delays in no particular order, then advances the
+ * clock past all of them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SchedulerBenchmark {
+    @Param({"10", "100", "1000"})
+    public int count;
+
+    private int runCount;
+    private final Runnable runnable = new Runnable() {
+        @Override public void run() {
+            runCount++;
+        }
+    };
+
+    @Benchmark public int postDelayedThenAdvanceBy() {
+        Scheduler scheduler = new Scheduler();
+        for (int i = 0; i < count; i++) {
+            scheduler.postDelayed(runnable, (i * 7919) % count + 1);
+        }
+        scheduler.advanceBy(count + 1);
+        return runCount;
+    }
+
+    @Benchmark public int postThenAdvanceByWhilePaused() {
+        Scheduler scheduler = new Scheduler();
+        scheduler.pause();
+        for (int i = 0; i < count; i++) {
+            scheduler.post(runnable);
+        }
+        scheduler.advanceBy(0);
+        return runCount;
+    }
+}
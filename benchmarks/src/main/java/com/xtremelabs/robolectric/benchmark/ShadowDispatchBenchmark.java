@@ -0,0 +1,83 @@
+package com.xtremelabs.robolectric.benchmark;
+
+import android.text.TextUtils;
+import android.view.View;
+import com.xtremelabs.robolectric.Robolectric;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls through instrumented android classes to their shadows, one call per operation, so the cost is that of
+ * {@link com.xtremelabs.robolectric.bytecode.ShadowWrangler} dispatching the call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ShadowDispatchBenchmark {
+    public interface Operations {
+        void instanceWithPrimitiveArgs(int padding);
+
+        void instanceWithObjectArgs(Object tag);
+
+        int staticWithPrimitiveArgs(int size);
+
+        boolean staticWithObjectArgs(CharSequence text);
+    }
+
+    public static class InstrumentedOperations implements Operations {
+        private final View view;
+
+        public InstrumentedOperations() {
+            BenchmarkApplication.setUp();
+            view = new View(Robolectric.application);
+        }
+
+        @Override public void instanceWithPrimitiveArgs(int padding) {
+            view.setPadding(padding, padding, padding, padding);
+        }
+
+        @Override public void instanceWithObjectArgs(Object tag) {
+            view.setTag(tag);
+        }
+
+        @Override public int staticWithPrimitiveArgs(int size) {
+            return View.MeasureSpec.makeMeasureSpec(size, View.MeasureSpec.EXACTLY);
+        }
+
+        @Override public boolean staticWithObjectArgs(CharSequence text) {
+            return TextUtils.isEmpty(text);
+        }
+    }
+
+    private Operations operations;
+    private int size = 42;
+    private Object tag = "tag";
+    private CharSequence text = "text";
+
+    @Setup public void setUp() {
+        operations = InstrumentedFixtures.create(Operations.class, InstrumentedOperations.class);
+    }
+
+    @Benchmark public void instanceWithPrimitiveArgs() {
+        operations.instanceWithPrimitiveArgs(size);
+    }
+
+    @Benchmark public void instanceWithObjectArgs() {
+        operations.instanceWithObjectArgs(tag);
+    }
+
+    @Benchmark public int staticWithPrimitiveArgs() {
+        return operations.staticWithPrimitiveArgs(size);
+    }
+
+    @Benchmark public boolean staticWithObjectArgs() {
+        return operations.staticWithObjectArgs(text);
+    }
+}
@@ -0,0 +1,68 @@
+package com.xtremelabs.robolectric.benchmark;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import com.xtremelabs.robolectric.R;
+import com.xtremelabs.robolectric.Robolectric;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inflates layouts from Robolectric's test resources through a {@code LayoutInflater}. Resources are loaded before the
+ * first operation, so this is the cost of {@code ViewLoader} building the views.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ViewInflationBenchmark {
+    public interface Operations {
+        void useLayout(String layoutName);
+
+        Object inflate();
+    }
+
+    public static class InstrumentedOperations implements Operations {
+        private final LayoutInflater layoutInflater;
+        private int layoutId;
+
+        public InstrumentedOperations() {
+            BenchmarkApplication.setUp();
+            layoutInflater = LayoutInflater.from(Robolectric.application);
+        }
+
+        @Override public void useLayout(String layoutName) {
+            try {
+                layoutId = R.layout.class.getField(layoutName).getInt(null);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override public View inflate() {
+            return layoutInflater.inflate(layoutId, null);
+        }
+    }
+
+    @Param({"main", "media", "text_views", "tab_activity"})
+    public String layoutName;
+
+    private Operations operations;
+
+    @Setup public void setUp() {
+        operations = InstrumentedFixtures.create(Operations.class, InstrumentedOperations.class);
+        operations.useLayout(layoutName);
+        operations.inflate();
+    }
+
+    @Benchmark public Object inflateView() {
+        return operations.inflate();
+    }
+}
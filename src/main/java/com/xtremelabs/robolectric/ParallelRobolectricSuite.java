@@ -0,0 +1,201 @@
+package com.xtremelabs.robolectric;
+
+import org.junit.runner.Description;
+import org.junit.runner.Runner;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runner.notification.StoppedByUserException;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.Suite;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.RunnerScheduler;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the test classes listed in {@link Suite.SuiteClasses} on several threads inside one JVM:
+ * <pre>
+ * &#064;RunWith(ParallelRobolectricSuite.class)
+ * &#064;SuiteClasses({ActivityTest.class, ViewTest.class})
+ * &#064;ParallelRobolectricSuite.WorkerCount(4)
+ * public class AllTests {
+ * }
+ * </pre>
+ * Each worker thread has its own {@link com.xtremelabs.robolectric.bytecode.ShadowWrangler} and
+ * {@link com.xtremelabs.robolectric.bytecode.RobolectricClassLoader}, so tests on different workers don't share an
+ * application, schedulers, database connection or shadow state. Workers share the instrumented class cache, so each
+ * one defines classes from the cache rather than rewriting them again. A test class's runner is created and run on the
+ * same worker, and its tests run one at a time in order, just as they would on their own.
+ */
+public class ParallelRobolectricSuite extends ParentRunner<Runner> {
+    /**
+     * The number of worker threads; defaults to the number of processors.
+     */
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    public @interface WorkerCount {
+        int value();
+    }
+
+    private final List<Runner> runners = new ArrayList<Runner>();
+    private final Map<Runner, ExecutorService> workersByRunner = new HashMap<Runner, ExecutorService>();
+    private final List<ExecutorService> workers = new ArrayList<ExecutorService>();
+    private final List<Future<?>> results = new ArrayList<Future<?>>();
+
+    public ParallelRobolectricSuite(Class<?> klass, final RunnerBuilder builder) throws InitializationError {
+        super(klass);
+
+        Suite.SuiteClasses suiteClasses = klass.getAnnotation(Suite.SuiteClasses.class);
+        if (suiteClasses == null) {
+            throw new InitializationError(String.format("class '%s' must have a SuiteClasses annotation", klass.getName()));
+        }
+        WorkerCount workerCount = klass.getAnnotation(WorkerCount.class);
+        int threadCount = workerCount != null ? workerCount.value() : Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < threadCount; i++) {
+            ExecutorService worker = Executors.newSingleThreadExecutor(new WorkerThreadFactory(i));
+            worker.submit(new Runnable() {
+                @Override public void run() {
+                    RobolectricTestRunner.setUpWorkerThread();
+                }
+            });
+            workers.add(worker);
+        }
+
+        try {
+            for (int i = 0; i < suiteClasses.value().length; i++) {
+                final Class<?> testClass = suiteClasses.value()[i];
+                ExecutorService worker = workers.get(i % workers.size());
+                Runner runner = worker.submit(new Callable<Runner>() {
+                    @Override public Runner call() {
+                        return builder.safeRunnerForClass(testClass);
+                    }
+                }).get();
+                runners.add(runner);
+                workersByRunner.put(runner, worker);
+            }
+        } catch (InterruptedException e) {
+            shutDownWorkers();
+            throw new InitializationError(e);
+        } catch (ExecutionException e) {
+            shutDownWorkers();
+            throw new InitializationError(e.getCause());
+        }
+
+        setScheduler(new RunnerScheduler() {
+            @Override public void schedule(Runnable childStatement) {
+                childStatement.run();
+            }
+
+            @Override public void finished() {
+                try {
+                    for (Future<?> result : results) {
+                        result.get();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException e) {
+                    throw new RuntimeException(e.getCause());
+                } finally {
+                    shutDownWorkers();
+                }
+            }
+        });
+    }
+
+    @Override protected List<Runner> getChildren() {
+        return runners;
+    }
+
+    @Override protected Description describeChild(Runner child) {
+        return child.getDescription();
+    }
+
+    @Override protected void runChild(final Runner child, final RunNotifier notifier) {
+        results.add(workersByRunner.get(child).submit(new Runnable() {
+            @Override public void run() {
+                child.run(new SynchronizedRunNotifier(notifier));
+            }
+        }));
+    }
+
+    private void shutDownWorkers() {
+        for (ExecutorService worker : workers) {
+            worker.shutdown();
+        }
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final int index;
+
+        WorkerThreadFactory(int index) {
+            this.index = index;
+        }
+
+        @Override public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "robolectric-worker-" + index);
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Listeners such as the one counting results aren't thread-safe, so events from all workers are passed on one at a
+     * time.
+     */
+    private static class SynchronizedRunNotifier extends RunNotifier {
+        private final RunNotifier notifier;
+
+        SynchronizedRunNotifier(RunNotifier notifier) {
+            this.notifier = notifier;
+        }
+
+        @Override public void fireTestStarted(Description description) throws StoppedByUserException {
+            synchronized (notifier) {
+                notifier.fireTestStarted(description);
+            }
+        }
+
+        @Override public void fireTestFailure(Failure failure) {
+            synchronized (notifier) {
+                notifier.fireTestFailure(failure);
+            }
+        }
+
+        @Override public void fireTestAssumptionFailed(Failure failure) {
+            synchronized (notifier) {
+                notifier.fireTestAssumptionFailed(failure);
+            }
+        }
+
+        @Override public void fireTestIgnored(Description description) {
+            synchronized (notifier) {
+                notifier.fireTestIgnored(description);
+            }
+        }
+
+        @Override public void fireTestFinished(Description description) {
+            synchronized (notifier) {
+                notifier.fireTestFinished(description);
+            }
+        }
+
+        @Override public void pleaseStop() {
+            notifier.pleaseStop();
+        }
+    }
+}
@@ -37,6 +37,7 @@ import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
 import com.xtremelabs.robolectric.shadows.*;
 import com.xtremelabs.robolectric.tester.org.apache.http.*;
 import com.xtremelabs.robolectric.util.Scheduler;
+import com.xtremelabs.robolectric.util.VirtualClock;
 import org.apache.http.*;
 import org.apache.http.impl.client.DefaultRequestDirector;
 
@@ -68,7 +69,7 @@ public class Robolectric {
     }
 
     public static void bindDefaultShadowClasses() {
-        bindShadowClasses(getDefaultShadowClasses());
+        RobolectricInternals.bindDefaultShadowClasses(getDefaultShadowClasses());
     }
 
     public static void bindShadowClasses(List<Class<?>> shadowClasses) {
@@ -290,8 +291,15 @@ public class Robolectric {
     }
 
     public static void resetStaticState() {
-        ShadowWrangler.getInstance().silence();
+        resetStaticStateExceptApplication();
         Robolectric.application = new Application();
+    }
+
+    /*
+     * For the test runner, which sets up the application itself straight afterwards.
+     */
+    static void resetStaticStateExceptApplication() {
+        ShadowWrangler.getInstance().silence();
         ShadowBitmapFactory.reset();
         ShadowDrawable.reset();
         ShadowMediaStore.reset();
@@ -299,6 +307,7 @@ public class Robolectric {
         ShadowContext.clearFilesAndCache();
         ShadowLooper.resetThreadLoopers();
         ShadowDialog.reset();
+        VirtualClock.reset();
     }
 
     public static <T> T directlyOn(T shadowedObject) {
@@ -838,10 +847,13 @@ public class Robolectric {
     /**
      * Runs any background tasks previously queued by {@link android.os.AsyncTask#execute(Object[])}.
      * <p/>
+     * For tests using {@link com.xtremelabs.robolectric.annotation.RealBackgroundThreads}, waits for the background
+     * work running on real threads to finish, and posts what it posted to the UI thread.
      * <p/>
      * Note: calling this method does not pause or un-pause the scheduler.
      */
     public static void runBackgroundTasks() {
+        getShadowApplication().finishBackgroundThreadTasks();
         getBackgroundScheduler().advanceBy(0);
     }
 
@@ -860,6 +872,16 @@ public class Robolectric {
         getUiThreadScheduler().advanceToLastPostedRunnable();
     }
 
+    /**
+     * Runs the tasks due within the next {@code intervalMillis} milliseconds on the UI thread, the background scheduler
+     * and any other loopers, in the order they're scheduled, advancing all of their clocks together.
+     *
+     * @see VirtualClock
+     */
+    public static boolean advanceAllSchedulersBy(long intervalMillis) {
+        return VirtualClock.advanceBy(intervalMillis);
+    }
+
     /**
      * Sets up an HTTP response to be returned by calls to Apache's {@code HttpClient} implementers.
      *
@@ -2,12 +2,16 @@ package com.xtremelabs.robolectric;
 
 import android.app.Application;
 import android.net.Uri__FromAndroid;
+import com.xtremelabs.robolectric.annotation.RealBackgroundThreads;
+import com.xtremelabs.robolectric.annotation.ReuseApplication;
 import com.xtremelabs.robolectric.bytecode.ClassHandler;
 import com.xtremelabs.robolectric.bytecode.RobolectricClassLoader;
 import com.xtremelabs.robolectric.bytecode.ShadowWrangler;
+import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
 import com.xtremelabs.robolectric.internal.RobolectricTestRunnerInterface;
 import com.xtremelabs.robolectric.res.ResourceLoader;
+import com.xtremelabs.robolectric.res.RobolectricPackageManager;
 import com.xtremelabs.robolectric.shadows.ShadowApplication;
 import com.xtremelabs.robolectric.util.DatabaseConfig;
 import com.xtremelabs.robolectric.util.DatabaseConfig.DatabaseMap;
@@ -31,8 +35,13 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Installs a {@link RobolectricClassLoader} and {@link com.xtremelabs.robolectric.res.ResourceLoader} in order to
@@ -40,25 +49,89 @@ import java.util.Map;
  */
 public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements RobolectricTestRunnerInterface {
     private static RobolectricClassLoader defaultLoader;
+    private static final ThreadLocal<RobolectricClassLoader> workerLoaders = new InheritableThreadLocal<RobolectricClassLoader>();
     private static Map<RobolectricConfig, ResourceLoader> resourceLoaderForRootAndDirectory = new HashMap<RobolectricConfig, ResourceLoader>();
+    private static final List<TestTimingListener> testTimingListeners = new CopyOnWriteArrayList<TestTimingListener>();
+
+    static {
+        final String timingReportPath = System.getProperty("robolectric.timingReport");
+        if (timingReportPath != null && !isInstrumented()) {
+            final TestTimingReport timingReport = new TestTimingReport();
+            addTestTimingListener(timingReport);
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override public void run() {
+                    try {
+                        timingReport.writeTo(new File(timingReportPath));
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        }
+    }
 
     // fields in the RobolectricTestRunner in the original ClassLoader
     private RobolectricClassLoader classLoader;
     private ClassHandler classHandler;
     private RobolectricTestRunnerInterface delegate;
+    private Method delegateSetTestTiming;
     private DatabaseMap databaseMap;
+    private long bootstrapNanos;
     
 	// fields in the RobolectricTestRunner in the instrumented ClassLoader
     protected RobolectricConfig robolectricConfig;
+    private TestTiming testTiming;
+    private Application reusedApplication;
+    private ShadowApplication.Snapshot reusedApplicationSnapshot;
 
     private static RobolectricClassLoader getDefaultLoader() {
+        RobolectricClassLoader workerLoader = workerLoaders.get();
+        if (workerLoader != null) {
+            return workerLoader;
+        }
+        synchronized (RobolectricTestRunner.class) {
+            return getSharedLoader();
+        }
+    }
+
+    private static RobolectricClassLoader getSharedLoader() {
         if (defaultLoader == null) {
             defaultLoader = new RobolectricClassLoader(ShadowWrangler.getInstance());
+            if (Boolean.valueOf(System.getProperty("robolectric.warmUp", "true"))) {
+                defaultLoader.warmUp(new Callable<Collection<String>>() {
+                    @Override public Collection<String> call() {
+                        return getShadowedClassNames(Robolectric.getDefaultShadowClasses());
+                    }
+                });
+            }
         }
         return defaultLoader;
     }
 
-    public static void setDefaultLoader(Loader robolectricClassLoader) {
+    private static List<String> getShadowedClassNames(List<Class<?>> shadowClasses) {
+        List<String> shadowedClassNames = new ArrayList<String>();
+        for (Class<?> shadowClass : shadowClasses) {
+            Implements implementsAnnotation = shadowClass.getAnnotation(Implements.class);
+            if (implementsAnnotation != null) {
+                shadowedClassNames.add(implementsAnnotation.value().getName());
+            }
+        }
+        return shadowedClassNames;
+    }
+
+    /**
+     * Gives the current thread, and threads it starts, a {@link ShadowWrangler} and {@link RobolectricClassLoader} of
+     * its own, which runners created on it use instead of the shared ones. Tests run by those runners get their own
+     * copy of every class the loader instruments, and so their own application, schedulers, database connection and
+     * other static state, and can run alongside tests on other threads.
+     *
+     * @see ParallelRobolectricSuite
+     */
+    static void setUpWorkerThread() {
+        workerLoaders.set(new RobolectricClassLoader(ShadowWrangler.newInstanceForCurrentThread()));
+    }
+
+    public static synchronized void setDefaultLoader(Loader robolectricClassLoader) {
     	//used by the RoboSpecs project to allow for mixed scala\java tests to be run with Maven Surefire (see the RoboSpecs project on github)
         if (defaultLoader == null) {
             defaultLoader = (RobolectricClassLoader)robolectricClassLoader;
@@ -74,7 +147,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
      */
     protected static void addClassOrPackageToInstrument(String classOrPackageToBeInstrumented) {
         if (!isInstrumented()) {
-            defaultLoader.addCustomShadowClass(classOrPackageToBeInstrumented);
+            getDefaultLoader().addCustomShadowClass(classOrPackageToBeInstrumented);
         }
     }
 
@@ -205,6 +278,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
         super(isInstrumented() ? testClass : classLoader.bootstrap(testClass));
                 
         if (!isInstrumented()) {
+            long start = System.nanoTime();
             this.classHandler = classHandler;
             this.classLoader = classLoader;
             this.robolectricConfig = robolectricConfig;
@@ -218,6 +292,8 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
             delegateLoadingOf(ShadowWrangler.class.getName());
             delegateLoadingOf(RobolectricConfig.class.getName());
             delegateLoadingOf(DatabaseMap.class.getName());
+            delegateLoadingOf(TestTiming.class.getName());
+            delegateLoadingOf(TestTiming.Phase.class.getName());
             delegateLoadingOf(android.R.class.getName());
 
             Class<?> delegateClass = classLoader.bootstrap(this.getClass());
@@ -226,10 +302,27 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
                 this.delegate = (RobolectricTestRunnerInterface) constructorForDelegate.newInstance(classLoader.bootstrap(testClass));
                 this.delegate.setRobolectricConfig(robolectricConfig);
                 this.delegate.setDatabaseMap(databaseMap);
+                this.delegateSetTestTiming = findSetTestTiming(delegateClass);
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
+            bootstrapNanos = System.nanoTime() - start;
+        }
+    }
+
+    /*
+     * Timing is this runner's own business rather than part of RobolectricTestRunnerInterface, so the delegate's
+     * setter is found on its copy of this class.
+     */
+    private static Method findSetTestTiming(Class<?> delegateClass) throws NoSuchMethodException {
+        for (Class<?> runnerClass = delegateClass; runnerClass != null; runnerClass = runnerClass.getSuperclass()) {
+            if (runnerClass.getName().equals(RobolectricTestRunner.class.getName())) {
+                Method setTestTiming = runnerClass.getDeclaredMethod("setTestTiming", TestTiming.class);
+                setTestTiming.setAccessible(true);
+                return setTestTiming;
+            }
         }
+        throw new NoSuchMethodException(delegateClass.getName() + " is not a " + RobolectricTestRunner.class.getName());
     }
 
     protected static boolean isInstrumented() {
@@ -270,15 +363,26 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
     @Override protected Statement methodBlock(final FrameworkMethod method) {
         setupI18nStrictState(method.getMethod(), robolectricConfig);
 
+        final TestTiming testTiming = new TestTiming(getTestClass().getName(), method.getName());
+        testTiming.addPhaseNanos(TestTiming.Phase.BOOTSTRAP, bootstrapNanos);
+        bootstrapNanos = 0;
+        final long[] countsBefore = getCounts();
+
     	if (classHandler != null) {
             classHandler.configure(robolectricConfig);
             classHandler.beforeTest();
         }
+        try {
+            delegateSetTestTiming.invoke(delegate, testTiming);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
         delegate.internalBeforeTest(method.getMethod());
 
         final Statement statement = super.methodBlock(method);
         return new Statement() {
             @Override public void evaluate() throws Throwable {
+                long start = System.nanoTime();
                 // todo: this try/finally probably isn't right -- should mimic RunAfters? [xw]
                 try {
                     statement.evaluate();
@@ -287,11 +391,45 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
                     if (classHandler != null) {
                         classHandler.afterTest();
                     }
+                    testTiming.addPhaseNanos(TestTiming.Phase.TEST, System.nanoTime() - start);
+                    testFinished(testTiming, countsBefore);
                 }
             }
         };
     }
 
+    /**
+     * Adds a listener to be told how long each test spent in each phase of its setup and in the test itself.
+     *
+     * @param listener the listener
+     */
+    public static void addTestTimingListener(TestTimingListener listener) {
+        testTimingListeners.add(listener);
+    }
+
+    public static void removeTestTimingListener(TestTimingListener listener) {
+        testTimingListeners.remove(listener);
+    }
+
+    private void testFinished(TestTiming testTiming, long[] countsBefore) {
+        if (testTimingListeners.isEmpty()) {
+            return;
+        }
+        long[] counts = getCounts();
+        testTiming.setCounts(counts[0] - countsBefore[0], counts[1] - countsBefore[1], counts[2] - countsBefore[2]);
+        for (TestTimingListener listener : testTimingListeners) {
+            listener.testFinished(testTiming);
+        }
+    }
+
+    private long[] getCounts() {
+        return new long[] {
+                classLoader.getInstrumentedClassCount(),
+                classLoader.getClassCacheHitCount(),
+                classHandler instanceof ShadowWrangler ? ((ShadowWrangler) classHandler).getDispatchCount() : 0
+        };
+    }
+
     /*
      * Called before each test method is run. Sets up the simulation of the Android runtime environment.
      */
@@ -303,12 +441,20 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
 
     @Override public void internalAfterTest(final Method method) {
         afterTest(method);
+
+        if (Robolectric.application != null) {
+            Robolectric.shadowOf(Robolectric.application).shutdownBackgroundThreadPools();
+        }
     }
 
     @Override public void setRobolectricConfig(final RobolectricConfig robolectricConfig) {
         this.robolectricConfig = robolectricConfig;
     }
 
+    private void setTestTiming(final TestTiming testTiming) {
+        this.testTiming = testTiming;
+    }
+
     /**
      * Called before each test method is run.
      *
@@ -345,18 +491,63 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner implements Rob
     }
 
     public void setupApplicationState(final RobolectricConfig robolectricConfig) {
+        long start = System.nanoTime();
         ResourceLoader resourceLoader = createResourceLoader(robolectricConfig);
+        start = recordPhase(TestTiming.Phase.CREATE_RESOURCE_LOADER, start);
 
         Robolectric.bindDefaultShadowClasses();
         bindShadowClasses();
+        start = recordPhase(TestTiming.Phase.BIND_SHADOW_CLASSES, start);
 
         resourceLoader.setLayoutQualifierSearchPath();
-        Robolectric.resetStaticState();
+        Robolectric.resetStaticStateExceptApplication();
         resetStaticState();
         
         DatabaseConfig.setDatabaseMap(this.databaseMap);//Set static DatabaseMap in DBConfig
-        
+        start = recordPhase(TestTiming.Phase.RESET_STATIC_STATE, start);
+
+        if (reusedApplication != null) {
+            Robolectric.application = restoreReusedApplication();
+            useRealBackgroundThreadsIfAnnotated();
+            recordPhase(TestTiming.Phase.CREATE_APPLICATION, start);
+            return;
+        }
+
         Robolectric.application = ShadowApplication.bind(createApplication(), resourceLoader);
+        if (getTestClass().getJavaClass().isAnnotationPresent(ReuseApplication.class)) {
+            reusedApplication = Robolectric.application;
+            reusedApplicationSnapshot = Robolectric.shadowOf(reusedApplication).snapshot();
+        }
+        useRealBackgroundThreadsIfAnnotated();
+        recordPhase(TestTiming.Phase.CREATE_APPLICATION, start);
+    }
+
+    private void useRealBackgroundThreadsIfAnnotated() {
+        RealBackgroundThreads realBackgroundThreads = getTestClass().getJavaClass().getAnnotation(RealBackgroundThreads.class);
+        if (realBackgroundThreads != null) {
+            Robolectric.shadowOf(Robolectric.application).useRealBackgroundThreads(realBackgroundThreads.value());
+        }
+    }
+
+    private long recordPhase(TestTiming.Phase phase, long start) {
+        long now = System.nanoTime();
+        if (testTiming != null) {
+            testTiming.addPhaseNanos(phase, now - start);
+        }
+        return now;
+    }
+
+    /*
+     * Puts the application created for the first test of a @ReuseApplication class back the way it was set up. The
+     * package manager is replaced rather than restored, since tests commonly add packages and intents to it.
+     */
+    private Application restoreReusedApplication() {
+        ShadowApplication shadowApplication = Robolectric.shadowOf(reusedApplication);
+        shadowApplication.restore(reusedApplicationSnapshot);
+        if (shadowApplication.getPackageManager() instanceof RobolectricPackageManager) {
+            shadowApplication.setPackageManager(new RobolectricPackageManager(reusedApplication, robolectricConfig));
+        }
+        return reusedApplication;
     }
 
     
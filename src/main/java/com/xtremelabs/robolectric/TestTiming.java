@@ -0,0 +1,88 @@
+package com.xtremelabs.robolectric;
+
+/**
+ * Where the time went while {@link RobolectricTestRunner} ran one test method, passed to each
+ * {@link TestTimingListener} once the test has finished.
+ * <p/>
+ * The bootstrap phase, setting up the runner's delegate in the instrumenting class loader, happens once per test
+ * class and is counted against its first test. The counts are of what happened during the test and its setup: classes
+ * instrumented rather than found in the class cache, classes defined from the class cache, and calls dispatched to
+ * shadows.
+ */
+public class TestTiming {
+    public enum Phase {
+        BOOTSTRAP,
+        CREATE_RESOURCE_LOADER,
+        BIND_SHADOW_CLASSES,
+        RESET_STATIC_STATE,
+        CREATE_APPLICATION,
+        TEST
+    }
+
+    private final String className;
+    private final String methodName;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private long classesInstrumented;
+    private long classCacheHits;
+    private long shadowDispatches;
+
+    public TestTiming(String className, String methodName) {
+        this.className = className;
+        this.methodName = methodName;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getMethodName() {
+        return methodName;
+    }
+
+    public void addPhaseNanos(Phase phase, long nanos) {
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    public long getTotalNanos() {
+        long totalNanos = 0;
+        for (long nanos : phaseNanos) {
+            totalNanos += nanos;
+        }
+        return totalNanos;
+    }
+
+    public long getClassesInstrumented() {
+        return classesInstrumented;
+    }
+
+    public long getClassCacheHits() {
+        return classCacheHits;
+    }
+
+    public long getShadowDispatches() {
+        return shadowDispatches;
+    }
+
+    void setCounts(long classesInstrumented, long classCacheHits, long shadowDispatches) {
+        this.classesInstrumented = classesInstrumented;
+        this.classCacheHits = classCacheHits;
+        this.shadowDispatches = shadowDispatches;
+    }
+
+    void add(TestTiming other) {
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] += other.phaseNanos[i];
+        }
+        classesInstrumented += other.classesInstrumented;
+        classCacheHits += other.classCacheHits;
+        shadowDispatches += other.shadowDispatches;
+    }
+
+    @Override public String toString() {
+        return className + "." + methodName;
+    }
+}
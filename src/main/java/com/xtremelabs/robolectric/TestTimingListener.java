@@ -0,0 +1,13 @@
+package com.xtremelabs.robolectric;
+
+/**
+ * Told how long each test run by {@link RobolectricTestRunner} spent in each phase of its setup and in the test itself.
+ *
+ * @see RobolectricTestRunner#addTestTimingListener(TestTimingListener)
+ */
+public interface TestTimingListener {
+    /**
+     * Called on the thread that ran the test, after it and its tear-down have finished.
+     */
+    void testFinished(TestTiming testTiming);
+}
@@ -0,0 +1,69 @@
+package com.xtremelabs.robolectric;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the {@link TestTiming} of every test and writes them out as CSV: a header, a row per test in the order they
+ * finished, then a {@code TOTAL} row adding them all up. Times are in microseconds.
+ * <p/>
+ * Setting the {@code robolectric.timingReport} system property to a file name writes this report to that file when the
+ * JVM exits.
+ */
+public class TestTimingReport implements TestTimingListener {
+    private final List<TestTiming> testTimings = new ArrayList<TestTiming>();
+
+    @Override public synchronized void testFinished(TestTiming testTiming) {
+        testTimings.add(testTiming);
+    }
+
+    public synchronized List<TestTiming> getTestTimings() {
+        return new ArrayList<TestTiming>(testTimings);
+    }
+
+    public synchronized TestTiming getTotal() {
+        TestTiming total = new TestTiming("TOTAL", "");
+        for (TestTiming testTiming : testTimings) {
+            total.add(testTiming);
+        }
+        return total;
+    }
+
+    public void writeTo(Writer writer) throws IOException {
+        writer.write("test");
+        for (TestTiming.Phase phase : TestTiming.Phase.values()) {
+            writer.write("," + phase.name().toLowerCase() + "_us");
+        }
+        writer.write(",total_us,classes_instrumented,class_cache_hits,shadow_dispatches\n");
+
+        for (TestTiming testTiming : getTestTimings()) {
+            writeRow(writer, testTiming.toString(), testTiming);
+        }
+        writeRow(writer, "TOTAL", getTotal());
+        writer.flush();
+    }
+
+    public void writeTo(File file) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writeTo(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeRow(Writer writer, String name, TestTiming testTiming) throws IOException {
+        writer.write(name.indexOf(',') >= 0 ? '"' + name.replace("\"", "\"\"") + '"' : name);
+        for (TestTiming.Phase phase : TestTiming.Phase.values()) {
+            writer.write("," + testTiming.getPhaseNanos(phase) / 1000);
+        }
+        writer.write("," + testTiming.getTotalNanos() / 1000
+                + "," + testTiming.getClassesInstrumented()
+                + "," + testTiming.getClassCacheHits()
+                + "," + testTiming.getShadowDispatches() + "\n");
+    }
+}
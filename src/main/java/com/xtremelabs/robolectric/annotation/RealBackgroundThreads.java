@@ -0,0 +1,24 @@
+package com.xtremelabs.robolectric.annotation;
+
+/**
+ * Indicates that the background work of a JUnit test class's tests, such as {@code AsyncTask#doInBackground} and
+ * tasks given to a {@link com.xtremelabs.robolectric.util.RobolectricBackgroundExecutorService}, should run on a pool
+ * of real threads rather than on the virtual background scheduler, so CPU-heavy work can use several cores.
+ * <p/>
+ * What the work posts to the UI thread is held until {@link com.xtremelabs.robolectric.Robolectric#runBackgroundTasks()}
+ * waits for it to finish, and is then posted to the UI thread's scheduler in the order the work was started, so tests
+ * see the same order however the threads were scheduled. That covers {@code AsyncTask} callbacks and anything posted to
+ * the main looper, through a {@code Handler}, {@code Activity#runOnUiThread} or {@code View#post}. Other calls that
+ * touch the main looper's scheduler, such as {@code Handler#removeCallbacks}, should stay on the test's thread.
+ *
+ * @see com.xtremelabs.robolectric.util.BackgroundThreadPool
+ */
+@java.lang.annotation.Documented
+@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)
+@java.lang.annotation.Target(java.lang.annotation.ElementType.TYPE)
+public @interface RealBackgroundThreads {
+    /**
+     * The number of threads; defaults to the number of processors.
+     */
+    int value() default 0;
+}
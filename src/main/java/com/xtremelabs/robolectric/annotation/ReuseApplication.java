@@ -0,0 +1,16 @@
+package com.xtremelabs.robolectric.annotation;
+
+/**
+ * Indicates that the application for a JUnit test class should be created once, before its first test method, and
+ * restored from a snapshot of that state before each of the others, rather than being created again for every method.
+ * <p/>
+ * Only use this for tests that don't depend on state kept outside the application's shadow, such as fields of a custom
+ * {@code Application} subclass or of the broadcast receivers declared in the manifest; those are not restored.
+ *
+ * @see com.xtremelabs.robolectric.shadows.ShadowApplication#snapshot()
+ */
+@java.lang.annotation.Documented
+@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)
+@java.lang.annotation.Target(java.lang.annotation.ElementType.TYPE)
+public @interface ReuseApplication {
+}
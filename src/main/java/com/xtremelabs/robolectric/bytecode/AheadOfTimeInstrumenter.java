@@ -0,0 +1,200 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Instruments every class in a set of jars (typically android.jar and maps.jar) up front and writes the results to the
+ * class cache, so test runs using the same cache directory load them without rewriting anything.
+ * <p/>
+ * Usage: {@code AheadOfTimeInstrumenter [-d <cache directory>] [-i <class or package>]... <jar>...}
+ * <p/>
+ * The cache directory defaults to the one {@link RobolectricClassLoader} uses. Classes are instrumented on one thread
+ * per core, each with its own {@link ClassPool} and {@link AndroidTranslator}.
+ */
+public class AheadOfTimeInstrumenter {
+    private static final String CLASS_FILE_SUFFIX = ".class";
+
+    private final ClassLoader classLoader;
+    private final ClassCache classCache;
+    private final List<String> customClassNames;
+    private final List<Worker> allWorkers = Collections.synchronizedList(new ArrayList<Worker>());
+    private final ThreadLocal<Worker> workers = new ThreadLocal<Worker>() {
+        @Override protected Worker initialValue() {
+            return new Worker();
+        }
+    };
+
+    /**
+     * @param classLoader      where the classes to instrument, and everything they reference, are loaded from
+     * @param classCache       where instrumented classes are written
+     * @param customClassNames additional classes or packages to instrument, as passed to {@link RobolectricClassLoader}
+     */
+    public AheadOfTimeInstrumenter(ClassLoader classLoader, ClassCache classCache, List<String> customClassNames) {
+        this.classLoader = classLoader;
+        this.classCache = classCache;
+        this.customClassNames = customClassNames;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String classCachePath = null;
+        List<String> customClassNames = new ArrayList<String>();
+        List<File> jarFiles = new ArrayList<File>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-d".equals(args[i]) && i + 1 < args.length) {
+                classCachePath = args[++i];
+            } else if ("-i".equals(args[i]) && i + 1 < args.length) {
+                customClassNames.add(args[++i]);
+            } else {
+                jarFiles.add(new File(args[i]));
+            }
+        }
+        if (jarFiles.isEmpty()) {
+            System.err.println("Usage: " + AheadOfTimeInstrumenter.class.getName()
+                    + " [-d <cache directory>] [-i <class or package>]... <jar>...");
+            System.exit(1);
+        }
+
+        URL[] jarUrls = new URL[jarFiles.size()];
+        for (int i = 0; i < jarFiles.size(); i++) {
+            jarUrls[i] = jarFiles.get(i).toURI().toURL();
+        }
+        ClassLoader classLoader = new URLClassLoader(jarUrls, AheadOfTimeInstrumenter.class.getClassLoader());
+        File classCacheDirectory = RobolectricClassLoader.getClassCacheDirectory(classCachePath);
+        ClassCache classCache = new ClassCache(classCacheDirectory.getAbsolutePath(), AndroidTranslator.CACHE_VERSION, classLoader);
+
+        List<String> classNames = new ArrayList<String>();
+        for (File jarFile : jarFiles) {
+            classNames.addAll(getClassNames(jarFile));
+        }
+
+        long startTime = System.currentTimeMillis();
+        AheadOfTimeInstrumenter instrumenter = new AheadOfTimeInstrumenter(classLoader, classCache, customClassNames);
+        List<String> failedClassNames = instrumenter.instrument(classNames, Runtime.getRuntime().availableProcessors());
+        for (String failedClassName : failedClassNames) {
+            System.out.println("Warning: couldn't instrument " + failedClassName);
+        }
+        System.out.println("Instrumented " + instrumenter.getInstrumentedClassCount() + " classes into "
+                + classCacheDirectory + " in " + (System.currentTimeMillis() - startTime) + "ms");
+    }
+
+    /**
+     * Instruments {@code classNames} on {@code threadCount} threads. Classes that don't need instrumenting are skipped.
+     *
+     * @return the names of classes that couldn't be instrumented
+     */
+    public List<String> instrument(List<String> classNames, int threadCount) throws InterruptedException {
+        ExecutorService executorService = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(classNames.size());
+            for (final String className : classNames) {
+                results.add(executorService.submit(new Callable<Boolean>() {
+                    @Override public Boolean call() {
+                        return instrument(className);
+                    }
+                }));
+            }
+
+            List<String> failedClassNames = new ArrayList<String>();
+            for (int i = 0; i < classNames.size(); i++) {
+                try {
+                    if (!results.get(i).get()) {
+                        failedClassNames.add(classNames.get(i));
+                    }
+                } catch (ExecutionException e) {
+                    failedClassNames.add(classNames.get(i));
+                }
+            }
+            return failedClassNames;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Instruments a single class on the calling thread, if it needs instrumenting.
+     *
+     * @return false if the class couldn't be instrumented
+     */
+    public boolean instrument(String className) {
+        return workers.get().instrument(className);
+    }
+
+    /**
+     * @return how many classes have been instrumented and written to the cache, not counting those skipped because
+     * they don't need instrumenting
+     */
+    public long getInstrumentedClassCount() {
+        long instrumentedClassCount = 0;
+        synchronized (allWorkers) {
+            for (Worker worker : allWorkers) {
+                instrumentedClassCount += worker.androidTranslator.getInstrumentedClassCount();
+            }
+        }
+        return instrumentedClassCount;
+    }
+
+    static List<String> getClassNames(File jarFile) throws IOException {
+        List<String> classNames = new ArrayList<String>();
+        JarFile jar = new JarFile(jarFile);
+        try {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String entryName = entries.nextElement().getName();
+                if (entryName.endsWith(CLASS_FILE_SUFFIX)) {
+                    classNames.add(entryName.substring(0, entryName.length() - CLASS_FILE_SUFFIX.length()).replace('/', '.'));
+                }
+            }
+        } finally {
+            jar.close();
+        }
+        return classNames;
+    }
+
+    private class Worker {
+        private final ClassPool classPool = new ClassPool();
+        private final AndroidTranslator androidTranslator;
+
+        Worker() {
+            classPool.appendClassPath(new LoaderClassPath(classLoader));
+            androidTranslator = new AndroidTranslator(ShadowWrangler.getInstance(), classCache, customClassNames);
+            allWorkers.add(this);
+        }
+
+        boolean instrument(String className) {
+            try {
+                androidTranslator.onLoad(classPool, className);
+                return true;
+            } catch (NotFoundException e) {
+                return false;
+            } catch (CannotCompileException e) {
+                return false;
+            } finally {
+                // nothing else in this pool needs the instrumented version, so don't hold on to it
+                CtClass ctClass = classPool.getOrNull(className);
+                if (ctClass != null) {
+                    ctClass.detach();
+                }
+            }
+        }
+    }
+}
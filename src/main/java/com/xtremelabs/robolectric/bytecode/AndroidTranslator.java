@@ -7,7 +7,11 @@ import javassist.*;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 @SuppressWarnings({"UnusedDeclaration"})
 public class AndroidTranslator implements Translator {
@@ -15,39 +19,48 @@ public class AndroidTranslator implements Translator {
      * IMPORTANT -- increment this number when the bytecode generated for modified classes changes
      * so the cache file can be invalidated.
      */
-    public static final int CACHE_VERSION = 20;
+    public static final int CACHE_VERSION = 23;
+
+    static final String PARAM_TYPES_FIELD_PREFIX = "__paramTypes__";
+    static final String NO_SHADOW_GUARD_FIELD_PREFIX = "__noShadow__";
 
     private static final List<ClassHandler> CLASS_HANDLERS = new ArrayList<ClassHandler>();
 
     private ClassHandler classHandler;
     private ClassCache classCache;
-    private static final ArrayList<String> instrumentingList = new ArrayList<String>();
+    // replaced rather than changed when custom shadow classes are added, so the loader can read it without locking
+    // while warm-up threads are defining classes
+    private volatile InstrumentationMatcher instrumentationMatcher = InstrumentationMatcher.DEFAULT;
+    private final AtomicLong instrumentedClassCount = new AtomicLong();
+
+    private CtClass paramTypesFieldsClass;
+    private Map<String, String> paramTypesFields = new HashMap<String, String>();
 
     public AndroidTranslator(ClassHandler classHandler, ClassCache classCache) {
         this.classHandler = classHandler;
         this.classCache = classCache;
-        
-        // Initialize list
-        instrumentingList.add("android.");
-        instrumentingList.add("com.google.android.maps");
-        instrumentingList.add("org.apache.http.impl.client.DefaultRequestDirector");
     }
     
     public AndroidTranslator(ClassHandler classHandler, ClassCache classCache, List<String> customShadowClassNames) {
     	this(classHandler, classCache);
-    	if ( customShadowClassNames != null && !customShadowClassNames.isEmpty() ) {
-        	instrumentingList.addAll(customShadowClassNames);    		
-    	}
+    	instrumentationMatcher = instrumentationMatcher.with(customShadowClassNames);
     }
 
-    public void addCustomShadowClass(String customShadowClassName) {
-        if (!instrumentingList.contains(customShadowClassName)) {
-            instrumentingList.add(customShadowClassName);
-        }
+    public synchronized void addCustomShadowClass(String customShadowClassName) {
+        instrumentationMatcher = instrumentationMatcher.with(Collections.singletonList(customShadowClassName));
+    }
+
+    /**
+     * @return the class or package prefixes this translator instruments, and which of them a class matches
+     */
+    public InstrumentationMatcher getInstrumentationMatcher() {
+        return instrumentationMatcher;
     }
 
     public static ClassHandler getClassHandler(int index) {
-        return CLASS_HANDLERS.get(index);
+        synchronized (CLASS_HANDLERS) {
+            return CLASS_HANDLERS.get(index);
+        }
     }
 
     @Override
@@ -72,10 +85,6 @@ public class AndroidTranslator implements Translator {
 
     @Override
     public void onLoad(ClassPool classPool, String className) throws NotFoundException, CannotCompileException {
-        if (classCache.isWriting()) {
-            throw new IllegalStateException("shouldn't be modifying bytecode after we've started writing cache! class=" + className);
-        }
-
         if (classHasFromAndroidEquivalent(className)) {
             replaceClassWithFromAndroidEquivalent(classPool, className);
             return;
@@ -88,13 +97,7 @@ public class AndroidTranslator implements Translator {
             throw new IgnorableClassNotFoundException(e);
         }
         
-        boolean wantsToBeInstrumented = ctClass.hasAnnotation(Instrument.class);
-        if (!wantsToBeInstrumented) {
-        	for (String klassName : instrumentingList) {
-        		wantsToBeInstrumented = className.startsWith(klassName);
-        		if (wantsToBeInstrumented) break;
-        	}
-        }
+        boolean wantsToBeInstrumented = instrumentationMatcher.matches(className) || ctClass.hasAnnotation(Instrument.class);
                 
         if (wantsToBeInstrumented && !ctClass.hasAnnotation(DoNotInstrument.class)) {
             int modifiers = ctClass.getModifiers();
@@ -114,9 +117,17 @@ public class AndroidTranslator implements Translator {
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
+            instrumentedClassCount.incrementAndGet();
         }
     }
 
+    /**
+     * @return how many classes this translator has instrumented
+     */
+    public long getInstrumentedClassCount() {
+        return instrumentedClassCount.get();
+    }
+
     private boolean classHasFromAndroidEquivalent(String className) {
         return className.startsWith(Uri.class.getName());
     }
@@ -365,6 +376,15 @@ public class AndroidTranslator implements Translator {
         buf.append(isStatic ? className + ".class" : "this");
         buf.append(")) {\n");
 
+        appendNoShadowGuard(buf, ctClass, ctMethod, returnType, shouldGenerateCallToSuper);
+
+        String descriptor = ctMethod.getSignature();
+        if (!shouldGenerateCallToSuper && ShadowInvoker.SPECIALIZED_DESCRIPTORS.contains(descriptor)) {
+            appendSpecializedMethodInvoked(buf, ctClass, ctMethod, descriptor, returnsVoid, isStatic);
+            buf.append("}\n");
+            return buf.toString();
+        }
+
         if (!returnsVoid) {
             buf.append("Object x = ");
         }
@@ -381,7 +401,7 @@ public class AndroidTranslator implements Translator {
         }
         buf.append(", ");
 
-        appendParamTypeArray(buf, ctMethod);
+        appendParamTypeArray(buf, ctClass, ctMethod);
         buf.append(", ");
         appendParamArray(buf, ctMethod);
 
@@ -411,21 +431,142 @@ public class AndroidTranslator implements Translator {
         return methodBody;
     }
 
-    private void appendParamTypeArray(StringBuilder buf, CtMethod ctMethod) throws NotFoundException {
+    /**
+     * Emits a check of a static boolean field which {@link ShadowWrangler} sets once it knows no shadow method can
+     * exist for this method, so that later calls return the default value without calling into the ClassHandler.
+     */
+    private void appendNoShadowGuard(StringBuilder buf, CtClass ctClass, CtMethod ctMethod, Type returnType, boolean shouldGenerateCallToSuper) throws NotFoundException {
         CtClass[] parameterTypes = ctMethod.getParameterTypes();
+        String[] paramTypeNames = new String[parameterTypes.length];
+        for (int i = 0; i < parameterTypes.length; i++) {
+            paramTypeNames[i] = parameterTypes[i].getName();
+        }
+        String fieldName = noShadowGuardFieldName(ctMethod.getName(), paramTypeNames);
+
+        try {
+            ctClass.getDeclaredField(fieldName);
+        } catch (NotFoundException e) {
+            try {
+                CtField field = new CtField(CtClass.booleanType, fieldName, ctClass);
+                field.setModifiers(Modifier.PRIVATE | Modifier.STATIC);
+                ctClass.addField(field);
+            } catch (CannotCompileException e1) {
+                throw new RuntimeException(e1);
+            }
+        }
+
+        buf.append("if (").append(fieldName).append(") ");
+        if (shouldGenerateCallToSuper) {
+            buf.append(generateCallToSuper(ctMethod.getName(), parameterTypes));
+            buf.append("\n");
+        } else if (returnType.isVoid()) {
+            buf.append("return;\n");
+        } else {
+            buf.append("return ").append(returnType.defaultReturnString()).append(";\n");
+        }
+    }
+
+    /**
+     * @return the name of the static field guarding calls to {@code methodName(paramTypes)}; anything other than
+     * letters and digits is escaped as {@code _xx_} so that every signature gets a distinct, legal field name
+     */
+    static String noShadowGuardFieldName(String methodName, String[] paramTypes) {
+        StringBuilder buf = new StringBuilder(NO_SHADOW_GUARD_FIELD_PREFIX);
+        appendEscaped(buf, methodName);
+        buf.append("__");
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (i > 0) appendEscaped(buf, ",");
+            appendEscaped(buf, paramTypes[i]);
+        }
+        return buf.toString();
+    }
+
+    private static void appendEscaped(StringBuilder buf, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                buf.append(c);
+            } else {
+                buf.append('_').append(Integer.toHexString(c)).append('_');
+            }
+        }
+    }
+
+    /**
+     * Common primitive signatures go through a {@code RobolectricInternals.methodInvokedX} entry point which takes
+     * and returns primitives, so no Object[] is built and nothing is boxed. When there is no shadow method the entry
+     * point returns the type's default value, which is what the generic path would return too.
+     */
+    private void appendSpecializedMethodInvoked(StringBuilder buf, CtClass ctClass, CtMethod ctMethod, String descriptor, boolean returnsVoid, boolean isStatic) throws NotFoundException {
+        if (!returnsVoid) {
+            buf.append("return ");
+        }
+        buf.append(RobolectricInternals.class.getName());
+        buf.append(".methodInvoked");
+        buf.append(ShadowInvoker.specializedSuffix(descriptor));
+        buf.append("(\n  ");
+        buf.append(ctClass.getName());
+        buf.append(".class, \"");
+        buf.append(ctMethod.getName());
+        buf.append("\", ");
+        buf.append(isStatic ? "null" : "this");
+        buf.append(", ");
+        appendParamTypeArray(buf, ctClass, ctMethod);
+        int parameterCount = ctMethod.getParameterTypes().length;
+        if (parameterCount > 0) {
+            buf.append(", ");
+            buf.append(makeParameterReplacementList(parameterCount));
+        }
+        buf.append(");\n");
+        if (returnsVoid) {
+            buf.append("return;\n");
+        }
+    }
+
+    private void appendParamTypeArray(StringBuilder buf, CtClass ctClass, CtMethod ctMethod) throws NotFoundException {
+        CtClass[] parameterTypes = ctMethod.getParameterTypes();
+        StringBuilder paramTypeArray = new StringBuilder();
         if (parameterTypes.length == 0) {
-            buf.append("new String[0]");
+            paramTypeArray.append("new String[0]");
         } else {
-            buf.append("new String[] {");
+            paramTypeArray.append("new String[] {");
             for (int i = 0; i < parameterTypes.length; i++) {
-                if (i > 0) buf.append(", ");
-                buf.append("\"");
+                if (i > 0) paramTypeArray.append(", ");
+                paramTypeArray.append("\"");
                 CtClass parameterType = parameterTypes[i];
-                buf.append(parameterType.getName());
-                buf.append("\"");
+                paramTypeArray.append(parameterType.getName());
+                paramTypeArray.append("\"");
             }
-            buf.append("}");
+            paramTypeArray.append("}");
+        }
+        buf.append(getParamTypesField(ctClass, paramTypeArray.toString()));
+    }
+
+    /**
+     * Parameter type names are passed on every call to {@link RobolectricInternals#methodInvoked}, so each distinct
+     * array is created once in a static field of the instrumented class instead of on every invocation.
+     */
+    private String getParamTypesField(CtClass ctClass, String paramTypeArray) {
+        if (ctClass != paramTypesFieldsClass) {
+            paramTypesFieldsClass = ctClass;
+            paramTypesFields.clear();
+        }
+
+        String fieldName = paramTypesFields.get(paramTypeArray);
+        if (fieldName == null) {
+            fieldName = PARAM_TYPES_FIELD_PREFIX + paramTypesFields.size();
+            try {
+                CtField field = new CtField(ctClass.getClassPool().get(String[].class.getName()), fieldName, ctClass);
+                field.setModifiers(Modifier.PRIVATE | Modifier.STATIC | Modifier.FINAL);
+                ctClass.addField(field, CtField.Initializer.byExpr(paramTypeArray));
+            } catch (CannotCompileException e) {
+                throw new RuntimeException(e);
+            } catch (NotFoundException e) {
+                throw new RuntimeException(e);
+            }
+            paramTypesFields.put(paramTypeArray, fieldName);
         }
+        return fieldName;
     }
 
     private void appendParamArray(StringBuilder buf, CtMethod ctMethod) throws NotFoundException {
@@ -2,130 +2,322 @@ package com.xtremelabs.robolectric.bytecode;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.Enumeration;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileLock;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.jar.Attributes;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
-import java.util.jar.JarOutputStream;
-import java.util.jar.Manifest;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * On-disk cache of instrumented classes, shared by every JVM that points at the same directory.
+ * <p/>
+ * Each instrumented class is stored in its own file, named after a SHA-1 of the cache version and the class's original
+ * bytecode, so an entry is only ever reused for exactly the bytes it was made from. Entries are read lazily when the
+ * class is first loaded, and written to a temporary file which is then renamed into place, so concurrent test JVMs
+ * never see a partially written entry and a JVM that's killed loses nothing it already wrote.
+ * <p/>
+ * In memory-mapped mode, entries written by earlier runs are first gathered into a single {@link ClassCachePack} which
+ * is mapped rather than read, so startup only builds an index of offsets and classes are defined straight from the
+ * mapped file. Entries added during the run are still written as separate files and are packed by the next JVM.
+ * Packing removes the loose entries, so a JVM that isn't in memory-mapped mode still reads entries from a pack it
+ * finds, but leaves packing to the JVMs that are.
+ */
 public class ClassCache {
-    private static final Attributes.Name VERSION_ATTRIBUTE = new Attributes.Name("version");
+    private static final String VERSION_DIRECTORY_PREFIX = "v";
+    private static final String CLASS_FILE_SUFFIX = ".class";
+    private static final int KEY_LENGTH = 40;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
 
-    private Map<String, byte[]> cachedClasses = new HashMap<String, byte[]>();
-    private boolean startedWriting = false;
+    private final File cacheDirectory;
+    private final int cacheVersion;
+    private final ClassLoader originalClassLoader;
+    private final Map<String, String> keysByClassName = new ConcurrentHashMap<String, String>();
+    private final ClassCachePack pack;
 
-    public ClassCache(String classCachePath, final int expectedCacheVersion) {
-        final File cacheJarFile = new File(classCachePath);
-        JarFile cacheFile;
-        try {
-            cacheFile = new JarFile(cacheJarFile);
-            int cacheVersion = 0;
-            Manifest manifest = cacheFile.getManifest();
-            if (manifest != null) {
-                Attributes attributes = manifest.getEntries().get("robolectric");
-                if (attributes != null) {
-                    String cacheVersionStr = (String) attributes.get(VERSION_ATTRIBUTE);
-                    if (cacheVersionStr != null) {
-                        cacheVersion = Integer.parseInt(cacheVersionStr);
-                    }
-                }
+    public ClassCache(String classCachePath, int expectedCacheVersion) {
+        this(classCachePath, expectedCacheVersion, ClassCache.class.getClassLoader());
+    }
+
+    /**
+     * @param classCachePath       the directory holding the cache
+     * @param expectedCacheVersion entries written with any other version are ignored and removed
+     * @param originalClassLoader  where the original, uninstrumented bytecode is read from
+     */
+    public ClassCache(String classCachePath, int expectedCacheVersion, ClassLoader originalClassLoader) {
+        this(classCachePath, expectedCacheVersion, originalClassLoader, false);
+    }
+
+    /**
+     * @param classCachePath       the directory holding the cache
+     * @param expectedCacheVersion entries written with any other version are ignored and removed
+     * @param originalClassLoader  where the original, uninstrumented bytecode is read from
+     * @param memoryMapped         whether to pack existing entries into a single file before mapping it into memory;
+     *                             otherwise a pack that's already there is used as it is
+     */
+    public ClassCache(String classCachePath, int expectedCacheVersion, ClassLoader originalClassLoader, boolean memoryMapped) {
+        this.cacheVersion = expectedCacheVersion;
+        this.originalClassLoader = originalClassLoader;
+        File cacheRoot = new File(classCachePath);
+        this.cacheDirectory = new File(cacheRoot, VERSION_DIRECTORY_PREFIX + expectedCacheVersion);
+        deleteOtherVersions(cacheRoot);
+        this.pack = memoryMapped ? openPack() : ClassCachePack.open(packFile(), cacheVersion);
+    }
+
+    /**
+     * @return the instrumented bytecode for {@code className}, or null if it hasn't been cached for the class's
+     * current bytecode
+     */
+    public byte[] getClassBytesFor(String className) {
+        String key = keyFor(className);
+        if (key == null) {
+            return null;
+        }
+
+        if (pack != null) {
+            ByteBuffer packedBytes = pack.get(key);
+            if (packedBytes != null) {
+                byte[] classBytes = new byte[packedBytes.remaining()];
+                packedBytes.get(classBytes);
+                return classBytes;
             }
-            if (cacheVersion != expectedCacheVersion) {
-                cacheJarFile.delete();
-            } else {
-                readEntries(cacheFile);
+        }
+
+        return readEntry(key);
+    }
+
+    /**
+     * Like {@link #getClassBytesFor(String)}, but classes in the memory-mapped pack are returned as a view of the
+     * mapped file rather than copied onto the heap.
+     */
+    public ByteBuffer getClassBufferFor(String className) {
+        String key = keyFor(className);
+        if (key == null) {
+            return null;
+        }
+
+        if (pack != null) {
+            ByteBuffer packedBytes = pack.get(key);
+            if (packedBytes != null) {
+                return packedBytes;
             }
+        }
+
+        byte[] classBytes = readEntry(key);
+        return classBytes == null ? null : ByteBuffer.wrap(classBytes);
+    }
+
+    private byte[] readEntry(String key) {
+        File entryFile = entryFile(key);
+        if (!entryFile.isFile()) {
+            return null;
+        }
+
+        try {
+            return readFully(new FileInputStream(entryFile));
         } catch (IOException e) {
-            // no problem
+            return null; // no problem, we'll instrument it again
+        }
+    }
+
+    public void addClass(String className, byte[] classBytes) {
+        String key = keyFor(className);
+        if (key == null) {
+            return;
         }
 
-        Runtime.getRuntime().addShutdownHook(new Thread() {
-            @Override public void run() {
-                Manifest manifest = new Manifest();
-                Attributes attributes = new Attributes();
-                attributes.put(VERSION_ATTRIBUTE, String.valueOf(expectedCacheVersion));
-                manifest.getEntries().put("robolectric", attributes);
+        if (pack != null && pack.get(key) != null) {
+            return;
+        }
 
-                saveAllClassesToCache(cacheJarFile, manifest);
+        File entryFile = entryFile(key);
+        if (entryFile.exists()) {
+            return;
+        }
+
+        File shardDirectory = entryFile.getParentFile();
+        if (!shardDirectory.exists()) {
+            shardDirectory.mkdirs();
+        }
+
+        File tempFile = null;
+        try {
+            tempFile = File.createTempFile(key, ".tmp", shardDirectory);
+            OutputStream outputStream = new FileOutputStream(tempFile);
+            try {
+                outputStream.write(classBytes);
+            } finally {
+                outputStream.close();
+            }
+            if (!tempFile.renameTo(entryFile)) {
+                // another JVM got there first with the same bytes
+                tempFile.delete();
             }
-        });
+        } catch (IOException e) {
+            // no problem, the cache is only an optimization
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    File entryFile(String key) {
+        return new File(new File(cacheDirectory, key.substring(0, 2)), key.substring(2) + CLASS_FILE_SUFFIX);
     }
 
-    public byte[] getClassBytesFor(String name) {
-        return cachedClasses.get(name);
+    File packFile() {
+        return new File(cacheDirectory, ClassCachePack.FILE_NAME);
     }
 
-    public boolean isWriting() {
-        synchronized (this) {
-            return startedWriting;
+    String keyFor(String className) {
+        String key = keysByClassName.get(className);
+        if (key == null) {
+            byte[] originalBytes = readOriginalBytes(className);
+            if (originalBytes == null) {
+                return null;
+            }
+            key = hash(originalBytes);
+            keysByClassName.put(className, key);
         }
+        return key;
     }
 
-    public void addClass(String className, byte[] classBytes) {
-        cachedClasses.put(className, classBytes);
+    private byte[] readOriginalBytes(String className) {
+        InputStream inputStream = originalClassLoader.getResourceAsStream(className.replace('.', '/') + ".class");
+        if (inputStream == null) {
+            return null;
+        }
+        try {
+            return readFully(inputStream);
+        } catch (IOException e) {
+            return null;
+        }
     }
 
-    private void readEntries(JarFile cacheFile) {
-        Enumeration<JarEntry> entries = cacheFile.entries();
+    private String hash(byte[] originalBytes) {
+        MessageDigest digest;
         try {
-            while (entries.hasMoreElements()) {
-                JarEntry entry = entries.nextElement();
-                String className = entry.getName();
-                if (className.endsWith(".class")) {
-                    int classSize = (int) entry.getSize();
-                    InputStream inputStream = cacheFile.getInputStream(entry);
-                    ByteArrayOutputStream baos = new ByteArrayOutputStream(classSize);
-                    int c;
-                    while ((c = inputStream.read()) != -1) {
-                        baos.write(c);
-                    }
-                    className = className.substring(0, className.indexOf(".class")).replace('/', '.');
-                    addClass(className, baos.toByteArray());
-                }
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        digest.update(String.valueOf(cacheVersion).getBytes());
+        digest.update((byte) 0);
+        byte[] hash = digest.digest(originalBytes);
 
-            }
-        } catch (IOException e) {
-            // no problem, we didn't want those bytes that much anyway
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(hash[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[hash[i] & 0xf];
         }
+        return new String(hex);
     }
 
-    protected void saveAllClassesToCache(File file, Manifest manifest) {
-        synchronized (this) {
-            startedWriting = true;
-    
-            if (cachedClasses.size() > 0) {
-                JarOutputStream jarOutputStream = null;
+    private ClassCachePack openPack() {
+        ClassCachePack existingPack = ClassCachePack.open(packFile(), cacheVersion);
+        Map<String, File> looseEntries = findLooseEntries();
+        if (looseEntries.isEmpty()) {
+            return existingPack;
+        }
+
+        try {
+            cacheDirectory.mkdirs();
+            RandomAccessFile lockFile = new RandomAccessFile(new File(cacheDirectory, ClassCachePack.FILE_NAME + ".lock"), "rw");
+            try {
+                // if another JVM is already packing, use what's there and leave the rest to it
+                FileLock lock = lockFile.getChannel().tryLock();
+                if (lock == null) {
+                    return existingPack;
+                }
                 try {
-                    File cacheJarDir = file.getParentFile();
-                    if (!cacheJarDir.exists()) {
-                        cacheJarDir.mkdirs();
+                    if (!ClassCachePack.write(packFile(), cacheVersion, existingPack, looseEntries)) {
+                        return existingPack;
+                    }
+                    ClassCachePack newPack = ClassCachePack.open(packFile(), cacheVersion);
+                    if (newPack == null) {
+                        return existingPack;
                     }
-    
-                    jarOutputStream = new JarOutputStream(new FileOutputStream(file), manifest);
-                    for (Map.Entry<String, byte[]> entry : cachedClasses.entrySet()) {
-                        String key = entry.getKey();
-                        jarOutputStream.putNextEntry(new JarEntry(key.replace('.', '/') + ".class"));
-                        jarOutputStream.write(entry.getValue());
-                        jarOutputStream.closeEntry();
+                    for (File looseEntry : looseEntries.values()) {
+                        looseEntry.delete();
                     }
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
+                    return newPack;
                 } finally {
-                    if (jarOutputStream != null) {
-                        try {
-                            jarOutputStream.close();
-                        } catch (IOException ignore) {
-                        }
+                    lock.release();
+                }
+            } finally {
+                lockFile.close();
+            }
+        } catch (IOException e) {
+            // no problem, the loose entries are still there
+            return existingPack;
+        }
+    }
+
+    private Map<String, File> findLooseEntries() {
+        Map<String, File> looseEntries = new HashMap<String, File>();
+        File[] shardDirectories = cacheDirectory.listFiles();
+        if (shardDirectories == null) {
+            return looseEntries;
+        }
+        for (File shardDirectory : shardDirectories) {
+            File[] entryFiles = shardDirectory.listFiles();
+            if (entryFiles == null || shardDirectory.getName().length() != 2) {
+                continue;
+            }
+            for (File entryFile : entryFiles) {
+                String fileName = entryFile.getName();
+                if (fileName.endsWith(CLASS_FILE_SUFFIX)) {
+                    String key = shardDirectory.getName() + fileName.substring(0, fileName.length() - CLASS_FILE_SUFFIX.length());
+                    if (key.length() == KEY_LENGTH) {
+                        looseEntries.put(key, entryFile);
                     }
                 }
             }
-            startedWriting = false;
+        }
+        return looseEntries;
+    }
+
+    private void deleteOtherVersions(File cacheRoot) {
+        File[] versionDirectories = cacheRoot.listFiles();
+        if (versionDirectories == null) {
+            return;
+        }
+        for (File versionDirectory : versionDirectories) {
+            if (versionDirectory.isDirectory() && versionDirectory.getName().startsWith(VERSION_DIRECTORY_PREFIX)
+                    && !versionDirectory.equals(cacheDirectory)) {
+                deleteRecursively(versionDirectory);
+            }
+        }
+    }
+
+    private void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    static byte[] readFully(InputStream inputStream) throws IOException {
+        try {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(inputStream.available(), 1024));
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = inputStream.read(buffer)) != -1) {
+                baos.write(buffer, 0, count);
+            }
+            return baos.toByteArray();
+        } finally {
+            inputStream.close();
         }
     }
 }
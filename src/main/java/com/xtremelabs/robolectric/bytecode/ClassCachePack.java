@@ -0,0 +1,190 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only, memory-mapped file holding many {@link ClassCache} entries.
+ * <p/>
+ * The file starts with a header and an index of (key, offset, length) records followed by the class bytes. Opening a
+ * pack only reads the index; the bytes of a class stay in the mapped file until it's defined.
+ */
+class ClassCachePack {
+    static final String FILE_NAME = "classes.pack";
+
+    private static final int MAGIC = 0x524f424f;
+    private static final int KEY_BYTES = 20;
+    private static final int HEADER_SIZE = 12;
+    private static final int INDEX_RECORD_SIZE = KEY_BYTES + 8;
+
+    private final ByteBuffer buffer;
+    private final Map<String, Long> index;
+
+    private ClassCachePack(ByteBuffer buffer, Map<String, Long> index) {
+        this.buffer = buffer;
+        this.index = index;
+    }
+
+    /**
+     * @return the pack in {@code packFile}, or null if there's no valid pack for {@code cacheVersion}
+     */
+    static ClassCachePack open(File packFile, int cacheVersion) {
+        if (!packFile.isFile()) {
+            return null;
+        }
+
+        try {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(packFile, "r");
+            MappedByteBuffer buffer;
+            try {
+                // the mapping stays valid after the file is closed
+                buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, randomAccessFile.length());
+            } finally {
+                randomAccessFile.close();
+            }
+
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(4) != cacheVersion) {
+                return null;
+            }
+            int entryCount = buffer.getInt(8);
+            Map<String, Long> index = new HashMap<String, Long>(entryCount * 2);
+            byte[] keyBytes = new byte[KEY_BYTES];
+            for (int i = 0; i < entryCount; i++) {
+                int recordStart = HEADER_SIZE + i * INDEX_RECORD_SIZE;
+                buffer.position(recordStart);
+                buffer.get(keyBytes);
+                long offset = buffer.getInt(recordStart + KEY_BYTES);
+                long length = buffer.getInt(recordStart + KEY_BYTES + 4);
+                index.put(toHex(keyBytes), (offset << 32) | length);
+            }
+            return new ClassCachePack(buffer, index);
+        } catch (IOException e) {
+            return null; // no problem, we'll read loose entries instead
+        } catch (RuntimeException e) {
+            return null; // truncated or corrupt pack
+        }
+    }
+
+    /**
+     * @return a read-only view of the entry's bytes, or null if the pack doesn't contain {@code key}
+     */
+    ByteBuffer get(String key) {
+        Long location = index.get(key);
+        if (location == null) {
+            return null;
+        }
+        int offset = (int) (location >>> 32);
+        int length = (int) (location & 0xffffffffL);
+        ByteBuffer entry = buffer.duplicate();
+        entry.position(offset);
+        entry.limit(offset + length);
+        return entry.slice();
+    }
+
+    Set<String> keys() {
+        return index.keySet();
+    }
+
+    int size() {
+        return index.size();
+    }
+
+    /**
+     * Writes a new pack containing every entry of {@code existingPack} plus {@code looseEntries}, to a temporary file
+     * which is then renamed to {@code packFile}.
+     *
+     * @return true if the new pack was put in place
+     */
+    static boolean write(File packFile, int cacheVersion, ClassCachePack existingPack, Map<String, File> looseEntries) throws IOException {
+        List<String> keys = new ArrayList<String>();
+        List<Integer> lengths = new ArrayList<Integer>();
+        if (existingPack != null) {
+            for (String key : existingPack.keys()) {
+                keys.add(key);
+                lengths.add(existingPack.get(key).remaining());
+            }
+        }
+        for (Map.Entry<String, File> looseEntry : looseEntries.entrySet()) {
+            if (existingPack == null || existingPack.get(looseEntry.getKey()) == null) {
+                keys.add(looseEntry.getKey());
+                lengths.add((int) looseEntry.getValue().length());
+            }
+        }
+
+        File tempFile = File.createTempFile(FILE_NAME, ".tmp", packFile.getParentFile());
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 65536));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(cacheVersion);
+                out.writeInt(keys.size());
+
+                int offset = HEADER_SIZE + keys.size() * INDEX_RECORD_SIZE;
+                for (int i = 0; i < keys.size(); i++) {
+                    out.write(fromHex(keys.get(i)));
+                    out.writeInt(offset);
+                    out.writeInt(lengths.get(i));
+                    offset += lengths.get(i);
+                }
+
+                byte[] buffer = new byte[8192];
+                for (String key : keys) {
+                    ByteBuffer packed = existingPack == null ? null : existingPack.get(key);
+                    if (packed != null) {
+                        while (packed.hasRemaining()) {
+                            int count = Math.min(buffer.length, packed.remaining());
+                            packed.get(buffer, 0, count);
+                            out.write(buffer, 0, count);
+                        }
+                    } else {
+                        InputStream in = new FileInputStream(looseEntries.get(key));
+                        try {
+                            int count;
+                            while ((count = in.read(buffer)) != -1) {
+                                out.write(buffer, 0, count);
+                            }
+                        } finally {
+                            in.close();
+                        }
+                    }
+                }
+            } finally {
+                out.close();
+            }
+            return tempFile.renameTo(packFile);
+        } finally {
+            tempFile.delete();
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder buf = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            buf.append(Character.forDigit((b >> 4) & 0xf, 16));
+            buf.append(Character.forDigit(b & 0xf, 16));
+        }
+        return buf.toString();
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(hex.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+}
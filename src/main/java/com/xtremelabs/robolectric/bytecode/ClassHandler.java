@@ -14,4 +14,22 @@ public interface ClassHandler {
     void afterTest();
 
     Object methodInvoked(Class clazz, String methodName, Object instance, String[] paramTypes, Object[] params) throws Throwable;
+
+    void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, int a) throws Throwable;
+
+    void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, int a, int b) throws Throwable;
+
+    void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, long a) throws Throwable;
+
+    void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, float a) throws Throwable;
+
+    void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, boolean a) throws Throwable;
+
+    int methodInvokedI(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable;
+
+    long methodInvokedJ(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable;
+
+    float methodInvokedF(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable;
+
+    boolean methodInvokedZ(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable;
 }
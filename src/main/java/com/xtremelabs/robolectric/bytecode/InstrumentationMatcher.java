@@ -0,0 +1,103 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decides which classes {@link AndroidTranslator} instruments, by matching class names against a set of class name or
+ * package prefixes.
+ * <p/>
+ * The prefixes are kept in a character trie, so matching a class name costs one step per character no matter how many
+ * prefixes there are. Matchers are immutable; {@link #with(Collection)} returns a new one with more prefixes.
+ */
+public class InstrumentationMatcher {
+    public static final InstrumentationMatcher DEFAULT = new InstrumentationMatcher(Arrays.asList(
+            "android.",
+            "com.google.android.maps",
+            "org.apache.http.impl.client.DefaultRequestDirector"));
+
+    private final List<String> prefixes;
+    private final Node root = new Node();
+
+    public InstrumentationMatcher(Collection<String> prefixes) {
+        List<String> distinctPrefixes = new ArrayList<String>();
+        for (String prefix : prefixes) {
+            if (!distinctPrefixes.contains(prefix)) {
+                distinctPrefixes.add(prefix);
+                root.add(prefix, 0);
+            }
+        }
+        this.prefixes = Collections.unmodifiableList(distinctPrefixes);
+    }
+
+    /**
+     * @return a matcher with {@code additionalPrefixes} added, or this one if it already has all of them
+     */
+    public InstrumentationMatcher with(Collection<String> additionalPrefixes) {
+        if (additionalPrefixes == null || prefixes.containsAll(additionalPrefixes)) {
+            return this;
+        }
+        List<String> allPrefixes = new ArrayList<String>(prefixes);
+        allPrefixes.addAll(additionalPrefixes);
+        return new InstrumentationMatcher(allPrefixes);
+    }
+
+    public boolean matches(String className) {
+        return findMatchingPrefix(className) != null;
+    }
+
+    /**
+     * @return the shortest prefix {@code className} starts with, or null if it doesn't match any
+     */
+    public String findMatchingPrefix(String className) {
+        Node node = root;
+        for (int i = 0; node != null; i++) {
+            if (node.prefix != null) {
+                return node.prefix;
+            }
+            if (i == className.length()) {
+                return null;
+            }
+            node = node.child(className.charAt(i));
+        }
+        return null;
+    }
+
+    public List<String> getPrefixes() {
+        return prefixes;
+    }
+
+    private static class Node {
+        private char[] childChars = new char[0];
+        private Node[] children = new Node[0];
+        private String prefix;
+
+        void add(String prefix, int depth) {
+            if (depth == prefix.length()) {
+                this.prefix = prefix;
+                return;
+            }
+            char c = prefix.charAt(depth);
+            Node child = child(c);
+            if (child == null) {
+                childChars = Arrays.copyOf(childChars, childChars.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                childChars[childChars.length - 1] = c;
+                child = children[children.length - 1] = new Node();
+            }
+            child.add(prefix, depth + 1);
+        }
+
+        Node child(char c) {
+            for (int i = 0; i < childChars.length; i++) {
+                if (childChars[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+}
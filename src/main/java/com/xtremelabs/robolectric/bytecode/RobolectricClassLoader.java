@@ -1,5 +1,7 @@
 package com.xtremelabs.robolectric.bytecode;
 
+import com.xtremelabs.robolectric.res.ResourceCache;
+import com.xtremelabs.robolectric.res.ResourceIdTable;
 import javassist.CannotCompileException;
 import javassist.ClassPool;
 import javassist.LoaderClassPath;
@@ -7,31 +9,56 @@ import javassist.NotFoundException;
 
 import java.io.File;
 import java.lang.System;
+import java.nio.ByteBuffer;
+import java.security.ProtectionDomain;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RobolectricClassLoader extends javassist.Loader {
+    private static final Object WARM_UP_PENDING = new Object();
+
     private ClassCache classCache;
     private AndroidTranslator androidTranslator;
+    private final ConcurrentMap<String, Object> warmUpStates = new ConcurrentHashMap<String, Object>();
+    private final AtomicLong classCacheHitCount = new AtomicLong();
 
     public RobolectricClassLoader(ClassHandler classHandler) {
     	this(classHandler, null);
     }
     
     public RobolectricClassLoader(ClassHandler classHandler, List<String> customClassNames) {
+        this(classHandler, customClassNames, (String) null);
+    }
+
+    /**
+     * @param classCachePath the directory to keep the class cache in, or null for the default; see
+     *                       {@link #getClassCacheDirectory(String)}
+     */
+    public RobolectricClassLoader(ClassHandler classHandler, List<String> customClassNames, String classCachePath) {
+        this(classHandler, customClassNames, new ClassCache(getClassCacheDirectory(classCachePath).getAbsolutePath(),
+                AndroidTranslator.CACHE_VERSION, RobolectricClassLoader.class.getClassLoader(),
+                Boolean.getBoolean("robolectric.mappedClassCache")));
+    }
+
+    RobolectricClassLoader(ClassHandler classHandler, List<String> customClassNames, ClassCache classCache) {
         super(RobolectricClassLoader.class.getClassLoader(), null);
 
         delegateLoadingOf(AndroidTranslator.class.getName());
         delegateLoadingOf(ClassHandler.class.getName());
+        delegateLoadingOf(ShadowInvoker.class.getName());
+        // parsed resources are the same for every loader, so they're kept where all of them can see them
+        delegateLoadingOf(ResourceCache.class.getName());
+        delegateLoadingOf(ResourceIdTable.class.getName());
 
-        final String classCachePath = System.getProperty("cached.roboelectric.classes.path");
-        final File classCacheDirectory;
-        if (null == classCachePath || "".equals(classCachePath.trim())) {
-            classCacheDirectory = new File("./tmp");
-        } else {
-            classCacheDirectory = new File(classCachePath);
-        }
-
-        classCache = new ClassCache(new File(classCacheDirectory, "cached-robolectric-classes.jar").getAbsolutePath(), AndroidTranslator.CACHE_VERSION);
+        this.classCache = classCache;
         try {
             ClassPool classPool = new ClassPool();
             classPool.appendClassPath(new LoaderClassPath(RobolectricClassLoader.class.getClassLoader()));
@@ -45,6 +72,97 @@ public class RobolectricClassLoader extends javassist.Loader {
         }
     }
 
+    /**
+     * @param classCachePath the directory to keep the cache in, or null to use the
+     *                       {@code cached.roboelectric.classes.path} system property or {@code ./tmp}
+     */
+    public static File getClassCacheDirectory(String classCachePath) {
+        if (classCachePath == null) {
+            classCachePath = System.getProperty("cached.roboelectric.classes.path");
+        }
+        final File classCacheDirectory;
+        if (null == classCachePath || "".equals(classCachePath.trim())) {
+            classCacheDirectory = new File("./tmp");
+        } else {
+            classCacheDirectory = new File(classCachePath);
+        }
+        return new File(classCacheDirectory, "cached-robolectric-classes");
+    }
+
+    /**
+     * Instruments classes into the class cache on background threads, one per core, so they're ready by the time this
+     * loader is asked for them. {@code classNames} is called on a background thread too, so working out what to warm
+     * up doesn't hold up the caller.
+     * <p/>
+     * Each background thread has its own {@link ClassPool} and {@link AndroidTranslator}; if this loader needs a
+     * class that's being warmed up it waits for it rather than instrumenting it again, and if it needs one that hasn't
+     * been started yet it takes it over.
+     */
+    public void warmUp(Callable<? extends Collection<String>> classNames) {
+        warmUp(classNames, Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "robolectric-warm-up");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        }));
+    }
+
+    /**
+     * Warms up classes on {@code executorService}, which is shut down once every class has been submitted, so it
+     * terminates when the warm-up is finished.
+     */
+    void warmUp(final Callable<? extends Collection<String>> classNames, final ExecutorService executorService) {
+        final AheadOfTimeInstrumenter instrumenter = new AheadOfTimeInstrumenter(getParent(), classCache,
+                androidTranslator.getInstrumentationMatcher().getPrefixes());
+
+        executorService.submit(new Runnable() {
+            @Override public void run() {
+                try {
+                    for (final String className : classNames.call()) {
+                        if (warmUpStates.putIfAbsent(className, WARM_UP_PENDING) == null) {
+                            executorService.submit(new Runnable() {
+                                @Override public void run() {
+                                    warmUp(instrumenter, className);
+                                }
+                            });
+                        }
+                    }
+                } catch (Exception e) {
+                    // no problem, the classes will be instrumented when they're loaded
+                } finally {
+                    executorService.shutdown();
+                }
+            }
+        });
+    }
+
+    private void warmUp(AheadOfTimeInstrumenter instrumenter, String className) {
+        CountDownLatch done = new CountDownLatch(1);
+        if (!warmUpStates.replace(className, WARM_UP_PENDING, done)) {
+            return; // this loader has already taken it over
+        }
+        try {
+            if (classCache.getClassBufferFor(className) == null) {
+                instrumenter.instrument(className);
+            }
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private void awaitWarmUp(String className) {
+        Object warmUpState = warmUpStates.remove(className);
+        if (warmUpState instanceof CountDownLatch) {
+            try {
+                ((CountDownLatch) warmUpState).await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     public void addCustomShadowClass(String classOrPackageToBeInstrumented) {
         androidTranslator.addCustomShadowClass(classOrPackageToBeInstrumented);
     }
@@ -75,10 +193,29 @@ public class RobolectricClassLoader extends javassist.Loader {
     }
 
     @Override protected Class findClass(String name) throws ClassNotFoundException {
-        byte[] classBytes = classCache.getClassBytesFor(name);
-        if (classBytes != null) {
-            return defineClass(name, classBytes, 0, classBytes.length);
+        awaitWarmUp(name);
+        // looking a class up in the cache means reading and hashing its bytecode, so only do it for classes we instrument
+        if (androidTranslator.getInstrumentationMatcher().matches(name)) {
+            ByteBuffer classBytes = classCache.getClassBufferFor(name);
+            if (classBytes != null) {
+                classCacheHitCount.incrementAndGet();
+                return defineClass(name, classBytes, (ProtectionDomain) null);
+            }
         }
         return super.findClass(name);
     }
+
+    /**
+     * @return how many classes this loader has defined from the class cache rather than instrumenting them
+     */
+    public long getClassCacheHitCount() {
+        return classCacheHitCount.get();
+    }
+
+    /**
+     * @return how many classes this loader has instrumented as they were loaded
+     */
+    public long getInstrumentedClassCount() {
+        return androidTranslator.getInstrumentedClassCount();
+    }
 }
@@ -4,7 +4,12 @@ import com.xtremelabs.robolectric.internal.Implements;
 
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 @SuppressWarnings({"UnusedDeclaration"})
@@ -12,6 +17,8 @@ public class RobolectricInternals {
     // initialized via magic by AndroidTranslator
     private static ClassHandler classHandler;
     private static Set<String> unloadableClassNames = new HashSet<String>();
+    private static List<Class<?>> defaultShadowClasses;
+    private static Map<String, String> defaultShadowClassMap;
 
     private static final ThreadLocal<Vars> ALL_VARS = new ThreadLocal<Vars>() {
         @Override protected Vars initialValue() {
@@ -40,13 +47,40 @@ public class RobolectricInternals {
     }
 
     public static void bindShadowClass(Class<?> shadowClass) {
+        Class<?> realClass = getRealClass(shadowClass);
+        if (realClass != null) {
+            ShadowWrangler.getInstance().bindShadowClass(realClass, shadowClass);
+        }
+    }
+
+    /**
+     * Binds {@code shadowClasses} as the default shadows, underneath any bound with {@link #bindShadowClass(Class)}.
+     * The table of bindings is only built the first time a given list is bound in this ClassLoader, so binding the
+     * defaults before every test doesn't mean reading every shadow's {@code @Implements} again.
+     */
+    public static void bindDefaultShadowClasses(List<Class<?>> shadowClasses) {
+        if (!shadowClasses.equals(defaultShadowClasses)) {
+            Map<String, String> shadowClassMap = new HashMap<String, String>();
+            for (Class<?> shadowClass : shadowClasses) {
+                Class<?> realClass = getRealClass(shadowClass);
+                if (realClass != null) {
+                    shadowClassMap.put(realClass.getName(), shadowClass.getName());
+                }
+            }
+            defaultShadowClasses = new ArrayList<Class<?>>(shadowClasses);
+            defaultShadowClassMap = Collections.unmodifiableMap(shadowClassMap);
+        }
+        ShadowWrangler.getInstance().bindDefaultShadowClasses(defaultShadowClassMap);
+    }
+
+    private static Class<?> getRealClass(Class<?> shadowClass) {
         Implements realClass = shadowClass.getAnnotation(Implements.class);
         if (realClass == null) {
             throw new IllegalArgumentException(shadowClass + " is not annotated with @Implements");
         }
 
         try {
-            ShadowWrangler.getInstance().bindShadowClass(realClass.value(), shadowClass);
+            return realClass.value();
         } catch (TypeNotPresentException typeLoadingException) {
             String unloadableClassName = shadowClass.getSimpleName();
             if (isIgnorableClassLoadingException(typeLoadingException)) {
@@ -54,6 +88,7 @@ public class RobolectricInternals {
                 if (unloadableClassNames.add(unloadableClassName)) {
                     System.out.println("Warning: an error occurred while binding shadow class: " + unloadableClassName);
                 }
+                return null;
             } else {
                 throw typeLoadingException;
             }
@@ -114,6 +149,87 @@ public class RobolectricInternals {
         }
     }
 
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, int a) throws Throwable {
+        try {
+          classHandler.methodInvokedV(clazz, methodName, instance, paramTypes, a);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, int a, int b) throws Throwable {
+        try {
+          classHandler.methodInvokedV(clazz, methodName, instance, paramTypes, a, b);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, long a) throws Throwable {
+        try {
+          classHandler.methodInvokedV(clazz, methodName, instance, paramTypes, a);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, float a) throws Throwable {
+        try {
+          classHandler.methodInvokedV(clazz, methodName, instance, paramTypes, a);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, boolean a) throws Throwable {
+        try {
+          classHandler.methodInvokedV(clazz, methodName, instance, paramTypes, a);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static int methodInvokedI(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable {
+        try {
+          return classHandler.methodInvokedI(clazz, methodName, instance, paramTypes);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static long methodInvokedJ(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable {
+        try {
+          return classHandler.methodInvokedJ(clazz, methodName, instance, paramTypes);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static float methodInvokedF(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable {
+        try {
+          return classHandler.methodInvokedF(clazz, methodName, instance, paramTypes);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public static boolean methodInvokedZ(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable {
+        try {
+          return classHandler.methodInvokedZ(clazz, methodName, instance, paramTypes);
+        } catch(java.lang.LinkageError e) {
+          throw new Exception(e);
+        }
+    }
+
     @SuppressWarnings({"UnusedDeclaration"})
     public static Object autobox(Object o) {
         return o;
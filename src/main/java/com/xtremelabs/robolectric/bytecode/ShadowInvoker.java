@@ -0,0 +1,78 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Calls one shadow method. Subclasses generated at runtime by {@link ShadowInvokerGenerator} call the shadow method
+ * directly, and also override whichever primitive-specialized {@code invokeX} method matches its signature so that
+ * calls arriving through the matching {@code RobolectricInternals.methodInvokedX} entry point don't box anything.
+ * The default implementations of the specialized methods box their arguments and delegate to
+ * {@link #invoke(Object, Object[])}.
+ */
+public abstract class ShadowInvoker {
+    /**
+     * Method descriptors which have their own {@code RobolectricInternals.methodInvokedX} entry point and
+     * {@code invokeX} method here.
+     */
+    static final Set<String> SPECIALIZED_DESCRIPTORS = new HashSet<String>(Arrays.asList(
+            "(I)V", "(II)V", "(J)V", "(F)V", "(Z)V", "()I", "()J", "()F", "()Z"));
+
+    private static final Object[] NO_PARAMS = new Object[0];
+
+    /**
+     * @return the suffix of the specialized entry point and invoker method for {@code descriptor}, e.g. "I" for
+     * "()I" and "V" for "(J)V"
+     */
+    static String specializedSuffix(String descriptor) {
+        return descriptor.substring(descriptor.indexOf(')') + 1);
+    }
+
+    /**
+     * @param shadow the shadow instance, or null for static methods
+     * @param params the arguments, with primitives boxed
+     * @return the value returned by the shadow method (boxed), or null for void methods
+     */
+    public abstract Object invoke(Object shadow, Object[] params) throws Throwable;
+
+    public void invokeV(Object shadow, int a) throws Throwable {
+        invoke(shadow, new Object[] {a});
+    }
+
+    public void invokeV(Object shadow, int a, int b) throws Throwable {
+        invoke(shadow, new Object[] {a, b});
+    }
+
+    public void invokeV(Object shadow, long a) throws Throwable {
+        invoke(shadow, new Object[] {a});
+    }
+
+    public void invokeV(Object shadow, float a) throws Throwable {
+        invoke(shadow, new Object[] {a});
+    }
+
+    public void invokeV(Object shadow, boolean a) throws Throwable {
+        invoke(shadow, new Object[] {a});
+    }
+
+    public int invokeI(Object shadow) throws Throwable {
+        Object result = invoke(shadow, NO_PARAMS);
+        return result == null ? 0 : (Integer) result;
+    }
+
+    public long invokeJ(Object shadow) throws Throwable {
+        Object result = invoke(shadow, NO_PARAMS);
+        return result == null ? 0 : (Long) result;
+    }
+
+    public float invokeF(Object shadow) throws Throwable {
+        Object result = invoke(shadow, NO_PARAMS);
+        return result == null ? 0 : (Float) result;
+    }
+
+    public boolean invokeZ(Object shadow) throws Throwable {
+        Object result = invoke(shadow, NO_PARAMS);
+        return result == null ? false : (Boolean) result;
+    }
+}
@@ -0,0 +1,226 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates a small {@link ShadowInvoker} class per shadow method which casts the arguments and calls the method
+ * directly. The invoker is defined in the shadow class's own package and ClassLoader so that it can reach public and
+ * package-private shadow methods; private ones are left to reflection. Methods whose descriptor is one of
+ * {@link ShadowInvoker#SPECIALIZED_DESCRIPTORS} also get an unboxed {@code invokeX} override.
+ */
+class ShadowInvokerGenerator {
+    static final String INVOKER_CLASS_MARKER = "$$ShadowInvoker$";
+
+    // weak, so that a loader that's no longer used isn't kept, along with its classes, by its pool; the pool only
+    // refers to the loader weakly itself, through its LoaderClassPath
+    private final Map<ClassLoader, ClassPool> classPools = new WeakHashMap<ClassLoader, ClassPool>();
+    private static final AtomicInteger INVOKER_COUNT = new AtomicInteger();
+
+    /**
+     * @return an invoker for {@code method}, or null if the method can't be called directly from generated code
+     */
+    public synchronized ShadowInvoker generate(Method method) {
+        if (!canCallDirectly(method)) {
+            return null;
+        }
+
+        Class<?> shadowClass = method.getDeclaringClass();
+        ClassLoader classLoader = shadowClass.getClassLoader();
+        try {
+            ClassPool classPool = getClassPool(classLoader);
+            CtClass invokerCtClass = classPool.makeClass(shadowClass.getName() + INVOKER_CLASS_MARKER + INVOKER_COUNT.getAndIncrement());
+            invokerCtClass.setSuperclass(classPool.get(ShadowInvoker.class.getName()));
+            invokerCtClass.addMethod(CtNewMethod.make(generateInvokeMethod(method), invokerCtClass));
+            String specializedInvokeMethod = generateSpecializedInvokeMethod(method);
+            if (specializedInvokeMethod != null) {
+                invokerCtClass.addMethod(CtNewMethod.make(specializedInvokeMethod, invokerCtClass));
+            }
+
+            Class<?> invokerClass = invokerCtClass.toClass(classLoader, shadowClass.getProtectionDomain());
+            invokerCtClass.detach();
+            return (ShadowInvoker) invokerClass.newInstance();
+        } catch (NotFoundException e) {
+            throw new RuntimeException("couldn't generate invoker for " + method, e);
+        } catch (CannotCompileException e) {
+            throw new RuntimeException("couldn't generate invoker for " + method, e);
+        } catch (InstantiationException e) {
+            throw new RuntimeException("couldn't generate invoker for " + method, e);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException("couldn't generate invoker for " + method, e);
+        }
+    }
+
+    String generateInvokeMethod(Method method) {
+        Class<?> returnType = method.getReturnType();
+        StringBuilder call = new StringBuilder();
+        appendTarget(call, method);
+        call.append(".").append(method.getName()).append("(");
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) call.append(", ");
+            appendUnboxedParam(call, parameterTypes[i], i);
+        }
+        call.append(")");
+
+        StringBuilder buf = new StringBuilder();
+        buf.append("public Object invoke(Object shadow, Object[] params) {\n");
+        if (returnType == Void.TYPE) {
+            buf.append(call).append(";\n");
+            buf.append("return null;\n");
+        } else if (returnType.isPrimitive()) {
+            buf.append("return ").append(Type.find(returnType).nonPrimitiveClassName(null)).append(".valueOf(").append(call).append(");\n");
+        } else {
+            buf.append("return ").append(call).append(";\n");
+        }
+        buf.append("}");
+        return buf.toString();
+    }
+
+    /**
+     * @return source for the primitive-specialized {@code invokeX} override, or null if the method's descriptor has no
+     * specialized entry point
+     */
+    String generateSpecializedInvokeMethod(Method method) {
+        String descriptor = descriptorOf(method);
+        if (!ShadowInvoker.SPECIALIZED_DESCRIPTORS.contains(descriptor)) {
+            return null;
+        }
+
+        Class<?> returnType = method.getReturnType();
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        StringBuilder buf = new StringBuilder();
+        buf.append("public ").append(returnType.getName()).append(" invoke").append(ShadowInvoker.specializedSuffix(descriptor));
+        buf.append("(Object shadow");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            buf.append(", ").append(parameterTypes[i].getName()).append(" p").append(i);
+        }
+        buf.append(") {\n");
+        if (returnType != Void.TYPE) {
+            buf.append("return ");
+        }
+        appendTarget(buf, method);
+        buf.append(".").append(method.getName()).append("(");
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (i > 0) buf.append(", ");
+            buf.append("p").append(i);
+        }
+        buf.append(");\n");
+        buf.append("}");
+        return buf.toString();
+    }
+
+    private void appendTarget(StringBuilder buf, Method method) {
+        if (Modifier.isStatic(method.getModifiers())) {
+            buf.append(sourceName(method.getDeclaringClass()));
+        } else {
+            buf.append("((").append(sourceName(method.getDeclaringClass())).append(") shadow)");
+        }
+    }
+
+    static String descriptorOf(Method method) {
+        StringBuilder buf = new StringBuilder("(");
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            buf.append(descriptorOf(parameterType));
+        }
+        buf.append(")").append(descriptorOf(method.getReturnType()));
+        return buf.toString();
+    }
+
+    private static String descriptorOf(Class<?> clazz) {
+        if (clazz.isArray()) {
+            return clazz.getName().replace('.', '/');
+        }
+        if (clazz == Void.TYPE) return "V";
+        if (clazz == Boolean.TYPE) return "Z";
+        if (clazz == Byte.TYPE) return "B";
+        if (clazz == Character.TYPE) return "C";
+        if (clazz == Short.TYPE) return "S";
+        if (clazz == Integer.TYPE) return "I";
+        if (clazz == Long.TYPE) return "J";
+        if (clazz == Float.TYPE) return "F";
+        if (clazz == Double.TYPE) return "D";
+        return "L" + clazz.getName().replace('.', '/') + ";";
+    }
+
+    private void appendUnboxedParam(StringBuilder buf, Class<?> parameterType, int index) {
+        if (parameterType.isPrimitive()) {
+            Type type = Type.find(parameterType);
+            buf.append("((").append(type.nonPrimitiveClassName(null)).append(") params[").append(index).append("])").append(type.unboxString());
+        } else {
+            buf.append("(").append(sourceName(parameterType)).append(") params[").append(index).append("]");
+        }
+    }
+
+    private static String sourceName(Class<?> clazz) {
+        String suffix = "";
+        while (clazz.isArray()) {
+            suffix += "[]";
+            clazz = clazz.getComponentType();
+        }
+        return clazz.getName() + suffix;
+    }
+
+    private boolean canCallDirectly(Method method) {
+        if (Modifier.isPrivate(method.getModifiers())) {
+            return false;
+        }
+        for (Class<?> clazz = method.getDeclaringClass(); clazz != null; clazz = clazz.getEnclosingClass()) {
+            if (Modifier.isPrivate(clazz.getModifiers())) {
+                return false;
+            }
+        }
+        for (Class<?> parameterType : method.getParameterTypes()) {
+            if (!isAccessibleFrom(parameterType, method.getDeclaringClass())) {
+                return false;
+            }
+        }
+        return method.getDeclaringClass().getClassLoader() != null;
+    }
+
+    private boolean isAccessibleFrom(Class<?> type, Class<?> shadowClass) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getEnclosingClass()) {
+            int modifiers = clazz.getModifiers();
+            if (Modifier.isPrivate(modifiers)) {
+                return false;
+            }
+            if (!Modifier.isPublic(modifiers) && !samePackage(clazz, shadowClass)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean samePackage(Class<?> a, Class<?> b) {
+        return packageName(a).equals(packageName(b)) && a.getClassLoader() == b.getClassLoader();
+    }
+
+    private String packageName(Class<?> clazz) {
+        String name = clazz.getName();
+        int lastDot = name.lastIndexOf('.');
+        return lastDot == -1 ? "" : name.substring(0, lastDot);
+    }
+
+    private ClassPool getClassPool(ClassLoader classLoader) {
+        ClassPool classPool = classPools.get(classLoader);
+        if (classPool == null) {
+            classPool = new ClassPool(true);
+            classPool.appendClassPath(new LoaderClassPath(classLoader));
+            classPools.put(classLoader, classPool);
+        }
+        return classPool;
+    }
+}
@@ -21,26 +21,73 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ShadowWrangler implements ClassHandler {
     public static final String SHADOW_FIELD_NAME = "__shadow__";
 
     private static ShadowWrangler singleton;
+    private static final ThreadLocal<ShadowWrangler> THREAD_INSTANCE = new InheritableThreadLocal<ShadowWrangler>();
+
+    // reused for lookups so that dispatching a call doesn't allocate a key
+    private static final ThreadLocal<InvocationKey> LOOKUP_KEY = new ThreadLocal<InvocationKey>() {
+        @Override protected InvocationKey initialValue() {
+            return new InvocationKey();
+        }
+    };
 
     public boolean debug = false;
     private boolean strictI18n = false;
     
     private final Map<Class, MetaShadow> metaShadowMap = new HashMap<Class, MetaShadow>();
-    private Map<String, String> shadowClassMap = new HashMap<String, String>();
-    private Map<Class, Field> shadowFieldMap = new HashMap<Class, Field>();
+    // bound once per ClassLoader and left alone between tests; shadowClassMap holds each test's own bindings on top.
+    // Both are only changed holding bindingsLock, but are read by calls dispatched without it.
+    private volatile Map<String, String> defaultShadowClassMap = null;
+    private volatile Map<String, String> shadowClassMap = new ConcurrentHashMap<String, String>();
+    // the bindings the current invocation plans and no-shadow guards were made for
+    private Map<String, String> plannedDefaultShadowClassMap = null;
+    private Map<String, String> plannedShadowClassMap = new HashMap<String, String>();
+    private volatile boolean bindingsSettled = true;
+    // held while the bindings are changed or settled, while invocation plans are published and while the no-shadow
+    // guards are set or cleared, since calls can be dispatched from background threads (see RealBackgroundThreads)
+    private final Object bindingsLock = new Object();
+    // bumped whenever the invocation plans are cleared, so that plans made against the old bindings, which may still
+    // be being made on other threads, are neither published nor allowed to set no-shadow guards
+    private volatile long plansGeneration;
+    private final ConcurrentMap<Class, Field> shadowFieldMap = new ConcurrentHashMap<Class, Field>();
+    private final ConcurrentMap<InvocationKey, InvocationPlan> invocationPlans = new ConcurrentHashMap<InvocationKey, InvocationPlan>();
+    private final List<Field> noShadowGuards = new ArrayList<Field>();
     private boolean logMissingShadowMethods = false;
+    private final AtomicLong dispatchCount = new AtomicLong();
+    private boolean useGeneratedInvokers = Boolean.valueOf(System.getProperty("robolectric.generatedShadowInvokers"));
+    private final ShadowInvokerGenerator shadowInvokerGenerator = new ShadowInvokerGenerator();
 
     // sorry! it really only makes sense to have one per ClassLoader anyway though [xw/hu]
     public static ShadowWrangler getInstance() {
-        if (singleton == null) {
-            singleton = new ShadowWrangler();
+        ShadowWrangler threadInstance = THREAD_INSTANCE.get();
+        if (threadInstance != null) {
+            return threadInstance;
+        }
+        synchronized (ShadowWrangler.class) {
+            if (singleton == null) {
+                singleton = new ShadowWrangler();
+            }
+            return singleton;
         }
-        return singleton;
+    }
+
+    /**
+     * Gives the current thread, and threads it starts, a ShadowWrangler of their own, so that tests running in
+     * parallel (each in its own {@link RobolectricClassLoader}) don't share shadow bindings.
+     *
+     * @return the current thread's new ShadowWrangler
+     */
+    public static ShadowWrangler newInstanceForCurrentThread() {
+        ShadowWrangler threadInstance = new ShadowWrangler();
+        THREAD_INSTANCE.set(threadInstance);
+        return threadInstance;
     }
 
     private ShadowWrangler() {
@@ -69,42 +116,342 @@ public class ShadowWrangler implements ClassHandler {
         }
     }
 
+    /**
+     * Unbinds every shadow class. Invocation plans and no-shadow guards are kept until the next call is dispatched, so
+     * if the test binds the same shadows again as the one before it, they don't need to be worked out again.
+     */
     @Override
     public void beforeTest() {
-        shadowClassMap.clear();
+        synchronized (bindingsLock) {
+            defaultShadowClassMap = null;
+            shadowClassMap = new ConcurrentHashMap<String, String>();
+            bindingsSettled = false;
+        }
     }
 
     @Override
     public void afterTest() {
     }
 
+    /**
+     * @return how many calls have been dispatched to this wrangler
+     */
+    public long getDispatchCount() {
+        return dispatchCount.get();
+    }
+
     public void bindShadowClass(Class<?> realClass, Class<?> shadowClass) {
-        shadowClassMap.put(realClass.getName(), shadowClass.getName());
+        synchronized (bindingsLock) {
+            shadowClassMap.put(realClass.getName(), shadowClass.getName());
+            if (!shadowClass.getName().equals(getPlannedShadowClassName(realClass.getName()))) {
+                bindingsChanged();
+            }
+        }
         if (debug) System.out.println("shadow " + realClass + " with " + shadowClass);
     }
 
+    /**
+     * Binds a table of real class names to shadow class names underneath the bindings made by
+     * {@link #bindShadowClass(Class, Class)}. Binding the same table again after {@link #beforeTest()} is cheap, so it
+     * should be built once and reused.
+     *
+     * @param defaultShadowClassMap an unmodifiable map of real class names to shadow class names
+     */
+    public void bindDefaultShadowClasses(Map<String, String> defaultShadowClassMap) {
+        synchronized (bindingsLock) {
+            this.defaultShadowClassMap = defaultShadowClassMap;
+            if (defaultShadowClassMap != plannedDefaultShadowClassMap) {
+                bindingsChanged();
+                return;
+            }
+            for (String realClassName : shadowClassMap.keySet()) {
+                if (!getShadowClassName(realClassName).equals(getPlannedShadowClassName(realClassName))) {
+                    bindingsChanged();
+                    return;
+                }
+            }
+            for (String realClassName : plannedShadowClassMap.keySet()) {
+                String shadowClassName = getShadowClassName(realClassName);
+                if (shadowClassName != null && !shadowClassName.equals(getPlannedShadowClassName(realClassName))) {
+                    bindingsChanged();
+                    return;
+                }
+            }
+        }
+    }
+
+    /*
+     * A shadow class has been bound that the invocation plans and no-shadow guards don't know about; they have to be
+     * thrown away straight away, since guarded calls never reach us to notice. Called holding bindingsLock.
+     */
+    private void bindingsChanged() {
+        clearInvocationPlans();
+        plannedDefaultShadowClassMap = defaultShadowClassMap;
+        plannedShadowClassMap = new HashMap<String, String>(shadowClassMap);
+        bindingsSettled = true;
+    }
+
+    /*
+     * Bindings that have only been removed since the plans were made leave the no-shadow guards correct, so whether the
+     * plans are still good can wait until a call is dispatched.
+     */
+    private void settleBindings() {
+        synchronized (bindingsLock) {
+            if (bindingsSettled) {
+                return;
+            }
+            if (defaultShadowClassMap != plannedDefaultShadowClassMap || !shadowClassMap.equals(plannedShadowClassMap)) {
+                bindingsChanged();
+            }
+            bindingsSettled = true;
+        }
+    }
+
     @Override
     public Object methodInvoked(Class clazz, String methodName, Object instance, String[] paramTypes, Object[] params) throws Throwable {
-        InvocationPlan invocationPlan = new InvocationPlan(clazz, methodName, instance, paramTypes);
-        if (!invocationPlan.prepare()) {
-            reportNoShadowMethodFound(clazz, methodName, paramTypes);
+        InvocationPlan invocationPlan = getInvocationPlan(clazz, methodName, paramTypes);
+        Object shadow = shadowFor(invocationPlan, instance);
+        ShadowMethod shadowMethod = getShadowMethod(invocationPlan, shadow, paramTypes);
+        if (shadowMethod == ShadowMethod.NONE) {
             return null;
         }
-        
-        if (strictI18n && !invocationPlan.isI18nSafe()) {
-        	throw new I18nException("Method " + methodName + " on class " + clazz.getName() + " is not i18n-safe.");
+
+        try {
+            return shadowMethod.invoker.invoke(shadow, params);
+        } catch (Throwable t) {
+            throw stripStackTrace(t);
+        }
+    }
+
+    @Override
+    public void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, int a) throws Throwable {
+        InvocationPlan invocationPlan = getInvocationPlan(clazz, methodName, paramTypes);
+        Object shadow = shadowFor(invocationPlan, instance);
+        ShadowMethod shadowMethod = getShadowMethod(invocationPlan, shadow, paramTypes);
+        if (shadowMethod != ShadowMethod.NONE) {
+            try {
+                shadowMethod.invoker.invokeV(shadow, a);
+            } catch (Throwable t) {
+                throw stripStackTrace(t);
+            }
+        }
+    }
+
+    @Override
+    public void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, int a, int b) throws Throwable {
+        InvocationPlan invocationPlan = getInvocationPlan(clazz, methodName, paramTypes);
+        Object shadow = shadowFor(invocationPlan, instance);
+        ShadowMethod shadowMethod = getShadowMethod(invocationPlan, shadow, paramTypes);
+        if (shadowMethod != ShadowMethod.NONE) {
+            try {
+                shadowMethod.invoker.invokeV(shadow, a, b);
+            } catch (Throwable t) {
+                throw stripStackTrace(t);
+            }
+        }
+    }
+
+    @Override
+    public void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, long a) throws Throwable {
+        InvocationPlan invocationPlan = getInvocationPlan(clazz, methodName, paramTypes);
+        Object shadow = shadowFor(invocationPlan, instance);
+        ShadowMethod shadowMethod = getShadowMethod(invocationPlan, shadow, paramTypes);
+        if (shadowMethod != ShadowMethod.NONE) {
+            try {
+                shadowMethod.invoker.invokeV(shadow, a);
+            } catch (Throwable t) {
+                throw stripStackTrace(t);
+            }
+        }
+    }
+
+    @Override
+    public void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, float a) throws Throwable {
+        InvocationPlan invocationPlan = getInvocationPlan(clazz, methodName, paramTypes);
+        Object shadow = shadowFor(invocationPlan, instance);
+        ShadowMethod shadowMethod = getShadowMethod(invocationPlan, shadow, paramTypes);
+        if (shadowMethod != ShadowMethod.NONE) {
+            try {
+                shadowMethod.invoker.invokeV(shadow, a);
+            } catch (Throwable t) {
+                throw stripStackTrace(t);
+            }
+        }
+    }
+
+    @Override
+    public void methodInvokedV(Class clazz, String methodName, Object instance, String[] paramTypes, boolean a) throws Throwable {
+        InvocationPlan invocationPlan = getInvocationPlan(clazz, methodName, paramTypes);
+        Object shadow = shadowFor(invocationPlan, instance);
+        ShadowMethod shadowMethod = getShadowMethod(invocationPlan, shadow, paramTypes);
+        if (shadowMethod != ShadowMethod.NONE) {
+            try {
+                shadowMethod.invoker.invokeV(shadow, a);
+            } catch (Throwable t) {
+                throw stripStackTrace(t);
+            }
+        }
+    }
+
+    @Override
+    public int methodInvokedI(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable {
+        InvocationPlan invocationPlan = getInvocationPlan(clazz, methodName, paramTypes);
+        Object shadow = shadowFor(invocationPlan, instance);
+        ShadowMethod shadowMethod = getShadowMethod(invocationPlan, shadow, paramTypes);
+        if (shadowMethod == ShadowMethod.NONE) {
+            return 0;
         }
 
         try {
-            return invocationPlan.getMethod().invoke(invocationPlan.getShadow(), params);
-        } catch (IllegalArgumentException e) {
-            throw new RuntimeException(invocationPlan.getShadow().getClass().getName() + " is not assignable from " +
-                    invocationPlan.getDeclaredShadowClass().getName(), e);
-        } catch (InvocationTargetException e) {
-            throw stripStackTrace(e.getCause());
+            return shadowMethod.invoker.invokeI(shadow);
+        } catch (Throwable t) {
+            throw stripStackTrace(t);
+        }
+    }
+
+    @Override
+    public long methodInvokedJ(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable {
+        InvocationPlan invocationPlan = getInvocationPlan(clazz, methodName, paramTypes);
+        Object shadow = shadowFor(invocationPlan, instance);
+        ShadowMethod shadowMethod = getShadowMethod(invocationPlan, shadow, paramTypes);
+        if (shadowMethod == ShadowMethod.NONE) {
+            return 0;
+        }
+
+        try {
+            return shadowMethod.invoker.invokeJ(shadow);
+        } catch (Throwable t) {
+            throw stripStackTrace(t);
+        }
+    }
+
+    @Override
+    public float methodInvokedF(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable {
+        InvocationPlan invocationPlan = getInvocationPlan(clazz, methodName, paramTypes);
+        Object shadow = shadowFor(invocationPlan, instance);
+        ShadowMethod shadowMethod = getShadowMethod(invocationPlan, shadow, paramTypes);
+        if (shadowMethod == ShadowMethod.NONE) {
+            return 0;
+        }
+
+        try {
+            return shadowMethod.invoker.invokeF(shadow);
+        } catch (Throwable t) {
+            throw stripStackTrace(t);
         }
     }
 
+    @Override
+    public boolean methodInvokedZ(Class clazz, String methodName, Object instance, String[] paramTypes) throws Throwable {
+        InvocationPlan invocationPlan = getInvocationPlan(clazz, methodName, paramTypes);
+        Object shadow = shadowFor(invocationPlan, instance);
+        ShadowMethod shadowMethod = getShadowMethod(invocationPlan, shadow, paramTypes);
+        if (shadowMethod == ShadowMethod.NONE) {
+            return false;
+        }
+
+        try {
+            return shadowMethod.invoker.invokeZ(shadow);
+        } catch (Throwable t) {
+            throw stripStackTrace(t);
+        }
+    }
+
+    /**
+     * @return the shadow to call for {@code instance}, or null for static methods and for classes with no shadow
+     */
+    private Object shadowFor(InvocationPlan invocationPlan, Object instance) {
+        if (instance == null || !invocationPlan.hasShadowClass()) {
+            return null;
+        }
+        return shadowFor(instance);
+    }
+
+    /**
+     * @return the shadow method to call, or {@link ShadowMethod#NONE} if the invocation should fall through to the
+     * default behavior
+     */
+    private ShadowMethod getShadowMethod(InvocationPlan invocationPlan, Object shadow, String[] paramTypes) {
+        ShadowMethod shadowMethod = invocationPlan.hasShadowClass() ? invocationPlan.getShadowMethod(shadow) : ShadowMethod.NONE;
+        if (shadowMethod == ShadowMethod.NONE) {
+            reportNoShadowMethodFound(invocationPlan.clazz, invocationPlan.methodName, paramTypes);
+            return ShadowMethod.NONE;
+        }
+
+        if (strictI18n && !shadowMethod.i18nSafe) {
+        	throw new I18nException("Method " + invocationPlan.methodName + " on class " + invocationPlan.clazz.getName() + " is not i18n-safe.");
+        }
+        return shadowMethod;
+    }
+
+    private void clearInvocationPlans() {
+        synchronized (bindingsLock) {
+            plansGeneration++;
+            invocationPlans.clear();
+            for (Field noShadowGuard : noShadowGuards) {
+                writeStaticBoolean(noShadowGuard, false);
+            }
+            noShadowGuards.clear();
+        }
+    }
+
+    /**
+     * Instrumented methods check a static guard field before calling into the ClassHandler. Once we know that no
+     * shadow method can be found for a call no matter which instance it's made on, we set that field so later calls
+     * return straight away. The guards are reset whenever the shadow bindings change, and a plan made before they last
+     * changed doesn't set them.
+     */
+    private void setNoShadowGuard(long generation, Class clazz, String methodName, String[] paramTypes) {
+        if (logMissingShadowMethods || debug) {
+            return;
+        }
+
+        Field field;
+        try {
+            field = clazz.getDeclaredField(AndroidTranslator.noShadowGuardFieldName(methodName, paramTypes));
+        } catch (NoSuchFieldException e) {
+            return; // not instrumented with guards
+        }
+        field.setAccessible(true);
+        synchronized (bindingsLock) {
+            if (generation != plansGeneration) {
+                return;
+            }
+            writeStaticBoolean(field, true);
+            noShadowGuards.add(field);
+        }
+    }
+
+    private void writeStaticBoolean(Field field, boolean value) {
+        try {
+            field.setBoolean(null, value);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private InvocationPlan getInvocationPlan(Class clazz, String methodName, String[] paramTypes) {
+        dispatchCount.incrementAndGet();
+        if (!bindingsSettled) {
+            settleBindings();
+        }
+        InvocationPlan invocationPlan = invocationPlans.get(LOOKUP_KEY.get().set(clazz, methodName, paramTypes));
+        while (invocationPlan == null) {
+            InvocationPlan newInvocationPlan = new InvocationPlan(plansGeneration, clazz, methodName, paramTypes);
+            synchronized (bindingsLock) {
+                // if the bindings changed while it was being made, it's made again against the new ones
+                if (newInvocationPlan.generation == plansGeneration) {
+                    // the lookup key belongs to this thread and is reused, so the plan is stored under a key of its own
+                    invocationPlan = invocationPlans.putIfAbsent(new InvocationKey(clazz, methodName, paramTypes), newInvocationPlan);
+                    if (invocationPlan == null) {
+                        invocationPlan = newInvocationPlan;
+                    }
+                }
+            }
+        }
+        return invocationPlan;
+    }
+
     private <T extends Throwable> T stripStackTrace(T throwable) {
         List<StackTraceElement> stackTrace = new ArrayList<StackTraceElement>();
         for (StackTraceElement stackTraceElement : throwable.getStackTrace()) {
@@ -112,7 +459,10 @@ public class ShadowWrangler implements ClassHandler {
             boolean isInternalCall = className.startsWith("sun.reflect.")
                     || className.startsWith("java.lang.reflect.")
                     || className.equals(ShadowWrangler.class.getName())
-                    || className.equals(RobolectricInternals.class.getName());
+                    || className.startsWith(ShadowWrangler.class.getName() + "$")
+                    || className.equals(ShadowInvoker.class.getName())
+                    || className.equals(RobolectricInternals.class.getName())
+                    || className.contains(ShadowInvokerGenerator.INVOKER_CLASS_MARKER);
             if (!isInternalCall) {
                 stackTrace.add(stackTraceElement);
             }
@@ -209,12 +559,28 @@ public class ShadowWrangler implements ClassHandler {
     private String getShadowClassName(Class clazz) {
         String shadowClassName = null;
         while (shadowClassName == null && clazz != null) {
-            shadowClassName = shadowClassMap.get(clazz.getName());
+            shadowClassName = getShadowClassName(clazz.getName());
             clazz = clazz.getSuperclass();
         }
         return shadowClassName;
     }
 
+    private String getShadowClassName(String realClassName) {
+        String shadowClassName = shadowClassMap.get(realClassName);
+        if (shadowClassName == null && defaultShadowClassMap != null) {
+            shadowClassName = defaultShadowClassMap.get(realClassName);
+        }
+        return shadowClassName;
+    }
+
+    private String getPlannedShadowClassName(String realClassName) {
+        String shadowClassName = plannedShadowClassMap.get(realClassName);
+        if (shadowClassName == null && plannedDefaultShadowClassMap != null) {
+            shadowClassName = plannedDefaultShadowClassMap.get(realClassName);
+        }
+        return shadowClassName;
+    }
+
     private Constructor<?> findConstructor(Object instance, Class<?> shadowClass) {
         Class clazz = instance.getClass();
 
@@ -238,7 +604,7 @@ public class ShadowWrangler implements ClassHandler {
             } catch (NoSuchFieldException e) {
                 throw new RuntimeException(instance.getClass().getName() + " has no shadow field", e);
             }
-            shadowFieldMap.put(clazz, field);
+            shadowFieldMap.putIfAbsent(clazz, field);
         }
         return field;
     }
@@ -269,96 +635,160 @@ public class ShadowWrangler implements ClassHandler {
 
     public void logMissingInvokedShadowMethods() {
         logMissingShadowMethods = true;
+        clearInvocationPlans(); // guarded calls would never be logged
     }
 
     public void silence() {
         logMissingShadowMethods = false;
     }
 
-    private class InvocationPlan {
+    /**
+     * Chooses how shadow methods are called: through generated {@link ShadowInvoker} classes which call the shadow
+     * method directly, or through {@link Method#invoke}. Defaults to reflection unless the
+     * {@code robolectric.generatedShadowInvokers} system property is set to true.
+     *
+     * @param useGeneratedInvokers true to generate invokers, false to use reflection
+     */
+    public void setUseGeneratedInvokers(boolean useGeneratedInvokers) {
+        this.useGeneratedInvokers = useGeneratedInvokers;
+        clearInvocationPlans();
+    }
+
+    private static class InvocationKey {
         private Class clazz;
-        private ClassLoader classLoader;
         private String methodName;
-        private Object instance;
         private String[] paramTypes;
-        private Class<?> declaredShadowClass;
-        private Method method;
-        private Object shadow;
+        private int hashCode;
 
-        public InvocationPlan(Class clazz, String methodName, Object instance, String... paramTypes) {
-            this.clazz = clazz;
-            this.classLoader = clazz.getClassLoader();
-            this.methodName = methodName;
-            this.instance = instance;
-            this.paramTypes = paramTypes;
+        InvocationKey() {
         }
 
-        public Class<?> getDeclaredShadowClass() {
-            return declaredShadowClass;
+        InvocationKey(Class clazz, String methodName, String[] paramTypes) {
+            set(clazz, methodName, paramTypes);
         }
 
-        public Method getMethod() {
-            return method;
+        InvocationKey set(Class clazz, String methodName, String[] paramTypes) {
+            this.clazz = clazz;
+            this.methodName = methodName;
+            this.paramTypes = paramTypes;
+            this.hashCode = 31 * (31 * clazz.hashCode() + methodName.hashCode()) + Arrays.hashCode(paramTypes);
+            return this;
         }
 
-        public Object getShadow() {
-            return shadow;
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof InvocationKey)) return false;
+            InvocationKey that = (InvocationKey) o;
+            return clazz == that.clazz && methodName.equals(that.methodName) && Arrays.equals(paramTypes, that.paramTypes);
         }
-        
-        public boolean isI18nSafe() {
-        	// method is loaded by another class loader. So do everything reflectively.
-        	Annotation[] annos = method.getAnnotations();
-        	for (int i = 0; i < annos.length; i++) {
-        		String name = annos[i].annotationType().getName();
-        		if (name.equals("com.xtremelabs.robolectric.internal.Implementation")) {
-					try {
-						Method m = (annos[i]).getClass().getMethod("i18nSafe");
-	        			return (Boolean) m.invoke(annos[i]);
-					} catch (Exception e) {
-						return true;	// should probably throw some other exception
-					}
-        		}
-        	}
-        	
-        	return true;	
+
+        @Override
+        public int hashCode() {
+            return hashCode;
         }
+    }
 
-        public boolean prepare() {
-            Class<?>[] paramClasses = getParamClasses();
+    /**
+     * Resolved dispatch for one instrumented method. Built the first time the method is invoked and reused until the
+     * shadow bindings change.
+     */
+    private class InvocationPlan {
+        private final long generation;
+        private final Class clazz;
+        private final ClassLoader classLoader;
+        private final String methodName;
+        private final String shadowMethodName;
+        private final String[] paramTypes;
+        private final Class<?>[] paramClasses;
+        private final Class<?> declaredShadowClass;
+        private final ConcurrentMap<Class<?>, ShadowMethod> shadowMethods = new ConcurrentHashMap<Class<?>, ShadowMethod>();
+        private volatile ShadowMethod staticShadowMethod;
+
+        public InvocationPlan(long generation, Class clazz, String methodName, String... paramTypes) {
+            this.generation = generation;
+            this.clazz = clazz;
+            this.classLoader = clazz.getClassLoader();
+            this.methodName = methodName;
+            this.shadowMethodName = methodName.equals("<init>") ? "__constructor__" : methodName;
+            this.paramTypes = paramTypes;
+            this.paramClasses = getParamClasses(paramTypes);
 
             Class<?> originalClass = loadClass(clazz.getName(), classLoader);
-
-            declaredShadowClass = findDeclaredShadowClassForMethod(originalClass, methodName, paramClasses);
+            this.declaredShadowClass = findDeclaredShadowClassForMethod(originalClass, methodName, paramClasses);
             if (declaredShadowClass == null) {
-                return false;
+                setNoShadowGuard(generation, clazz, methodName, paramTypes);
             }
+        }
 
-            if (methodName.equals("<init>")) {
-                methodName = "__constructor__";
+        public boolean hasShadowClass() {
+            return declaredShadowClass != null;
+        }
+
+        /**
+         * @return the shadow method to call for {@code shadow}, or {@link ShadowMethod#NONE} if the shadow class
+         * doesn't implement it
+         */
+        public ShadowMethod getShadowMethod(Object shadow) {
+            if (shadow == null) {
+                if (staticShadowMethod == null) {
+                    staticShadowMethod = resolve(findShadowClass(clazz), true);
+                    if (staticShadowMethod == ShadowMethod.NONE) {
+                        setNoShadowGuard(generation, clazz, methodName, paramTypes);
+                    }
+                }
+                return staticShadowMethod;
             }
 
-            if (instance != null) {
-                shadow = shadowFor(instance);
-                method = getMethod(shadow.getClass(), methodName, paramClasses);
-            } else {
-                shadow = null;
-                method = getMethod(findShadowClass(clazz), methodName, paramClasses);
+            Class<?> shadowClass = shadow.getClass();
+            ShadowMethod shadowMethod = shadowMethods.get(shadowClass);
+            if (shadowMethod == null) {
+                ShadowMethod resolvedShadowMethod = resolve(shadowClass, false);
+                shadowMethod = shadowMethods.putIfAbsent(shadowClass, resolvedShadowMethod);
+                if (shadowMethod == null) {
+                    shadowMethod = resolvedShadowMethod;
+                }
             }
+            return shadowMethod;
+        }
 
+        private ShadowMethod resolve(Class<?> shadowClass, boolean isStatic) {
+            Method method = getMethod(shadowClass, shadowMethodName, paramClasses);
             if (method == null) {
                 if (debug) {
-                    System.out.println("No method found for " + clazz + "." + methodName + "(" + Arrays.asList(paramClasses) + ") on " + declaredShadowClass.getName());
+                    System.out.println("No method found for " + clazz + "." + shadowMethodName + "(" + Arrays.asList(paramClasses) + ") on " + declaredShadowClass.getName());
                 }
-                return false;
+                return ShadowMethod.NONE;
             }
 
-            if ((instance == null) != Modifier.isStatic(method.getModifiers())) {
-                throw new RuntimeException("method staticness of " + clazz.getName() + "." + methodName + " and " + declaredShadowClass.getName() + "." + method.getName() + " don't match");
+            if (isStatic != Modifier.isStatic(method.getModifiers())) {
+                throw new RuntimeException("method staticness of " + clazz.getName() + "." + shadowMethodName + " and " + declaredShadowClass.getName() + "." + method.getName() + " don't match");
             }
 
             method.setAccessible(true);
+            ShadowInvoker invoker = useGeneratedInvokers ? shadowInvokerGenerator.generate(method) : null;
+            if (invoker == null) {
+                invoker = new ReflectiveShadowInvoker(method);
+            }
+            return new ShadowMethod(invoker, isI18nSafe(method));
+        }
 
-            return true;
+        private boolean isI18nSafe(Method method) {
+        	// method is loaded by another class loader. So do everything reflectively.
+        	Annotation[] annos = method.getAnnotations();
+        	for (int i = 0; i < annos.length; i++) {
+        		String name = annos[i].annotationType().getName();
+        		if (name.equals("com.xtremelabs.robolectric.internal.Implementation")) {
+					try {
+						Method m = (annos[i]).getClass().getMethod("i18nSafe");
+	        			return (Boolean) m.invoke(annos[i]);
+					} catch (Exception e) {
+						return true;	// should probably throw some other exception
+					}
+        		}
+        	}
+        	
+        	return true;	
         }
 
         private Class<?> findDeclaredShadowClassForMethod(Class<?> originalClass, String methodName, Class<?>[] paramClasses) {
@@ -376,7 +806,7 @@ public class ShadowWrangler implements ClassHandler {
 
         private Class<?> findDeclaringClassForMethod(String methodName, Class<?>[] paramClasses, Class<?> originalClass) {
             Class<?> declaringClass;
-            if (this.methodName.equals("<init>")) {
+            if (methodName.equals("<init>")) {
                 declaringClass = originalClass;
             } else {
                 Method originalMethod;
@@ -390,7 +820,7 @@ public class ShadowWrangler implements ClassHandler {
             return declaringClass;
         }
 
-        private Class<?>[] getParamClasses() {
+        private Class<?>[] getParamClasses(String[] paramTypes) {
             Class<?>[] paramClasses = new Class<?>[paramTypes.length];
 
             for (int i = 0; i < paramTypes.length; i++) {
@@ -432,8 +862,40 @@ public class ShadowWrangler implements ClassHandler {
 
         @Override
         public String toString() {
-            return "delegating to " + declaredShadowClass.getName() + "." + method.getName()
-                    + "(" + Arrays.toString(method.getParameterTypes()) + ")";
+            return "delegating " + clazz.getName() + "." + methodName + "(" + Arrays.toString(paramClasses) + ") to "
+                    + (declaredShadowClass == null ? "nothing" : declaredShadowClass.getName());
+        }
+    }
+
+    private static class ShadowMethod {
+        static final ShadowMethod NONE = new ShadowMethod(null, true);
+
+        final ShadowInvoker invoker;
+        final boolean i18nSafe;
+
+        ShadowMethod(ShadowInvoker invoker, boolean i18nSafe) {
+            this.invoker = invoker;
+            this.i18nSafe = i18nSafe;
+        }
+    }
+
+    private static class ReflectiveShadowInvoker extends ShadowInvoker {
+        private final Method method;
+
+        ReflectiveShadowInvoker(Method method) {
+            this.method = method;
+        }
+
+        @Override
+        public Object invoke(Object shadow, Object[] params) throws Throwable {
+            try {
+                return method.invoke(shadow, params);
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException((shadow == null ? "null" : shadow.getClass().getName()) + " is not assignable from " +
+                        method.getDeclaringClass().getName(), e);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
         }
     }
 
@@ -74,6 +74,18 @@ enum Type {
         }
     }
 
+    public static Type find(Class clazz) {
+        if (!clazz.isPrimitive()) {
+            return OBJECT;
+        }
+        for (Type type : Type.values()) {
+            if (type.type == clazz) {
+                return type;
+            }
+        }
+        throw new RuntimeException("unknown type " + clazz);
+    }
+
     public static Class findPrimitiveClass(String name) {
         for (Type type : Type.values()) {
             if (type.type != null && type.type.getName().equals(name)) {
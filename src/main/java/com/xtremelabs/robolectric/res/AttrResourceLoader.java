@@ -1,39 +1,30 @@
 package com.xtremelabs.robolectric.res;
 
 import android.view.View;
-import org.w3c.dom.Document;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathFactory;
-import java.io.File;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
-public class AttrResourceLoader extends XmlLoader {
+public class AttrResourceLoader extends StreamingXmlLoader {
     Map<String, String> classAttrEnumToValue = new HashMap<String, String>();
     Set<String> knownClassAttrs = new HashSet<String>();
+    private String viewName;
+    private String enumName;
 
     public AttrResourceLoader(ResourceExtractor resourceExtractor) {
         super(resourceExtractor);
     }
 
     @Override
-    protected void processResourceXml(File xmlFile, Document document, boolean isSystem) throws Exception {
-        XPathExpression stringsXPath = XPathFactory.newInstance().newXPath().compile("/resources/declare-styleable/attr/enum");
-        NodeList stringNodes = (NodeList) stringsXPath.evaluate(document, XPathConstants.NODESET);
-        for (int i = 0; i < stringNodes.getLength(); i++) {
-            Node node = stringNodes.item(i);
-            String viewName = node.getParentNode().getParentNode().getAttributes().getNamedItem("name").getNodeValue();
-            String enumName = node.getParentNode().getAttributes().getNamedItem("name").getNodeValue();
-            String name = node.getAttributes().getNamedItem("name").getNodeValue();
-            String value = node.getAttributes().getNamedItem("value").getNodeValue();
-
-            classAttrEnumToValue.put(key(viewName, enumName, name, isSystem), value);
+    protected void startElement(String path, String name, Map<String, String> attributes, boolean isSystem) {
+        if (path.equals("/resources/declare-styleable")) {
+            viewName = attributes.get("name");
+        } else if (path.equals("/resources/declare-styleable/attr")) {
+            enumName = attributes.get("name");
+        } else if (path.equals("/resources/declare-styleable/attr/enum")) {
+            classAttrEnumToValue.put(key(viewName, enumName, attributes.get("name"), isSystem), attributes.get("value"));
             knownClassAttrs.add(key(viewName, enumName, isSystem));
         }
     }
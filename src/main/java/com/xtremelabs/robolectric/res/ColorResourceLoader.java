@@ -1,12 +1,11 @@
 package com.xtremelabs.robolectric.res;
 
 import android.graphics.Color;
-import org.w3c.dom.Node;
 
 import java.util.HashMap;
 import java.util.Map;
 
-public class ColorResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter {
+public class ColorResourceLoader extends StreamingXmlLoader implements ResourceValueConverter {
     private ResourceReferenceResolver<Integer> colorResolver = new ResourceReferenceResolver<Integer>("color");
     private static Map<String, Integer> androidColors = new HashMap<String, Integer>();
 
@@ -25,7 +24,7 @@ public class ColorResourceLoader extends XpathResourceXmlLoader implements Resou
     }
 
     public ColorResourceLoader(ResourceExtractor resourceExtractor) {
-        super(resourceExtractor, "/resources/color");
+        super(resourceExtractor);
     }
 
     public int getValue(int colorId) {
@@ -41,8 +40,11 @@ public class ColorResourceLoader extends XpathResourceXmlLoader implements Resou
     }
 
     @Override
-    protected void processNode(Node node, String name, boolean isSystem) {
-        colorResolver.processResource(name, node.getTextContent(), this, isSystem);
+    protected void endElement(String path, String name, Map<String, String> attributes, String textContent,
+                              boolean isSystem) {
+        if (path.equals("/resources/color")) {
+            colorResolver.processResource(attributes.get("name"), textContent, this, isSystem);
+        }
     }
 
     @Override
@@ -2,27 +2,46 @@ package com.xtremelabs.robolectric.res;
 
 import org.w3c.dom.Document;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.File;
 import java.io.FileFilter;
 
 public class DocumentLoader {
-    private final XmlLoader[] xmlLoaders;
-    private final DocumentBuilderFactory documentBuilderFactory;
-    private FileFilter xmlFileFilter = new FileFilter() {
+    static final FileFilter XML_FILE_FILTER = new FileFilter() {
         @Override public boolean accept(File file) {
             return file.getName().endsWith(".xml");
         }
     };
 
+    private final XmlLoader[] xmlLoaders;
+    private final StreamingXmlLoader[] streamingXmlLoaders;
+    private final ResourceXmlParser resourceXmlParser;
+
     public DocumentLoader(XmlLoader... xmlLoaders) {
+        this(new ResourceXmlParser(), xmlLoaders);
+    }
+
+    /**
+     * @param resourceXmlParser where to get parsed files from, so that loaders sharing one don't parse the same files
+     *                          again
+     */
+    public DocumentLoader(ResourceXmlParser resourceXmlParser, XmlLoader... xmlLoaders) {
+        this.resourceXmlParser = resourceXmlParser;
         this.xmlLoaders = xmlLoaders;
+        this.streamingXmlLoaders = streamingXmlLoaders(xmlLoaders);
+    }
 
-        documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        documentBuilderFactory.setNamespaceAware(true);
-        documentBuilderFactory.setIgnoringComments(true);
-        documentBuilderFactory.setIgnoringElementContentWhitespace(true);
+    /*
+     * @return xmlLoaders if they all stream, so that files can be streamed through them without building DOMs
+     */
+    private static StreamingXmlLoader[] streamingXmlLoaders(XmlLoader[] xmlLoaders) {
+        StreamingXmlLoader[] streamingXmlLoaders = new StreamingXmlLoader[xmlLoaders.length];
+        for (int i = 0; i < xmlLoaders.length; i++) {
+            if (!(xmlLoaders[i] instanceof StreamingXmlLoader)) {
+                return null;
+            }
+            streamingXmlLoaders[i] = (StreamingXmlLoader) xmlLoaders[i];
+        }
+        return streamingXmlLoaders;
     }
 
     public void loadResourceXmlDirs(File... resourceXmlDirs) throws Exception {
@@ -48,20 +67,52 @@ public class DocumentLoader {
             throw new RuntimeException("no such directory " + resourceXmlDir);
         }
 
-        for (File file : resourceXmlDir.listFiles(xmlFileFilter)) {
-            loadResourceXmlFile(file, isSystem);
+        for (File file : resourceXmlDir.listFiles(XML_FILE_FILTER)) {
+            loadFile(file, isSystem);
         }
-    }
 
-    private void loadResourceXmlFile(File file, boolean isSystem) throws Exception {
         for (XmlLoader xmlLoader : xmlLoaders) {
-            xmlLoader.processResourceXml(file, parse(file), isSystem);
+            if (xmlLoader instanceof StreamingXmlLoader) {
+                ((StreamingXmlLoader) xmlLoader).endResourceXmlDir();
+            }
         }
     }
 
-    private Document parse(File xmlFile) throws Exception {
-        DocumentBuilder documentBuilder = documentBuilderFactory.newDocumentBuilder();
-        return documentBuilder.parse(xmlFile);
+    private void streamResourceXmlFile(File file, boolean isSystem) throws Exception {
+        ParsedXml parsedXml = resourceXmlParser.read(file);
+        for (StreamingXmlLoader streamingXmlLoader : streamingXmlLoaders) {
+            streamingXmlLoader.startResourceXml(file, isSystem);
+        }
+        parsedXml.replay(isSystem, streamingXmlLoaders);
+        for (StreamingXmlLoader streamingXmlLoader : streamingXmlLoaders) {
+            streamingXmlLoader.endResourceXml();
+        }
     }
 
+    /**
+     * Loads a single file of a directory, for loaders that load files as they're needed. Each file is only expected
+     * to be loaded this way once, so the parser doesn't keep it afterwards.
+     */
+    public void loadResourceXmlFile(File file, boolean isSystem) throws Exception {
+        try {
+            loadFile(file, isSystem);
+        } finally {
+            resourceXmlParser.forget(file);
+        }
+    }
+
+    private void loadFile(File file, boolean isSystem) throws Exception {
+        if (streamingXmlLoaders != null) {
+            streamResourceXmlFile(file, isSystem);
+        } else {
+            parseResourceXmlFile(file, isSystem);
+        }
+    }
+
+    private void parseResourceXmlFile(File file, boolean isSystem) throws Exception {
+        Document document = resourceXmlParser.parse(file);
+        for (XmlLoader xmlLoader : xmlLoaders) {
+            xmlLoader.processResourceXml(file, document, isSystem);
+        }
+    }
 }
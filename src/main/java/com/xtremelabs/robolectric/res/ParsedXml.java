@@ -0,0 +1,292 @@
+package com.xtremelabs.robolectric.res;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.SAXParser;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A resource XML file's elements, attributes and text, recorded as it was parsed in a compact binary form that's
+ * cheap to keep, to write to a {@link ResourceCache}, and to go through again.
+ * <p/>
+ * {@link StreamingXmlLoader}s are fed the recorded elements one by one; other loaders get a DOM built from them.
+ * Comments aren't recorded, and CDATA sections are recorded as plain text.
+ */
+final class ParsedXml {
+    private static final byte END = 0;
+    private static final byte ELEMENT = 1;
+    private static final byte TEXT = 2;
+    private static final byte PROCESSING_INSTRUCTION = 3;
+
+    private final byte[] data;
+
+    ParsedXml(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * @return the recording in {@code data}, as read back from a {@link ResourceCache}
+     * @throws IOException if {@code data} isn't a whole recording, e.g. because the cache file was damaged
+     */
+    static ParsedXml fromCachedData(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        checkChildren(in);
+        if (in.available() != 0) {
+            throw new IOException("unexpected data after the recording");
+        }
+        return new ParsedXml(data);
+    }
+
+    static ParsedXml parse(SAXParser saxParser, File xmlFile) throws Exception {
+        Recorder recorder = new Recorder();
+        saxParser.parse(xmlFile, recorder);
+        return new ParsedXml(recorder.toByteArray());
+    }
+
+    byte[] getData() {
+        return data;
+    }
+
+    Document toDocument(DocumentBuilder documentBuilder) throws IOException {
+        Document document = documentBuilder.newDocument();
+        appendChildren(newInput(), document, document);
+        return document;
+    }
+
+    /**
+     * Feeds the recorded elements to {@code loaders}, each element to every loader before the next element.
+     */
+    void replay(boolean isSystem, StreamingXmlLoader... loaders) throws Exception {
+        replayChildren(newInput(), "", new StringBuilder(), isSystem, loaders);
+    }
+
+    private DataInputStream newInput() {
+        return new DataInputStream(new ByteArrayInputStream(data));
+    }
+
+    private static void appendChildren(DataInputStream in, Document document, Node parent) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            switch (type) {
+                case ELEMENT:
+                    Element element = document.createElementNS(readNullableString(in), readString(in));
+                    int attributeCount = in.readInt();
+                    for (int i = 0; i < attributeCount; i++) {
+                        element.setAttributeNS(readNullableString(in), readString(in), readString(in));
+                    }
+                    parent.appendChild(element);
+                    appendChildren(in, document, element);
+                    break;
+                case TEXT:
+                    parent.appendChild(document.createTextNode(readString(in)));
+                    break;
+                case PROCESSING_INSTRUCTION:
+                    parent.appendChild(document.createProcessingInstruction(readString(in), readString(in)));
+                    break;
+                case END:
+                    return;
+                default:
+                    throw new IOException("unknown node type " + type);
+            }
+        }
+    }
+
+    private static void checkChildren(DataInputStream in) throws IOException {
+        while (true) {
+            byte type = in.readByte();
+            switch (type) {
+                case ELEMENT:
+                    skipNullableString(in);
+                    skipString(in);
+                    int attributeCount = in.readInt();
+                    for (int i = 0; i < attributeCount; i++) {
+                        skipNullableString(in);
+                        skipString(in);
+                        skipString(in);
+                    }
+                    checkChildren(in);
+                    break;
+                case TEXT:
+                    skipString(in);
+                    break;
+                case PROCESSING_INSTRUCTION:
+                    skipString(in);
+                    skipString(in);
+                    break;
+                case END:
+                    return;
+                default:
+                    throw new IOException("unknown node type " + type);
+            }
+        }
+    }
+
+    private static void replayChildren(DataInputStream in, String parentPath, StringBuilder text, boolean isSystem,
+                                       StreamingXmlLoader[] loaders) throws Exception {
+        while (true) {
+            byte type = in.readByte();
+            switch (type) {
+                case ELEMENT:
+                    readNullableString(in);
+                    String name = readString(in);
+                    int attributeCount = in.readInt();
+                    Map<String, String> attributes = new HashMap<String, String>();
+                    for (int i = 0; i < attributeCount; i++) {
+                        readNullableString(in);
+                        attributes.put(readString(in), readString(in));
+                    }
+
+                    String path = parentPath + "/" + name;
+                    for (StreamingXmlLoader loader : loaders) {
+                        loader.startElement(path, name, attributes, isSystem);
+                    }
+                    int textStart = text.length();
+                    replayChildren(in, path, text, isSystem, loaders);
+                    String textContent = text.substring(textStart);
+                    for (StreamingXmlLoader loader : loaders) {
+                        loader.endElement(path, name, attributes, textContent, isSystem);
+                    }
+                    break;
+                case TEXT:
+                    text.append(readString(in));
+                    break;
+                case PROCESSING_INSTRUCTION:
+                    readString(in);
+                    readString(in);
+                    break;
+                case END:
+                    return;
+                default:
+                    throw new IOException("unknown node type " + type);
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        // writeUTF would do, but text can be longer than its 64k limit
+        byte[] bytes = string.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void skipString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || in.skipBytes(length) != length) {
+            throw new IOException("bad string length " + length);
+        }
+    }
+
+    private static void writeNullableString(DataOutputStream out, String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            writeString(out, string);
+        }
+    }
+
+    private static String readNullableString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    private static void skipNullableString(DataInputStream in) throws IOException {
+        if (in.readBoolean()) {
+            skipString(in);
+        }
+    }
+
+    /*
+     * Needs the parser to report xmlns attributes (the namespace-prefixes feature), since they're part of the
+     * attributes views are inflated with.
+     */
+    private static class Recorder extends DefaultHandler {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final StringBuilder text = new StringBuilder();
+
+        @Override public void startElement(String uri, String localName, String qName, Attributes attributes)
+                throws SAXException {
+            try {
+                writeText();
+                out.writeByte(ELEMENT);
+                writeNullableString(out, uri.length() == 0 ? null : uri);
+                writeString(out, qName);
+                out.writeInt(attributes.getLength());
+                for (int i = 0; i < attributes.getLength(); i++) {
+                    String attributeName = attributes.getQName(i);
+                    String attributeUri = attributes.getURI(i);
+                    if (attributeName.equals("xmlns") || attributeName.startsWith("xmlns:")) {
+                        attributeUri = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+                    }
+                    writeNullableString(out, attributeUri.length() == 0 ? null : attributeUri);
+                    writeString(out, attributeName);
+                    writeString(out, attributes.getValue(i));
+                }
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        @Override public void characters(char[] ch, int start, int length) {
+            text.append(ch, start, length);
+        }
+
+        @Override public void processingInstruction(String target, String data) throws SAXException {
+            try {
+                writeText();
+                out.writeByte(PROCESSING_INSTRUCTION);
+                writeString(out, target);
+                writeString(out, data);
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        @Override public void endElement(String uri, String localName, String qName) throws SAXException {
+            writeEnd();
+        }
+
+        @Override public void endDocument() throws SAXException {
+            writeEnd();
+        }
+
+        byte[] toByteArray() {
+            return bytes.toByteArray();
+        }
+
+        private void writeEnd() throws SAXException {
+            try {
+                writeText();
+                out.writeByte(END);
+            } catch (IOException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        private void writeText() throws IOException {
+            if (text.length() > 0) {
+                out.writeByte(TEXT);
+                writeString(out, text.toString());
+                text.setLength(0);
+            }
+        }
+    }
+}
@@ -1,23 +1,19 @@
 package com.xtremelabs.robolectric.res;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class PluralResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter {
+public class PluralResourceLoader extends StreamingXmlLoader implements ResourceValueConverter {
     Map<String, PluralRules> plurals = new HashMap<String, PluralRules>();
     private StringResourceLoader stringResourceLoader;
+    private List<String[]> items;
+    // string references are resolved once the strings of the whole directory have been loaded
+    private List<UnresolvedPluralRules> unresolvedPluralRules = new ArrayList<UnresolvedPluralRules>();
 
     public PluralResourceLoader(ResourceExtractor resourceExtractor, StringResourceLoader stringResourceLoader) {
-        super(resourceExtractor, "/resources/plurals");
+        super(resourceExtractor);
         this.stringResourceLoader = stringResourceLoader;
     }
 
@@ -33,28 +29,56 @@ public class PluralResourceLoader extends XpathResourceXmlLoader implements Reso
         return null;
     }
 
-    @Override protected void processNode(Node node, String name, boolean isSystem) throws XPathExpressionException {
-        XPathExpression itemXPath = XPathFactory.newInstance().newXPath().compile("item");
-        NodeList childNodes = (NodeList) itemXPath.evaluate(node, XPathConstants.NODESET);
-        PluralRules rules = new PluralRules();
-        for (int j = 0; j < childNodes.getLength(); j++) {
-            Node childNode = childNodes.item(j);
-            String value = childNode.getTextContent();
-            String quantity = childNode.getAttributes().getNamedItem("quantity").getTextContent();
-            if (value.startsWith("@")) {
-                value = value.substring(1);
-                rules.add(new Plural(quantity, stringResourceLoader.getValue(value, isSystem)));
-            } else {
-                rules.add(new Plural(quantity, value));
+    @Override protected void startElement(String path, String name, Map<String, String> attributes, boolean isSystem) {
+        if (path.equals("/resources/plurals")) {
+            items = new ArrayList<String[]>();
+        }
+    }
+
+    @Override protected void endElement(String path, String name, Map<String, String> attributes, String textContent,
+                                        boolean isSystem) {
+        if (path.equals("/resources/plurals/item")) {
+            items.add(new String[] {attributes.get("quantity"), textContent});
+        } else if (path.equals("/resources/plurals")) {
+            unresolvedPluralRules.add(new UnresolvedPluralRules(attributes.get("name"), items, isSystem));
+            items = null;
+        }
+    }
+
+    @Override protected void endResourceXmlDir() {
+        for (UnresolvedPluralRules unresolved : unresolvedPluralRules) {
+            PluralRules rules = new PluralRules();
+            for (String[] item : unresolved.items) {
+                String quantity = item[0];
+                String value = item[1];
+                if (value.startsWith("@")) {
+                    value = value.substring(1);
+                    rules.add(new Plural(quantity, stringResourceLoader.getValue(value, unresolved.isSystem)));
+                } else {
+                    rules.add(new Plural(quantity, value));
+                }
             }
+            plurals.put("plurals/" + unresolved.name, rules);
         }
-        plurals.put("plurals/" + name, rules);
+        unresolvedPluralRules.clear();
     }
 
     @Override public Object convertRawValue(String rawValue) {
         return rawValue;
     }
 
+    private static class UnresolvedPluralRules {
+        final String name;
+        final List<String[]> items;
+        final boolean isSystem;
+
+        UnresolvedPluralRules(String name, List<String[]> items, boolean isSystem) {
+            this.name = name;
+            this.items = items;
+            this.isSystem = isSystem;
+        }
+    }
+
     static class PluralRules {
         List<Plural> plurals = new ArrayList<Plural>();
 
@@ -0,0 +1,269 @@
+package com.xtremelabs.robolectric.res;
+
+import com.xtremelabs.robolectric.bytecode.RobolectricClassLoader;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the resource XML files a {@link ResourceXmlParser} has parsed in one compact binary file, so later runs can
+ * read them from it rather than parse the XML again.
+ * <p/>
+ * A file's entry is only used while the file has the size and modification time it had when it was parsed, or, if
+ * only its modification time changed, the same contents. Files that changed are parsed again and their entries
+ * replaced, so changing a few resources only costs parsing those.
+ * <p/>
+ * {@link RobolectricClassLoader} leaves loading this class to its parent, so there's one {@link #getShared() shared
+ * cache} per JVM, even when a {@link com.xtremelabs.robolectric.ParallelRobolectricSuite} gives each of its workers a
+ * class loader of its own. Files parsed by one worker are read from memory by the others. For that to work, the cache
+ * only deals in JDK types.
+ */
+public class ResourceCache {
+    static final int CACHE_VERSION = 2;
+    static final String FILE_NAME = "cached-robolectric-resources.bin";
+
+    private static final int MAGIC = 0x524f4252;
+
+    private static ResourceCache sharedCache;
+
+    private final File cacheFile;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private boolean changed;
+    private int hitCount;
+
+    /**
+     * @param cacheFile the file to keep the cache in; it's read by {@link #load()} and written by {@link #save()}
+     */
+    public ResourceCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * @return the cache file next to the instrumented class cache, which the {@code cached.roboelectric.classes.path}
+     *         system property sets the location of
+     */
+    public static File getDefaultCacheFile() {
+        return new File(RobolectricClassLoader.getClassCacheDirectory(null).getParentFile(), FILE_NAME);
+    }
+
+    /**
+     * @return the cache kept in the {@link #getDefaultCacheFile() default file}, loaded the first time it's asked for
+     *         and saved when the JVM exits
+     */
+    public static synchronized ResourceCache getShared() {
+        if (sharedCache == null) {
+            sharedCache = new ResourceCache(getDefaultCacheFile());
+            sharedCache.load();
+            Runtime.getRuntime().addShutdownHook(new Thread() {
+                @Override public void run() {
+                    sharedCache.save();
+                }
+            });
+        }
+        return sharedCache;
+    }
+
+    /**
+     * Reads the entries saved by an earlier run, if there's a cache file written by this version of the cache. A file
+     * that's been damaged is ignored, so its files are parsed again.
+     */
+    public void load() {
+        if (!cacheFile.isFile()) {
+            return;
+        }
+
+        long fileLength = cacheFile.length();
+        Map<String, Entry> loadedEntries = new HashMap<String, Entry>();
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != CACHE_VERSION) {
+                    return;
+                }
+                int entryCount = in.readInt();
+                for (int i = 0; i < entryCount; i++) {
+                    String path = in.readUTF();
+                    long length = in.readLong();
+                    long lastModified = in.readLong();
+                    byte[] hash = new byte[in.readUnsignedByte()];
+                    in.readFully(hash);
+                    int dataLength = in.readInt();
+                    // a damaged length could be negative or too big to allocate; no entry is longer than the file
+                    if (dataLength < 0 || dataLength > fileLength) {
+                        return;
+                    }
+                    byte[] data = new byte[dataLength];
+                    in.readFully(data);
+                    loadedEntries.put(path, new Entry(length, lastModified, hash, data));
+                }
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return; // no problem, we'll parse the files again
+        }
+
+        synchronized (entries) {
+            entries.putAll(loadedEntries);
+        }
+    }
+
+    /**
+     * Writes the cache file if anything was added to the cache since it was loaded, leaving out entries for files
+     * that no longer exist. The cache is only an optimization, so failing to write it isn't an error.
+     */
+    public void save() {
+        List<Map.Entry<String, Entry>> entriesToSave;
+        synchronized (entries) {
+            if (!changed) {
+                return;
+            }
+            for (Iterator<String> paths = entries.keySet().iterator(); paths.hasNext(); ) {
+                if (!new File(paths.next()).isFile()) {
+                    paths.remove();
+                }
+            }
+            entriesToSave = new ArrayList<Map.Entry<String, Entry>>(entries.entrySet());
+            changed = false;
+        }
+
+        File cacheDirectory = cacheFile.getAbsoluteFile().getParentFile();
+        File tempFile = null;
+        try {
+            cacheDirectory.mkdirs();
+            tempFile = File.createTempFile(FILE_NAME, ".tmp", cacheDirectory);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(CACHE_VERSION);
+                out.writeInt(entriesToSave.size());
+                for (Map.Entry<String, Entry> mapEntry : entriesToSave) {
+                    Entry entry = mapEntry.getValue();
+                    out.writeUTF(mapEntry.getKey());
+                    out.writeLong(entry.length);
+                    out.writeLong(entry.lastModified);
+                    out.writeByte(entry.hash.length);
+                    out.write(entry.hash);
+                    out.writeInt(entry.data.length);
+                    out.write(entry.data);
+                }
+            } finally {
+                out.close();
+            }
+            // another JVM may have written the file since we loaded it; the last one to finish wins
+            cacheFile.delete();
+            if (!tempFile.renameTo(cacheFile)) {
+                tempFile.delete();
+            }
+        } catch (IOException e) {
+            // no problem, the cache is only an optimization
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * @return how many files this cache has provided rather than having them parsed
+     */
+    public int getHitCount() {
+        synchronized (entries) {
+            return hitCount;
+        }
+    }
+
+    /**
+     * @return the recording of {@code xmlFile} as it was when it was last {@link #put}, or null if it isn't cached or
+     *         has changed since
+     */
+    public byte[] get(File xmlFile) throws IOException {
+        String path = xmlFile.getAbsolutePath();
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(path);
+        }
+        if (entry == null || entry.length != xmlFile.length()) {
+            return null;
+        }
+
+        long lastModified = xmlFile.lastModified();
+        if (entry.lastModified != lastModified) {
+            // touched, e.g. by a checkout, but maybe not changed
+            if (!Arrays.equals(entry.hash, hash(xmlFile))) {
+                return null;
+            }
+            synchronized (entries) {
+                entries.put(path, new Entry(entry.length, lastModified, entry.hash, entry.data));
+                changed = true;
+            }
+        }
+
+        synchronized (entries) {
+            hitCount++;
+        }
+        return entry.data;
+    }
+
+    /**
+     * Adds the recording of {@code xmlFile}, just parsed, to the cache.
+     */
+    public void put(File xmlFile, byte[] parsedXmlData) throws IOException {
+        long length = xmlFile.length();
+        long lastModified = xmlFile.lastModified();
+        byte[] hash = hash(xmlFile);
+
+        synchronized (entries) {
+            entries.put(xmlFile.getAbsolutePath(), new Entry(length, lastModified, hash, parsedXmlData));
+            changed = true;
+        }
+    }
+
+    private static byte[] hash(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        return digest.digest();
+    }
+
+    private static class Entry {
+        final long length;
+        final long lastModified;
+        final byte[] hash;
+        final byte[] data;
+
+        Entry(long length, long lastModified, byte[] hash, byte[] data) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.data = data;
+        }
+    }
+}
@@ -1,14 +1,12 @@
 package com.xtremelabs.robolectric.res;
 
-import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ResourceExtractor {
-    private Map<String, Integer> localResourceStringToId = new HashMap<String, Integer>();
-    private Map<String, Integer> systemResourceStringToId = new HashMap<String, Integer>();
-    private Map<Integer, String> resourceIdToString = new HashMap<Integer, String>();
+    private final List<ResourceIdTable> localTables = new ArrayList<ResourceIdTable>();
+    private final List<ResourceIdTable> systemTables = new ArrayList<ResourceIdTable>();
+    private final List<ResourceIdTable> allTables = new ArrayList<ResourceIdTable>();
 
     public void addLocalRClass(Class rClass) throws Exception {
         addRClass(rClass, false);
@@ -19,32 +17,20 @@ public class ResourceExtractor {
     }
 
     private void addRClass(Class rClass, boolean isSystemRClass) throws Exception {
-        for (Class innerClass : rClass.getClasses()) {
-            for (Field field : innerClass.getDeclaredFields()) {
-                if (field.getType().equals(Integer.TYPE) && Modifier.isStatic(field.getModifiers())) {
-                    String section = innerClass.getSimpleName();
-                    String name = section + "/" + field.getName();
-                    int value = field.getInt(null);
-
-                    if (isSystemRClass) {
-                        name = "android:" + name;
-                    }
-
-                    if (!section.equals("styleable")) {
-                        if (isSystemRClass) {
-                            systemResourceStringToId.put(name, value);
-                        } else {
-                            localResourceStringToId.put(name, value);
-                        }
-
-                        if (resourceIdToString.containsKey(value)) {
-                            throw new RuntimeException(value + " is already defined with name: " + resourceIdToString.get(value) + " can't also call it: " + name);
-                        }
-                        resourceIdToString.put(value, name);
-                    }
-                }
+        ResourceIdTable table = ResourceIdTable.forRClass(rClass, isSystemRClass);
+        for (int i = 0; i < table.size(); i++) {
+            String existingName = getResourceName(table.getIdAt(i));
+            if (existingName != null) {
+                throw new RuntimeException(table.getIdAt(i) + " is already defined with name: " + existingName + " can't also call it: " + table.getNameAt(i));
             }
         }
+
+        if (isSystemRClass) {
+            systemTables.add(table);
+        } else {
+            localTables.add(table);
+        }
+        allTables.add(table);
     }
 
     public Integer getResourceId(String resourceName) {
@@ -72,14 +58,24 @@ public class ResourceExtractor {
             resourceName = resourceName.substring(1);
         }
 
-        if (isSystemResource) {
-            return systemResourceStringToId.get(resourceName);
-        } else {
-            return localResourceStringToId.get(resourceName);
+        List<ResourceIdTable> tables = isSystemResource ? systemTables : localTables;
+        // the last R class added wins, as it did when these were all put in one map
+        for (int i = tables.size() - 1; i >= 0; i--) {
+            Integer resourceId = tables.get(i).getId(resourceName);
+            if (resourceId != null) {
+                return resourceId;
+            }
         }
+        return null;
     }
 
     public String getResourceName(int resourceId) {
-        return resourceIdToString.get(resourceId);
+        for (int i = 0; i < allTables.size(); i++) {
+            String resourceName = allTables.get(i).getName(resourceId);
+            if (resourceName != null) {
+                return resourceName;
+            }
+        }
+        return null;
     }
-}
\ No newline at end of file
+}
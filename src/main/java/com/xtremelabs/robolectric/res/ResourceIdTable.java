@@ -0,0 +1,149 @@
+package com.xtremelabs.robolectric.res;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The resource names and ids declared by one R class, like {@code layout/main} and {@code 0x7f030000}, in primitive
+ * arrays rather than maps of boxed ids.
+ * <p/>
+ * Ids are kept sorted, with the names in the same order, so finding an id's name is a binary search over the ids;
+ * since aapt packs ids as {@code 0xPPTTEEEE} (package, type, entry) they come out grouped by type. Finding a name's id
+ * goes through an open-addressing hash table of indexes into those arrays.
+ * <p/>
+ * Reflecting over an R class is slow and its table never changes, so each R class's table is built once and shared by
+ * every {@link ResourceExtractor} it's added to. {@link com.xtremelabs.robolectric.bytecode.RobolectricClassLoader}
+ * leaves loading this class to its parent, so the tables are shared by the workers of a
+ * {@link com.xtremelabs.robolectric.ParallelRobolectricSuite} too. Each worker's class loader defines its own copy of
+ * an R class, so tables are kept by the R class's name rather than the class itself.
+ */
+public final class ResourceIdTable {
+    private static final Map<String, ResourceIdTable> tablesByRClassName = new HashMap<String, ResourceIdTable>();
+
+    private final int[] ids;
+    private final String[] names;
+    private final int[] nameSlots;
+
+    private ResourceIdTable(int[] ids, String[] names) {
+        this.ids = ids;
+        this.names = names;
+
+        // at most half full, so probes stay short
+        int slotCount = Integer.highestOneBit(Math.max(names.length, 1) * 4 - 1);
+        nameSlots = new int[slotCount];
+        Arrays.fill(nameSlots, -1);
+        for (int i = 0; i < names.length; i++) {
+            int slot = firstSlot(names[i]);
+            while (nameSlots[slot] != -1) {
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            nameSlots[slot] = i;
+        }
+    }
+
+    public static ResourceIdTable forRClass(Class rClass, boolean isSystemRClass) throws Exception {
+        String key = (isSystemRClass ? "android:" : "") + rClass.getName();
+        synchronized (tablesByRClassName) {
+            ResourceIdTable table = tablesByRClassName.get(key);
+            if (table == null) {
+                table = build(rClass, isSystemRClass);
+                tablesByRClassName.put(key, table);
+            }
+            return table;
+        }
+    }
+
+    private static ResourceIdTable build(Class rClass, boolean isSystemRClass) throws Exception {
+        List<Resource> resources = new ArrayList<Resource>();
+        for (Class innerClass : rClass.getClasses()) {
+            String section = innerClass.getSimpleName();
+            if (section.equals("styleable")) {
+                continue;
+            }
+            for (Field field : innerClass.getDeclaredFields()) {
+                if (field.getType().equals(Integer.TYPE) && Modifier.isStatic(field.getModifiers())) {
+                    String name = section + "/" + field.getName();
+                    if (isSystemRClass) {
+                        name = "android:" + name;
+                    }
+                    resources.add(new Resource(field.getInt(null), name));
+                }
+            }
+        }
+
+        Resource[] sortedResources = resources.toArray(new Resource[resources.size()]);
+        Arrays.sort(sortedResources);
+        int[] ids = new int[sortedResources.length];
+        String[] names = new String[sortedResources.length];
+        for (int i = 0; i < sortedResources.length; i++) {
+            ids[i] = sortedResources[i].id;
+            names[i] = sortedResources[i].name;
+            if (i > 0 && ids[i] == ids[i - 1]) {
+                throw new RuntimeException(ids[i] + " is already defined with name: " + names[i - 1] + " can't also call it: " + names[i]);
+            }
+        }
+        return new ResourceIdTable(ids, names);
+    }
+
+    /**
+     * @return the name of the resource with id {@code resourceId}, or null if there isn't one
+     */
+    public String getName(int resourceId) {
+        int index = Arrays.binarySearch(ids, resourceId);
+        return index < 0 ? null : names[index];
+    }
+
+    /**
+     * @return the id of the resource called {@code resourceName}, or null if there isn't one
+     */
+    public Integer getId(String resourceName) {
+        int slot = firstSlot(resourceName);
+        while (true) {
+            int index = nameSlots[slot];
+            if (index == -1) {
+                return null;
+            }
+            if (names[index].equals(resourceName)) {
+                return ids[index];
+            }
+            slot = (slot + 1) & (nameSlots.length - 1);
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public int getIdAt(int index) {
+        return ids[index];
+    }
+
+    public String getNameAt(int index) {
+        return names[index];
+    }
+
+    private int firstSlot(String name) {
+        int hash = name.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & (nameSlots.length - 1);
+    }
+
+    private static class Resource implements Comparable<Resource> {
+        final int id;
+        final String name;
+
+        Resource(int id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override public int compareTo(Resource other) {
+            return id < other.id ? -1 : (id == other.id ? 0 : 1);
+        }
+    }
+}
@@ -10,10 +10,12 @@ import java.io.InputStreamReader;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.RobolectricConfig;
@@ -51,10 +53,15 @@ public class ResourceLoader {
         }
     };
 
-    private static class Resources {
+    private enum Category {
+        STRINGS, COLORS, ATTRS, LAYOUTS, MENUS, DRAWABLES, PREFERENCES;
+
+        static final Set<Category> VALUES = EnumSet.of(STRINGS, COLORS, ATTRS);
+    }
 
+    private static class Resources {
         private final Object lock = new Object();
-        private boolean isInitialized = false;
+        private final Set<Category> loadedCategories = EnumSet.noneOf(Category.class);
 
         private int sdkVersion;
 
@@ -64,9 +71,9 @@ public class ResourceLoader {
         private final List<File> assetsDirs = new ArrayList<File>();
 
         private final ResourceExtractor resourceExtractor;
-        private ViewLoader viewLoader;
-        private MenuLoader menuLoader;
-        private PreferenceLoader preferenceLoader;
+        private final ViewLoader viewLoader;
+        private final MenuLoader menuLoader;
+        private final PreferenceLoader preferenceLoader;
         private final StringResourceLoader stringResourceLoader;
         private final PluralResourceLoader pluralResourceLoader;
         private final StringArrayResourceLoader stringArrayResourceLoader;
@@ -74,6 +81,9 @@ public class ResourceLoader {
         private final ColorResourceLoader colorResourceLoader;
         private final DrawableResourceLoader drawableResourceLoader;
         private final List<RawResourceLoader> rawResourceLoaders = new ArrayList<RawResourceLoader>();
+        private ResourceXmlParser resourceXmlParser;
+        private File systemResourceDir;
+        private boolean lookedForSystemResourceDir;
 
         public Resources(Class rClass, int sdkVersion, File resourceDir, File assetsDir,
                          List<File> libResourceDirs, List<File> libAssetDirs) throws Exception {
@@ -99,6 +109,9 @@ public class ResourceLoader {
             colorResourceLoader = new ColorResourceLoader(resourceExtractor);
             attrResourceLoader = new AttrResourceLoader(resourceExtractor);
             drawableResourceLoader = new DrawableResourceLoader(resourceExtractor);
+            viewLoader = new ViewLoader(resourceExtractor, attrResourceLoader);
+            menuLoader = new MenuLoader(resourceExtractor, attrResourceLoader);
+            preferenceLoader = new PreferenceLoader(resourceExtractor);
         }
 
         public Resources(StringResourceLoader stringResourceLoader) {
@@ -106,161 +119,169 @@ public class ResourceLoader {
             this.stringResourceLoader = stringResourceLoader;
             pluralResourceLoader = null;
             viewLoader = null;
+            menuLoader = null;
+            preferenceLoader = null;
             stringArrayResourceLoader = null;
             attrResourceLoader = null;
             colorResourceLoader = null;
             drawableResourceLoader = null;
         }
 
-        public void init() {
+        /*
+         * Each category is loaded the first time something asks for it, so tests that touch few resources only pay
+         * for those. Layouts are only indexed when asked for; each layout file is loaded when it's first inflated.
+         */
+        private void load(Category category) {
             synchronized (lock) {
-                if (!isInitialized) {
-                    doInitialize();
-                    isInitialized = true;
+                if (loadedCategories.contains(category)) {
+                    return;
                 }
-            }
-        }
-
-        private void doInitialize() {
-            try {
-                if (getResourceDir() != null) {
-                    viewLoader = new ViewLoader(resourceExtractor, attrResourceLoader);
-                    menuLoader = new MenuLoader(resourceExtractor, attrResourceLoader);
-                    preferenceLoader = new PreferenceLoader(resourceExtractor);
-
-                    viewLoader.setStrictI18n(strictI18n);
-                    menuLoader.setStrictI18n(strictI18n);
-                    preferenceLoader.setStrictI18n(strictI18n);
-
-                    File systemResourceDir = getSystemResourceDir(getPathToAndroidResources());
-                    File systemValueResourceDir = getValueResourceDir(systemResourceDir);
-                    loadSystemStringResources(systemValueResourceDir);
-                    loadSystemPluralsResources(systemValueResourceDir);
-                    loadSystemValueResources(systemValueResourceDir);
-                    loadSystemViewResources(systemResourceDir);
-
-                    for (File resourceDir : resourceDirs) {
-                        File localValueResourceDir = getValueResourceDir(resourceDir);
-                        File preferenceDir = getPreferenceResourceDir(resourceDir);
-
-                        loadStringResources(localValueResourceDir);
-                        loadPluralsResources(localValueResourceDir);
-                        loadValueResources(localValueResourceDir);
-                        loadViewResources(resourceDir);
-                        loadMenuResources(resourceDir);
-                        loadDrawableResources(resourceDir);
-                        loadPreferenceResources(preferenceDir);
+                try {
+                    if (getResourceDir() != null) {
+                        doLoad(category);
                     }
-                } else {
-                    viewLoader = null;
-                    menuLoader = null;
-                    preferenceLoader = null;
+                } catch (I18nException e) {
+                    throw e;
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
                 }
-            } catch (I18nException e) {
-                throw e;
-            } catch (Exception e) {
-                throw new RuntimeException(e);
+                loadedCategories.add(category);
+                releaseParsedFiles(category);
             }
         }
 
-        private void loadStringResources(File localResourceDir) throws Exception {
-            DocumentLoader stringResourceDocumentLoader = new DocumentLoader(this.stringResourceLoader);
-            loadLocalValueResourcesFromDirs(stringResourceDocumentLoader, localResourceDir);
-        }
-
-        private void loadSystemStringResources(File systemValueResourceDir) throws Exception {
-            DocumentLoader stringResourceDocumentLoader = new DocumentLoader(this.stringResourceLoader);
-            loadSystemValueResourcesFromDirs(stringResourceDocumentLoader, systemValueResourceDir);
-        }
-
-        private void loadPluralsResources(File localResourceDir) throws Exception {
-            DocumentLoader stringResourceDocumentLoader = new DocumentLoader(this.pluralResourceLoader);
-            loadLocalValueResourcesFromDirs(stringResourceDocumentLoader, localResourceDir);
-        }
-
-        private void loadSystemPluralsResources(File systemValueResourceDir) throws Exception {
-            DocumentLoader stringResourceDocumentLoader = new DocumentLoader(this.pluralResourceLoader);
-            loadSystemValueResourcesFromDirs(stringResourceDocumentLoader, systemValueResourceDir);
-        }
-
-        private void loadValueResources(File localResourceDir) throws Exception {
-            DocumentLoader valueResourceLoader =
-                new DocumentLoader(stringArrayResourceLoader, colorResourceLoader, attrResourceLoader);
-            loadLocalValueResourcesFromDirs(valueResourceLoader, localResourceDir);
+        /*
+         * These resources live as long as the JVM, so the parser only keeps files until the last category that reads
+         * them has loaded: the values files once strings, colors and attrs all have, the others as each category loads
+         * them. Once every category has loaded, the parser is only needed for layouts that haven't been inflated yet,
+         * which each drop their file when they are, so it's shut down and let go of.
+         */
+        private void releaseParsedFiles(Category loadedCategory) {
+            if (resourceXmlParser == null) {
+                return;
+            }
+            if (Category.VALUES.contains(loadedCategory) && loadedCategories.containsAll(Category.VALUES)) {
+                resourceXmlParser.forgetFilesIn(getValueResourceDir(getSystemResourceDir()));
+                for (File resourceDir : resourceDirs) {
+                    resourceXmlParser.forgetFilesIn(getValueResourceDir(resourceDir));
+                }
+            }
+            if (loadedCategories.containsAll(EnumSet.allOf(Category.class))) {
+                resourceXmlParser.shutdown();
+                resourceXmlParser = null;
+            }
         }
 
-        private void loadSystemValueResources(File systemValueResourceDir) throws Exception {
-            DocumentLoader valueResourceLoader =
-                new DocumentLoader(stringArrayResourceLoader, colorResourceLoader, attrResourceLoader);
-            loadSystemValueResourcesFromDirs(valueResourceLoader, systemValueResourceDir);
+        private void doLoad(Category category) throws Exception {
+            switch (category) {
+                case STRINGS:
+                    loadValueResources(stringResourceLoader, pluralResourceLoader, stringArrayResourceLoader);
+                    break;
+                case COLORS:
+                    loadValueResources(colorResourceLoader);
+                    break;
+                case ATTRS:
+                    loadValueResources(attrResourceLoader);
+                    break;
+                case LAYOUTS:
+                    // views are inflated with attributes that need attrs to make sense of them
+                    load(Category.ATTRS);
+                    indexLayoutResources();
+                    break;
+                case MENUS:
+                    load(Category.ATTRS);
+                    loadResourceXmlSubDirs(menuLoader, MENU_DIR_FILE_FILTER);
+                    break;
+                case DRAWABLES:
+                    loadResourceXmlSubDirs(drawableResourceLoader, DRAWABLE_DIR_FILE_FILTER);
+                    break;
+                case PREFERENCES:
+                    loadPreferenceResources();
+                    break;
+            }
         }
 
-        private void loadViewResources(File localResourceDir) throws Exception {
-            DocumentLoader viewDocumentLoader = new DocumentLoader(viewLoader);
-            loadLayoutResourceXmlSubDirs(viewDocumentLoader, localResourceDir, false);
+        /*
+         * One cache for all the resources in this JVM, saved when it exits. It's on unless the
+         * robolectric.resourceCache system property is false.
+         */
+        private static ResourceCache getResourceCache() {
+            return "false".equals(System.getProperty("robolectric.resourceCache")) ? null : ResourceCache.getShared();
         }
 
-        private void loadSystemViewResources(File systemResourceDir) throws Exception {
-            DocumentLoader viewDocumentLoader = new DocumentLoader(viewLoader);
-            loadLayoutResourceXmlSubDirs(viewDocumentLoader, systemResourceDir, true);
+        private ResourceXmlParser getResourceXmlParser() {
+            if (resourceXmlParser == null) {
+                resourceXmlParser = new ResourceXmlParser(Runtime.getRuntime().availableProcessors(), getResourceCache());
+            }
+            return resourceXmlParser;
         }
 
-        private void loadMenuResources(File xmlResourceDir) throws Exception {
-            DocumentLoader menuDocumentLoader = new DocumentLoader(menuLoader);
-            loadMenuResourceXmlDirs(menuDocumentLoader, xmlResourceDir);
+        private File getSystemResourceDir() {
+            if (!lookedForSystemResourceDir) {
+                systemResourceDir = getSystemResourceDir(getPathToAndroidResources());
+                lookedForSystemResourceDir = true;
+            }
+            return systemResourceDir;
         }
 
-        private void loadDrawableResources(File xmlResourceDir) throws Exception {
-            DocumentLoader drawableDocumentLoader = new DocumentLoader(drawableResourceLoader);
-            loadDrawableResourceXmlDirs(drawableDocumentLoader, xmlResourceDir);
+        private DocumentLoader newDocumentLoader(XmlLoader... xmlLoaders) {
+            return new DocumentLoader(getResourceXmlParser(), xmlLoaders);
         }
 
-        private void loadPreferenceResources(File xmlResourceDir) throws Exception {
-            if (xmlResourceDir.exists()) {
-                DocumentLoader preferenceDocumentLoader = new DocumentLoader(preferenceLoader);
-                preferenceDocumentLoader.loadResourceXmlDir(xmlResourceDir);
+        /*
+         * The system values first, then each resource directory's in turn, so later ones override earlier ones. The
+         * files are parsed in parallel ahead of the loaders, and only once for all the categories that need them.
+         */
+        private void loadValueResources(XmlLoader... xmlLoaders) throws Exception {
+            File systemValueResourceDir = getValueResourceDir(getSystemResourceDir());
+            getResourceXmlParser().parseInBackground(systemValueResourceDir);
+            for (File resourceDir : resourceDirs) {
+                getResourceXmlParser().parseInBackground(getValueResourceDir(resourceDir));
             }
-        }
 
-        private void loadLayoutResourceXmlSubDirs(DocumentLoader layoutDocumentLoader, File xmlResourceDir, boolean isSystem)
-            throws Exception {
-            if (xmlResourceDir != null) {
-                layoutDocumentLoader.loadResourceXmlDirs(isSystem, xmlResourceDir.listFiles(LAYOUT_DIR_FILE_FILTER));
+            DocumentLoader valueDocumentLoader = newDocumentLoader(xmlLoaders);
+            if (systemValueResourceDir != null) {
+                valueDocumentLoader.loadSystemResourceXmlDir(systemValueResourceDir);
             }
-        }
-
-        private void loadMenuResourceXmlDirs(DocumentLoader menuDocumentLoader, File xmlResourceDir) throws Exception {
-            if (xmlResourceDir != null) {
-                menuDocumentLoader.loadResourceXmlDirs(xmlResourceDir.listFiles(MENU_DIR_FILE_FILTER));
+            for (File resourceDir : resourceDirs) {
+                File localValueResourceDir = getValueResourceDir(resourceDir);
+                if (localValueResourceDir.exists()) {
+                    valueDocumentLoader.loadResourceXmlDir(localValueResourceDir);
+                }
             }
         }
 
-        private void loadDrawableResourceXmlDirs(DocumentLoader drawableResourceLoader, File xmlResourceDir) throws Exception {
-            if (xmlResourceDir != null) {
-                drawableResourceLoader.loadResourceXmlDirs(xmlResourceDir.listFiles(DRAWABLE_DIR_FILE_FILTER));
+        private void indexLayoutResources() {
+            DocumentLoader viewDocumentLoader = newDocumentLoader(viewLoader);
+            File systemResourceDir = getSystemResourceDir();
+            if (systemResourceDir != null) {
+                viewLoader.indexLayoutDirs(viewDocumentLoader, true, systemResourceDir.listFiles(LAYOUT_DIR_FILE_FILTER));
             }
-        }
-
-        private void loadSystemValueResourcesFromDirs(DocumentLoader documentLoader, File systemValueResourceDir)
-            throws Exception {
-            loadSystemResourceXmlDir(documentLoader, systemValueResourceDir);
-        }
-
-        private void loadLocalValueResourcesFromDirs(DocumentLoader documentLoader, File localValueResourceDir) throws Exception {
-            if (localValueResourceDir.exists()) {
-                loadValueResourcesFromDir(documentLoader, localValueResourceDir);
+            for (File resourceDir : resourceDirs) {
+                viewLoader.indexLayoutDirs(viewDocumentLoader, false, resourceDir.listFiles(LAYOUT_DIR_FILE_FILTER));
             }
         }
 
-        private void loadValueResourcesFromDir(DocumentLoader documentloader, File xmlResourceDir) throws Exception {
-            if (xmlResourceDir != null) {
-                documentloader.loadResourceXmlDir(xmlResourceDir);
+        private void loadResourceXmlSubDirs(XmlLoader xmlLoader, FileFilter subDirFilter) throws Exception {
+            DocumentLoader documentLoader = newDocumentLoader(xmlLoader);
+            for (File resourceDir : resourceDirs) {
+                File[] subDirs = resourceDir.listFiles(subDirFilter);
+                if (subDirs != null) {
+                    getResourceXmlParser().parseInBackground(subDirs);
+                    documentLoader.loadResourceXmlDirs(subDirs);
+                    getResourceXmlParser().forgetFilesIn(subDirs);
+                }
             }
         }
 
-        private void loadSystemResourceXmlDir(DocumentLoader documentLoader, File stringResourceDir) throws Exception {
-            if (stringResourceDir != null) {
-                documentLoader.loadSystemResourceXmlDir(stringResourceDir);
+        private void loadPreferenceResources() throws Exception {
+            DocumentLoader preferenceDocumentLoader = newDocumentLoader(preferenceLoader);
+            for (File resourceDir : resourceDirs) {
+                File preferenceDir = getPreferenceResourceDir(resourceDir);
+                if (preferenceDir.exists()) {
+                    preferenceDocumentLoader.loadResourceXmlDir(preferenceDir);
+                    getResourceXmlParser().forgetFilesIn(preferenceDir);
+                }
             }
         }
 
@@ -390,30 +411,37 @@ public class ResourceLoader {
         }
 
         public View inflateView(Context context, int resource, ViewGroup viewGroup) {
+            load(Category.LAYOUTS);
             return viewLoader.inflateView(context, resource, viewGroup);
         }
 
         public int getColorValue(int id) {
+            load(Category.COLORS);
             return colorResourceLoader.getValue(id);
         }
 
         public String getStringValue(int id) {
+            load(Category.STRINGS);
             return stringResourceLoader.getValue(id);
         }
 
         public String getPluralStringValue(int id, int quantity) {
+            load(Category.STRINGS);
             return pluralResourceLoader.getValue(id, quantity);
         }
 
         public boolean isDrawableXml(int resourceId) {
+            load(Category.DRAWABLES);
             return drawableResourceLoader.isXml(resourceId);
         }
 
         public int[] getDrawableIds(int resourceId) {
+            load(Category.DRAWABLES);
             return drawableResourceLoader.getDrawableIds(resourceId);
         }
 
         public Drawable getXmlDrawable(int resourceId) {
+            load(Category.DRAWABLES);
             return drawableResourceLoader.getXmlDrawable(resourceId);
         }
 
@@ -429,14 +457,17 @@ public class ResourceLoader {
         }
 
         public String[] getStringArrayValue(int id) {
+            load(Category.STRINGS);
             return stringArrayResourceLoader.getArrayValue(id);
         }
 
         public void inflateMenu(Context context, int resource, Menu root) {
+            load(Category.MENUS);
             menuLoader.inflateMenu(context, resource, root);
         }
 
         public PreferenceScreen inflatePreferences(Context context, int resourceId) {
+            load(Category.PREFERENCES);
             return preferenceLoader.inflatePreferences(context, resourceId);
         }
 
@@ -445,7 +476,8 @@ public class ResourceLoader {
         }
 
         public ViewLoader.ViewNode getLayoutViewNode(String layoutName) {
-            return viewLoader.viewNodesByLayoutName.get(layoutName);
+            load(Category.LAYOUTS);
+            return viewLoader.getViewNodeByLayoutName(layoutName);
         }
 
         public void setLayoutQualifierSearchPath(String... locations) {
@@ -520,17 +552,12 @@ public class ResourceLoader {
         return config.getAssetsDirectory();
     }
 
-    private Resources getInitializedResources() {
-        resources.init();
-        return resources;
-    }
-
     public void setStrictI18n(boolean strict) {
-        getInitializedResources().setStrictIl8n(strict);
+        resources.setStrictIl8n(strict);
     }
 
     public boolean getStrictI18n() {
-        return getInitializedResources().getStrictI18n();
+        return resources.getStrictI18n();
     }
 
     static boolean isLayoutDirectory(String path) {
@@ -557,73 +584,67 @@ public class ResourceLoader {
     }
 
     public static ResourceLoader getFrom(Context context) {
-        ResourceLoader resourceLoader = Robolectric.shadowOf(context.getApplicationContext()).getResourceLoader();
-        resourceLoader.init();
-        return resourceLoader;
-    }
-
-    private void init() {
-        resources.init();
+        return Robolectric.shadowOf(context.getApplicationContext()).getResourceLoader();
     }
 
     public String getNameForId(int viewId) {
-        return getInitializedResources().getNameForId(viewId);
+        return resources.getNameForId(viewId);
     }
 
     public View inflateView(Context context, int resource, ViewGroup viewGroup) {
-        return getInitializedResources().inflateView(context, resource, viewGroup);
+        return resources.inflateView(context, resource, viewGroup);
     }
 
     public int getColorValue(int id) {
-        return getInitializedResources().getColorValue(id);
+        return resources.getColorValue(id);
     }
 
     public String getStringValue(int id) {
-        return getInitializedResources().getStringValue(id);
+        return resources.getStringValue(id);
     }
 
     public String getPluralStringValue(int id, int quantity) {
-        return getInitializedResources().getPluralStringValue(id, quantity);
+        return resources.getPluralStringValue(id, quantity);
     }
 
     public boolean isDrawableXml(int resourceId) {
-        return getInitializedResources().isDrawableXml(resourceId);
+        return resources.isDrawableXml(resourceId);
     }
 
     public int[] getDrawableIds(int resourceId) {
-        return getInitializedResources().getDrawableIds(resourceId);
+        return resources.getDrawableIds(resourceId);
     }
 
     public Drawable getXmlDrawable(int resourceId) {
-        return getInitializedResources().getXmlDrawable(resourceId);
+        return resources.getXmlDrawable(resourceId);
     }
 
     public InputStream getRawValue(int id) {
-        return getInitializedResources().getRawValue(id);
+        return resources.getRawValue(id);
     }
 
     public String[] getStringArrayValue(int id) {
-        return getInitializedResources().getStringArrayValue(id);
+        return resources.getStringArrayValue(id);
     }
 
     public void inflateMenu(Context context, int resource, Menu root) {
-        getInitializedResources().inflateMenu(context, resource, root);
+        resources.inflateMenu(context, resource, root);
     }
 
     public PreferenceScreen inflatePreferences(Context context, int resourceId) {
-        return getInitializedResources().inflatePreferences(context, resourceId);
+        return resources.inflatePreferences(context, resourceId);
     }
 
     public File getAssetsBase() {
-        return getInitializedResources().getAssetsBase();
+        return resources.getAssetsBase();
     }
 
     public ViewLoader.ViewNode getLayoutViewNode(String layoutName) {
-        return getInitializedResources().getLayoutViewNode(layoutName);
+        return resources.getLayoutViewNode(layoutName);
     }
 
     public void setLayoutQualifierSearchPath(String... locations) {
-        getInitializedResources().setLayoutQualifierSearchPath(locations);
+        resources.setLayoutQualifierSearchPath(locations);
     }
 
     @SuppressWarnings("rawtypes")
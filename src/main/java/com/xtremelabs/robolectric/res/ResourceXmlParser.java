@@ -0,0 +1,238 @@
+package com.xtremelabs.robolectric.res;
+
+import org.w3c.dom.Document;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses resource XML files for {@link DocumentLoader}s, each file only once however many loaders ask for it.
+ * Files are read with SAX into a compact {@link ParsedXml}, which {@link StreamingXmlLoader}s are fed from directly;
+ * a DOM is only built for loaders that ask for one.
+ * <p/>
+ * Given a thread count, it can parse whole directories on a pool of threads ahead of the loaders asking for their
+ * files. The loaders still process files one at a time, in the order they ask for them, so which resource overrides
+ * which is the same as if every file were parsed when it was asked for.
+ * <p/>
+ * Parsed files are kept until they're {@link #forget forgotten}, so whoever owns a parser should forget files once
+ * nothing will ask for them again.
+ */
+public class ResourceXmlParser {
+    private static final long IDLE_THREAD_SECONDS = 5;
+
+    private final SAXParserFactory saxParserFactory;
+    private final DocumentBuilderFactory documentBuilderFactory;
+    private final Map<File, Future<ParsedXml>> parsedXmls = new HashMap<File, Future<ParsedXml>>();
+    private final Map<File, Document> documents = new HashMap<File, Document>();
+    private final ExecutorService executorService;
+    private final ResourceCache resourceCache;
+
+    /**
+     * Creates a parser that parses each file when it's first asked for.
+     */
+    public ResourceXmlParser() {
+        this(0);
+    }
+
+    /**
+     * @param threadCount how many threads to parse on ahead of files being asked for, or 0 to parse each file when
+     *                    it's first asked for
+     */
+    public ResourceXmlParser(int threadCount) {
+        this(threadCount, null);
+    }
+
+    /**
+     * @param threadCount   how many threads to parse on ahead of files being asked for, or 0 to parse each file when
+     *                      it's first asked for
+     * @param resourceCache where to look for files before parsing them and to keep them after, or null to always
+     *                      parse them
+     */
+    public ResourceXmlParser(int threadCount, ResourceCache resourceCache) {
+        this.resourceCache = resourceCache;
+        saxParserFactory = SAXParserFactory.newInstance();
+        saxParserFactory.setNamespaceAware(true);
+        try {
+            // xmlns attributes are part of the attributes views are inflated with
+            saxParserFactory.setFeature("http://xml.org/sax/features/namespace-prefixes", true);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+        documentBuilderFactory = DocumentBuilderFactory.newInstance();
+        documentBuilderFactory.setNamespaceAware(true);
+
+        if (threadCount == 0) {
+            executorService = null;
+        } else {
+            ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threadCount, threadCount,
+                    IDLE_THREAD_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "robolectric-resource-parser");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            // resources are loaded a category at a time, so the threads can go between categories
+            threadPoolExecutor.allowCoreThreadTimeOut(true);
+            executorService = threadPoolExecutor;
+        }
+    }
+
+    /**
+     * Starts parsing the XML files in {@code resourceXmlDirs} on this parser's threads. Directories that are null or
+     * don't exist are skipped, as are files that have already been started. Files that fail to parse only fail when
+     * they're asked for.
+     */
+    public void parseInBackground(File... resourceXmlDirs) {
+        if (executorService == null || resourceXmlDirs == null) {
+            return;
+        }
+        for (File resourceXmlDir : resourceXmlDirs) {
+            File[] files = resourceXmlDir == null ? null : resourceXmlDir.listFiles(DocumentLoader.XML_FILE_FILTER);
+            if (files == null) {
+                continue;
+            }
+            for (File file : files) {
+                synchronized (parsedXmls) {
+                    if (!parsedXmls.containsKey(file)) {
+                        parsedXmls.put(file, executorService.submit(parseTask(file)));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@code xmlFile} parsed into a DOM, waiting for it if it's being parsed in the background
+     */
+    public Document parse(File xmlFile) throws Exception {
+        ParsedXml parsedXml = read(xmlFile);
+        synchronized (documents) {
+            Document document = documents.get(xmlFile);
+            if (document == null) {
+                DocumentBuilder documentBuilder;
+                synchronized (documentBuilderFactory) {
+                    documentBuilder = documentBuilderFactory.newDocumentBuilder();
+                }
+                document = parsedXml.toDocument(documentBuilder);
+                documents.put(xmlFile, document);
+            }
+            return document;
+        }
+    }
+
+    /**
+     * @return {@code xmlFile} parsed, waiting for it if it's being parsed in the background
+     */
+    ParsedXml read(File xmlFile) throws Exception {
+        Future<ParsedXml> parsedXml;
+        FutureTask<ParsedXml> parseHere = null;
+        synchronized (parsedXmls) {
+            parsedXml = parsedXmls.get(xmlFile);
+            if (parsedXml == null) {
+                parsedXml = parseHere = new FutureTask<ParsedXml>(parseTask(xmlFile));
+                parsedXmls.put(xmlFile, parsedXml);
+            }
+        }
+        if (parseHere != null) {
+            parseHere.run();
+        }
+
+        try {
+            return parsedXml.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw (Exception) cause;
+        }
+    }
+
+    /**
+     * Drops what's been parsed of {@code xmlFile}. If it's asked for again, it's parsed again.
+     */
+    public void forget(File xmlFile) {
+        synchronized (parsedXmls) {
+            parsedXmls.remove(xmlFile);
+        }
+        synchronized (documents) {
+            documents.remove(xmlFile);
+        }
+    }
+
+    /**
+     * Drops what's been parsed of the files in {@code resourceXmlDirs}. Null directories are skipped.
+     */
+    public void forgetFilesIn(File... resourceXmlDirs) {
+        List<File> dirs = Arrays.asList(resourceXmlDirs);
+        synchronized (parsedXmls) {
+            removeFilesIn(parsedXmls.keySet().iterator(), dirs);
+        }
+        synchronized (documents) {
+            removeFilesIn(documents.keySet().iterator(), dirs);
+        }
+    }
+
+    private static void removeFilesIn(Iterator<File> files, List<File> dirs) {
+        while (files.hasNext()) {
+            if (dirs.contains(files.next().getParentFile())) {
+                files.remove();
+            }
+        }
+    }
+
+    /**
+     * Stops this parser's threads once they've finished what they've started.
+     */
+    public void shutdown() {
+        if (executorService != null) {
+            executorService.shutdown();
+        }
+    }
+
+    private Callable<ParsedXml> parseTask(final File xmlFile) {
+        return new Callable<ParsedXml>() {
+            @Override public ParsedXml call() throws Exception {
+                if (resourceCache != null) {
+                    byte[] cachedXmlData = resourceCache.get(xmlFile);
+                    if (cachedXmlData != null) {
+                        try {
+                            return ParsedXml.fromCachedData(cachedXmlData);
+                        } catch (IOException e) {
+                            // a damaged cache entry; parsing the file replaces it
+                        }
+                    }
+                }
+
+                SAXParser saxParser;
+                synchronized (saxParserFactory) {
+                    saxParser = saxParserFactory.newSAXParser();
+                }
+                ParsedXml parsedXml = ParsedXml.parse(saxParser, xmlFile);
+                if (resourceCache != null) {
+                    resourceCache.put(xmlFile, parsedXml.getData());
+                }
+                return parsedXml;
+            }
+        };
+    }
+}
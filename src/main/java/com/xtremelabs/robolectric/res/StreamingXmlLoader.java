@@ -0,0 +1,97 @@
+package com.xtremelabs.robolectric.res;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An {@link XmlLoader} that picks what it needs out of resource XML files element by element as they're read, rather
+ * than out of a DOM of the whole file. A {@link DocumentLoader} whose loaders all stream reads each file in a single
+ * pass for all of them.
+ * <p/>
+ * Elements are identified by their path from the root, like {@code /resources/string}.
+ */
+public abstract class StreamingXmlLoader extends XmlLoader {
+    public StreamingXmlLoader(ResourceExtractor resourceExtractor) {
+        super(resourceExtractor);
+    }
+
+    /**
+     * Called before the elements of each file.
+     */
+    protected void startResourceXml(File xmlFile, boolean isSystem) throws Exception {
+    }
+
+    /**
+     * @param attributes the element's attributes by qualified name; loaders streaming the same file share the map, so
+     *                   it mustn't be changed
+     */
+    protected void startElement(String path, String name, Map<String, String> attributes, boolean isSystem)
+            throws Exception {
+    }
+
+    /**
+     * @param textContent all the text inside the element, as {@link Node#getTextContent()} would give it
+     */
+    protected void endElement(String path, String name, Map<String, String> attributes, String textContent,
+                              boolean isSystem) throws Exception {
+    }
+
+    /**
+     * Called after the elements of each file.
+     */
+    protected void endResourceXml() throws Exception {
+    }
+
+    /**
+     * Called once all the files of a directory have been loaded.
+     */
+    protected void endResourceXmlDir() throws Exception {
+    }
+
+    /**
+     * Walks {@code document} as if it were being streamed, for when this loader shares a {@link DocumentLoader} with
+     * loaders that need a DOM.
+     */
+    @Override protected void processResourceXml(File xmlFile, Document document, boolean isSystem) throws Exception {
+        startResourceXml(xmlFile, isSystem);
+        processChildren(document, "", new StringBuilder(), isSystem);
+        endResourceXml();
+    }
+
+    private void processChildren(Node parent, String parentPath, StringBuilder text, boolean isSystem)
+            throws Exception {
+        NodeList childNodes = parent.getChildNodes();
+        for (int i = 0; i < childNodes.getLength(); i++) {
+            Node node = childNodes.item(i);
+            switch (node.getNodeType()) {
+                case Node.ELEMENT_NODE:
+                    String name = node.getNodeName();
+                    NamedNodeMap attributeNodes = node.getAttributes();
+                    Map<String, String> attributes = new HashMap<String, String>();
+                    for (int j = 0; j < attributeNodes.getLength(); j++) {
+                        Node attr = attributeNodes.item(j);
+                        attributes.put(attr.getNodeName(), attr.getNodeValue());
+                    }
+
+                    String path = parentPath + "/" + name;
+                    startElement(path, name, attributes, isSystem);
+                    int textStart = text.length();
+                    processChildren(node, path, text, isSystem);
+                    endElement(path, name, attributes, text.substring(textStart), isSystem);
+                    break;
+                case Node.TEXT_NODE:
+                case Node.CDATA_SECTION_NODE:
+                    text.append(node.getNodeValue());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -1,23 +1,19 @@
 package com.xtremelabs.robolectric.res;
 
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpression;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class StringArrayResourceLoader extends XpathResourceXmlLoader {
+public class StringArrayResourceLoader extends StreamingXmlLoader {
     Map<String, String[]> stringArrayValues = new HashMap<String, String[]>();
     private StringResourceLoader stringResourceLoader;
+    private List<String> items;
+    // string references are resolved once the strings of the whole directory have been loaded
+    private Map<String, List<String>> unresolvedArrays = new HashMap<String, List<String>>();
 
     public StringArrayResourceLoader(ResourceExtractor resourceExtractor, StringResourceLoader stringResourceLoader) {
-        super(resourceExtractor, "/resources/string-array");
+        super(resourceExtractor);
         this.stringResourceLoader = stringResourceLoader;
     }
 
@@ -26,22 +22,37 @@ public class StringArrayResourceLoader extends XpathResourceXmlLoader {
         return stringArrayValues.get(resourceName);
     }
 
-    @Override protected void processNode(Node node, String name, boolean isSystem) throws XPathExpressionException {
-        XPathExpression itemXPath = XPathFactory.newInstance().newXPath().compile("item");
-        NodeList childNodes = (NodeList) itemXPath.evaluate(node, XPathConstants.NODESET);
-        List<String> arrayValues = new ArrayList<String>();
-        for (int j = 0; j < childNodes.getLength(); j++) {
-            Node childNode = childNodes.item(j);
+    @Override protected void startElement(String path, String name, Map<String, String> attributes, boolean isSystem) {
+        if (path.equals("/resources/string-array")) {
+            items = new ArrayList<String>();
+        }
+    }
+
+    @Override protected void endElement(String path, String name, Map<String, String> attributes, String textContent,
+                                        boolean isSystem) {
+        if (path.equals("/resources/string-array/item")) {
+            items.add(textContent);
+        } else if (path.equals("/resources/string-array")) {
+            String valuePointer = (isSystem ? "android:" : "") + "array/" + attributes.get("name");
+            unresolvedArrays.put(valuePointer, items);
+            items = null;
+        }
+    }
 
-            String value = childNode.getTextContent();
-            if (value.startsWith("@")) {
-                value = value.substring(1);
-                arrayValues.add(stringResourceLoader.getValue(value , isSystem));
-            } else {
-                arrayValues.add(value);
+    @Override protected void endResourceXmlDir() {
+        for (Map.Entry<String, List<String>> unresolvedArray : unresolvedArrays.entrySet()) {
+            boolean isSystem = unresolvedArray.getKey().startsWith("android:");
+            List<String> arrayValues = new ArrayList<String>();
+            for (String value : unresolvedArray.getValue()) {
+                if (value.startsWith("@")) {
+                    value = value.substring(1);
+                    arrayValues.add(stringResourceLoader.getValue(value, isSystem));
+                } else {
+                    arrayValues.add(value);
+                }
             }
+            stringArrayValues.put(unresolvedArray.getKey(), arrayValues.toArray(new String[arrayValues.size()]));
         }
-        String valuePointer = (isSystem ? "android:" : "") + "array/" + name;
-        stringArrayValues.put(valuePointer, arrayValues.toArray(new String[arrayValues.size()]));
+        unresolvedArrays.clear();
     }
 }
@@ -1,12 +1,12 @@
 package com.xtremelabs.robolectric.res;
 
-import org.w3c.dom.Node;
+import java.util.Map;
 
-public class StringResourceLoader extends XpathResourceXmlLoader implements ResourceValueConverter {
+public class StringResourceLoader extends StreamingXmlLoader implements ResourceValueConverter {
     private ResourceReferenceResolver<String> stringResolver = new ResourceReferenceResolver<String>("string");
 
     public StringResourceLoader(ResourceExtractor resourceExtractor) {
-        super(resourceExtractor, "/resources/string");
+        super(resourceExtractor);
     }
 
     public String getValue(int resourceId) {
@@ -17,8 +17,11 @@ public class StringResourceLoader extends XpathResourceXmlLoader implements Reso
         return getValue(resourceExtractor.getResourceId(resourceName, isSystem));
     }
 
-    @Override protected void processNode(Node node, String name, boolean isSystem) {
-        stringResolver.processResource(name, node.getTextContent(), this, isSystem);
+    @Override protected void endElement(String path, String name, Map<String, String> attributes, String textContent,
+                                        boolean isSystem) {
+        if (path.equals("/resources/string")) {
+            stringResolver.processResource(attributes.get("name"), textContent, this, isSystem);
+        }
     }
 
     @Override public Object convertRawValue(String rawValue) {
@@ -7,10 +7,6 @@ import android.view.ViewGroup;
 import android.view.ViewParent;
 import com.xtremelabs.robolectric.tester.android.util.TestAttributeSet;
 import com.xtremelabs.robolectric.util.I18nException;
-import org.w3c.dom.Document;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 
 import java.io.File;
 import java.lang.reflect.Constructor;
@@ -20,10 +16,14 @@ import java.util.*;
 
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 
-public class ViewLoader extends XmlLoader {
+public class ViewLoader extends StreamingXmlLoader {
     protected Map<String, ViewNode> viewNodesByLayoutName = new HashMap<String, ViewNode>();
     private AttrResourceLoader attrResourceLoader;
     private List<String> qualifierSearchPath = new ArrayList<String>();
+    private Map<String, UnloadedLayout> unloadedLayoutsByLayoutName = new HashMap<String, UnloadedLayout>();
+    private String loadingLayoutName;
+    private ViewNode topLevelNode;
+    private List<ViewNode> openNodes = new ArrayList<ViewNode>();
 
     public ViewLoader(ResourceExtractor resourceExtractor, AttrResourceLoader attrResourceLoader) {
         super(resourceExtractor);
@@ -31,44 +31,69 @@ public class ViewLoader extends XmlLoader {
     }
 
     @Override
-    protected void processResourceXml(File xmlFile, Document document, boolean isSystem) throws Exception {
-        ViewNode topLevelNode = new ViewNode("top-level", new HashMap<String, String>(), isSystem);
-        processChildren(document.getChildNodes(), topLevelNode);
-        String layoutName = xmlFile.getParentFile().getName() + "/" + xmlFile.getName().replace(".xml", "");
-        if (isSystem) {
-            layoutName = "android:" + layoutName;
-        }
-        viewNodesByLayoutName.put(layoutName, topLevelNode.getChildren().get(0));
+    protected void startResourceXml(File xmlFile, boolean isSystem) {
+        loadingLayoutName = layoutName(xmlFile, isSystem);
+        topLevelNode = new ViewNode("top-level", new HashMap<String, String>(), isSystem);
+        openNodes.add(topLevelNode);
     }
 
-    private void processChildren(NodeList childNodes, ViewNode parent) {
-        for (int i = 0; i < childNodes.getLength(); i++) {
-            Node node = childNodes.item(i);
-            processNode(node, parent);
+    @Override
+    protected void startElement(String path, String name, Map<String, String> attributes, boolean isSystem) {
+        ViewNode parent = openNodes.get(openNodes.size() - 1);
+        if (parent == null) {
+            // inside an element that isn't a view
+            openNodes.add(null);
+        } else if (name.equals("requestFocus")) {
+            parent.attributes.put("android:focus", "true");
+            parent.requestFocusOverride = true;
+            openNodes.add(null);
+        } else {
+            ViewNode viewNode = new ViewNode(name, new HashMap<String, String>(attributes), parent.isSystem);
+            parent.addChild(viewNode);
+            openNodes.add(viewNode);
         }
     }
 
-    private void processNode(Node node, ViewNode parent) {
-        String name = node.getNodeName();
-        NamedNodeMap attributes = node.getAttributes();
-        Map<String, String> attrMap = new HashMap<String, String>();
-        if (attributes != null) {
-            int length = attributes.getLength();
-            for (int i = 0; i < length; i++) {
-                Node attr = attributes.item(i);
-                attrMap.put(attr.getNodeName(), attr.getNodeValue());
-            }
-        }
+    @Override
+    protected void endElement(String path, String name, Map<String, String> attributes, String textContent,
+                              boolean isSystem) {
+        openNodes.remove(openNodes.size() - 1);
+    }
 
-        if (name.equals("requestFocus")) {
-            parent.attributes.put("android:focus", "true");
-            parent.requestFocusOverride = true;
-        } else if (!name.startsWith("#")) {
-            ViewNode viewNode = new ViewNode(name, attrMap, parent.isSystem);
-            if (parent != null) parent.addChild(viewNode);
+    @Override
+    protected void endResourceXml() {
+        viewNodesByLayoutName.put(loadingLayoutName, topLevelNode.getChildren().get(0));
+        unloadedLayoutsByLayoutName.remove(loadingLayoutName);
+        openNodes.clear();
+        topLevelNode = null;
+        loadingLayoutName = null;
+    }
 
-            processChildren(node.getChildNodes(), viewNode);
+    /**
+     * Notes which layouts are in {@code layoutDirs} without loading them; each is loaded through
+     * {@code documentLoader} the first time it's asked for. Layouts indexed later replace those with the same name,
+     * as when the directories are loaded in that order.
+     */
+    public synchronized void indexLayoutDirs(DocumentLoader documentLoader, boolean isSystem, File... layoutDirs) {
+        if (layoutDirs == null) {
+            return;
         }
+        for (File layoutDir : layoutDirs) {
+            File[] layoutFiles = layoutDir.listFiles(DocumentLoader.XML_FILE_FILTER);
+            if (layoutFiles == null) {
+                continue;
+            }
+            for (File layoutFile : layoutFiles) {
+                String layoutName = layoutName(layoutFile, isSystem);
+                viewNodesByLayoutName.remove(layoutName);
+                unloadedLayoutsByLayoutName.put(layoutName, new UnloadedLayout(documentLoader, layoutFile, isSystem));
+            }
+        }
+    }
+
+    private String layoutName(File xmlFile, boolean isSystem) {
+        String layoutName = xmlFile.getParentFile().getName() + "/" + xmlFile.getName().replace(".xml", "");
+        return isSystem ? "android:" + layoutName : layoutName;
     }
 
     public View inflateView(Context context, String key) {
@@ -104,16 +129,28 @@ public class ViewLoader extends XmlLoader {
         }
     }
 
-    private ViewNode getViewNodeByLayoutName(String layoutName) {
+    ViewNode getViewNodeByLayoutName(String layoutName) {
         if (layoutName.startsWith("layout/") && !qualifierSearchPath.isEmpty()) {
             String rawLayoutName = layoutName.substring("layout/".length());
             for (String location : qualifierSearchPath) {
-                ViewNode foundNode = viewNodesByLayoutName.get("layout-" + location + "/" + rawLayoutName);
+                ViewNode foundNode = getLoadedViewNode("layout-" + location + "/" + rawLayoutName);
                 if (foundNode != null) {
                     return foundNode;
                 }
             }
         }
+        return getLoadedViewNode(layoutName);
+    }
+
+    private synchronized ViewNode getLoadedViewNode(String layoutName) {
+        UnloadedLayout unloadedLayout = unloadedLayoutsByLayoutName.remove(layoutName);
+        if (unloadedLayout != null) {
+            try {
+                unloadedLayout.documentLoader.loadResourceXmlFile(unloadedLayout.layoutFile, unloadedLayout.isSystem);
+            } catch (Exception e) {
+                throw new RuntimeException("error loading " + unloadedLayout.layoutFile, e);
+            }
+        }
         return viewNodesByLayoutName.get(layoutName);
     }
 
@@ -239,4 +276,16 @@ public class ViewLoader extends XmlLoader {
             }
         }
     }
+
+    private static class UnloadedLayout {
+        final DocumentLoader documentLoader;
+        final File layoutFile;
+        final boolean isSystem;
+
+        UnloadedLayout(DocumentLoader documentLoader, File layoutFile, boolean isSystem) {
+            this.documentLoader = documentLoader;
+            this.layoutFile = layoutFile;
+            this.isSystem = isSystem;
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package com.xtremelabs.robolectric.shadows;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@code PreparedStatement}s a database has compiled for inserts, updates and deletes, so that running the same
+ * kind of statement again skips building, scrubbing and preparing its SQL.
+ * <p/>
+ * Statements are keyed by their SQL before scrubbing, with bind parameters in place of values. Only the most recently
+ * used statements are kept. A statement that's pushed out is closed, and {@link #close()} closes all of them.
+ * <p/>
+ * It isn't thread-safe; {@link ShadowSQLiteDatabase} only uses it while holding its statement lock.
+ */
+final class PreparedStatementCache {
+    private final Map<String, PreparedStatement> statements;
+
+    PreparedStatementCache(final int capacity) {
+        statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                if (size() <= capacity) {
+                    return false;
+                }
+                closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * @return the statement cached for {@code key}, or null if there isn't one
+     */
+    PreparedStatement get(String key) {
+        return statements.get(key);
+    }
+
+    /**
+     * @return {@code statement}
+     */
+    PreparedStatement put(String key, PreparedStatement statement) {
+        PreparedStatement replaced = statements.put(key, statement);
+        if (replaced != null && replaced != statement) {
+            closeQuietly(replaced);
+        }
+        return statement;
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    /**
+     * Closes and forgets every statement cached.
+     */
+    void close() {
+        List<PreparedStatement> toClose = new ArrayList<PreparedStatement>(statements.values());
+        statements.clear();
+        for (PreparedStatement statement : toClose) {
+            closeQuietly(statement);
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // the statement can't be used again either way
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.xtremelabs.robolectric.shadows;
+
+import java.sql.Clob;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * Rows read from a JDBC {@code ResultSet}, held column by column, standing in for Android's {@code CursorWindow}.
+ * <p/>
+ * A column whose values are all integers is kept in a {@code long[]}, one whose values are all {@code Double}s in a
+ * {@code double[]}, and any other in an {@code Object[]}. A column takes the type its first value that isn't null
+ * fits, and becomes an {@code Object[]} if a later value doesn't fit. {@code Clob}s are read into {@code String}s,
+ * since they can't be read once the result set is closed.
+ * <p/>
+ * The buffer holds a run of consecutive rows, numbered from {@link #getFirstRowNumber()}; a forward-only cursor
+ * {@link #discardRows() discards} the rows it has moved past.
+ */
+final class ResultSetRowBuffer {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Column[] columns;
+    private int capacity = INITIAL_CAPACITY;
+    private int size;
+    private int firstRowNumber;
+
+    ResultSetRowBuffer(int columnCount) {
+        columns = new Column[columnCount];
+    }
+
+    int getFirstRowNumber() {
+        return firstRowNumber;
+    }
+
+    /**
+     * @return the number of the row after the last one held
+     */
+    int getEndRowNumber() {
+        return firstRowNumber + size;
+    }
+
+    boolean contains(int rowNumber) {
+        return rowNumber >= firstRowNumber && rowNumber < firstRowNumber + size;
+    }
+
+    /**
+     * Adds the row {@code resultSet} is on after the rows held.
+     */
+    void append(ResultSet resultSet) throws SQLException {
+        if (size == capacity) {
+            capacity *= 2;
+            for (Column column : columns) {
+                if (column != null) {
+                    column.grow(capacity);
+                }
+            }
+        }
+
+        for (int columnIndex = 0; columnIndex < columns.length; columnIndex++) {
+            Object value = resultSet.getObject(columnIndex + 1);
+            if (value instanceof Clob) {
+                value = ((Clob) value).getSubString(1, (int) ((Clob) value).length());
+            }
+
+            Column column = columns[columnIndex];
+            if (column == null || (!column.hasValues && value != null)) {
+                // the column's type is decided by its first value that isn't null
+                column = columns[columnIndex] = newColumnFor(value);
+                for (int i = 0; i < size; i++) {
+                    column.set(i, null);
+                }
+            } else if (!column.fits(value)) {
+                column = columns[columnIndex] = new ObjectColumn(column, size, capacity);
+            }
+            column.set(size, value);
+        }
+        size++;
+    }
+
+    /**
+     * Drops the rows held; the next row appended is numbered after them.
+     */
+    void discardRows() {
+        firstRowNumber += size;
+        size = 0;
+        for (Column column : columns) {
+            if (column != null) {
+                column.clear();
+            }
+        }
+    }
+
+    boolean isNull(int rowNumber, int columnIndex) {
+        Column column = columns[columnIndex];
+        return column == null || column.isNull(rowNumber - firstRowNumber);
+    }
+
+    /**
+     * @return the value, boxed as it came from the result set, except that integers may come back as any of the
+     *         integer types
+     */
+    Object get(int rowNumber, int columnIndex) {
+        Column column = columns[columnIndex];
+        return column == null ? null : column.get(rowNumber - firstRowNumber);
+    }
+
+    /**
+     * @return the value if it's an integer, without boxing it; otherwise parses its string form, as a cursor always
+     *         has, so values that aren't integers throw a {@code NumberFormatException}
+     */
+    long getLong(int rowNumber, int columnIndex) {
+        Column column = columns[columnIndex];
+        if (column instanceof LongColumn) {
+            return ((LongColumn) column).values[rowNumber - firstRowNumber];
+        }
+        return Long.parseLong(String.valueOf(get(rowNumber, columnIndex)));
+    }
+
+    /**
+     * @return the value if it's a {@code Double} or an integer, without boxing it; otherwise parses its string form
+     */
+    double getDouble(int rowNumber, int columnIndex) {
+        Column column = columns[columnIndex];
+        if (column instanceof DoubleColumn) {
+            return ((DoubleColumn) column).values[rowNumber - firstRowNumber];
+        }
+        if (column instanceof LongColumn) {
+            return ((LongColumn) column).values[rowNumber - firstRowNumber];
+        }
+        return Double.parseDouble(String.valueOf(get(rowNumber, columnIndex)));
+    }
+
+    /**
+     * @return the value if it's an integer, without boxing it; otherwise parses its string form, so a {@code Double}
+     *         is rounded just as it always has been
+     */
+    float getFloat(int rowNumber, int columnIndex) {
+        Column column = columns[columnIndex];
+        if (column instanceof LongColumn) {
+            return ((LongColumn) column).values[rowNumber - firstRowNumber];
+        }
+        return Float.parseFloat(String.valueOf(get(rowNumber, columnIndex)));
+    }
+
+    private Column newColumnFor(Object value) {
+        if (LongColumn.accepts(value)) {
+            return new LongColumn(capacity);
+        } else if (value instanceof Double) {
+            return new DoubleColumn(capacity);
+        }
+        return new ObjectColumn(capacity);
+    }
+
+    private static abstract class Column {
+        boolean hasValues;
+
+        abstract boolean fits(Object value);
+
+        void set(int index, Object value) {
+            hasValues |= value != null;
+        }
+
+        abstract Object get(int index);
+
+        abstract boolean isNull(int index);
+
+        abstract void grow(int capacity);
+
+        abstract void clear();
+    }
+
+    /*
+     * Primitive columns record nulls in a bit set alongside the values.
+     */
+    private static abstract class PrimitiveColumn extends Column {
+        long[] nulls;
+
+        PrimitiveColumn(int capacity) {
+            nulls = new long[(capacity + 63) / 64];
+        }
+
+        @Override boolean isNull(int index) {
+            return (nulls[index >> 6] & (1L << index)) != 0;
+        }
+
+        void setNull(int index, boolean isNull) {
+            if (isNull) {
+                nulls[index >> 6] |= 1L << index;
+            } else {
+                nulls[index >> 6] &= ~(1L << index);
+            }
+        }
+
+        @Override void grow(int capacity) {
+            nulls = Arrays.copyOf(nulls, (capacity + 63) / 64);
+        }
+
+        @Override void clear() {
+            Arrays.fill(nulls, 0);
+        }
+    }
+
+    private static class LongColumn extends PrimitiveColumn {
+        long[] values;
+
+        LongColumn(int capacity) {
+            super(capacity);
+            values = new long[capacity];
+        }
+
+        static boolean accepts(Object value) {
+            return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+        }
+
+        @Override boolean fits(Object value) {
+            return value == null || accepts(value);
+        }
+
+        @Override void set(int index, Object value) {
+            super.set(index, value);
+            setNull(index, value == null);
+            values[index] = value == null ? 0 : ((Number) value).longValue();
+        }
+
+        @Override Object get(int index) {
+            return isNull(index) ? null : values[index];
+        }
+
+        @Override void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    private static class DoubleColumn extends PrimitiveColumn {
+        double[] values;
+
+        DoubleColumn(int capacity) {
+            super(capacity);
+            values = new double[capacity];
+        }
+
+        @Override boolean fits(Object value) {
+            return value == null || value instanceof Double;
+        }
+
+        @Override void set(int index, Object value) {
+            super.set(index, value);
+            setNull(index, value == null);
+            values[index] = value == null ? 0 : (Double) value;
+        }
+
+        @Override Object get(int index) {
+            return isNull(index) ? null : values[index];
+        }
+
+        @Override void grow(int capacity) {
+            super.grow(capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+    }
+
+    private static class ObjectColumn extends Column {
+        Object[] values;
+
+        ObjectColumn(int capacity) {
+            values = new Object[capacity];
+        }
+
+        ObjectColumn(Column column, int size, int capacity) {
+            this(capacity);
+            for (int i = 0; i < size; i++) {
+                values[i] = column.get(i);
+            }
+        }
+
+        @Override boolean fits(Object value) {
+            return true;
+        }
+
+        @Override void set(int index, Object value) {
+            super.set(index, value);
+            values[index] = value;
+        }
+
+        @Override Object get(int index) {
+            return values[index];
+        }
+
+        @Override boolean isNull(int index) {
+            return values[index] == null;
+        }
+
+        @Override void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        @Override void clear() {
+            Arrays.fill(values, null);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import android.app.Dialog;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Looper;
 import android.view.KeyEvent;
 import android.view.LayoutInflater;
 import android.view.MenuInflater;
@@ -190,7 +191,7 @@ public class ShadowActivity extends ShadowContextWrapper {
 
     @Implementation
     public void runOnUiThread(Runnable action) {
-        Robolectric.getUiThreadScheduler().post(action);
+        shadowOf(Looper.getMainLooper()).post(action, 0);
     }
 
     /**
@@ -14,6 +14,7 @@ import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
 import com.xtremelabs.robolectric.res.ResourceLoader;
 import com.xtremelabs.robolectric.tester.org.apache.http.FakeHttpLayer;
+import com.xtremelabs.robolectric.util.BackgroundThreadPool;
 import com.xtremelabs.robolectric.util.Scheduler;
 
 import java.util.*;
@@ -60,6 +61,8 @@ public class ShadowApplication extends ShadowContextWrapper {
     private ResourceLoader resourceLoader;
     private ContentResolver contentResolver;
     private Map<String, Object> systemServices = new HashMap<String, Object>();
+    // services getSystemService created rather than ones set with setSystemService, which snapshots leave out
+    private Set<String> createdSystemServiceNames = new HashSet<String>();
     private List<Intent> startedActivities = new ArrayList<Intent>();
     private List<Intent> startedServices = new ArrayList<Intent>();
     private List<Intent> stoppedServies = new ArrayList<Intent>();
@@ -69,6 +72,10 @@ public class ShadowApplication extends ShadowContextWrapper {
     private FakeHttpLayer fakeHttpLayer = new FakeHttpLayer();
     private Looper mainLooper = ShadowLooper.myLooper();
     private Scheduler backgroundScheduler = new Scheduler();
+    private boolean usesRealBackgroundThreads;
+    private int backgroundThreadCount;
+    private BackgroundThreadPool backgroundThreadPool;
+    private List<BackgroundThreadPool> backgroundThreadPools = new ArrayList<BackgroundThreadPool>();
     private Map<String, Map<String, Object>> sharedPreferenceMap = new HashMap<String, Map<String, Object>>();
     private ArrayList<Toast> shownToasts = new ArrayList<Toast>();
     private ShadowAlertDialog latestAlertDialog;
@@ -108,6 +115,69 @@ public class ShadowApplication extends ShadowContextWrapper {
         return backgroundScheduler;
     }
 
+    /**
+     * Non-Android accessor that makes background work started from now on run on pools of real threads rather than on
+     * the background scheduler.
+     *
+     * @param threadCount the number of threads in each pool, or 0 for one per processor
+     * @see com.xtremelabs.robolectric.annotation.RealBackgroundThreads
+     */
+    public void useRealBackgroundThreads(int threadCount) {
+        usesRealBackgroundThreads = true;
+        backgroundThreadCount = threadCount;
+    }
+
+    public boolean usesRealBackgroundThreads() {
+        return usesRealBackgroundThreads;
+    }
+
+    /**
+     * Non-Android accessor that returns the thread pool {@code AsyncTask}s run on.
+     *
+     * @return the pool, or null unless {@link #useRealBackgroundThreads(int)} has been called
+     */
+    public BackgroundThreadPool getBackgroundThreadPool() {
+        if (backgroundThreadPool == null && usesRealBackgroundThreads) {
+            backgroundThreadPool = newBackgroundThreadPool();
+        }
+        return backgroundThreadPool;
+    }
+
+    /**
+     * Non-Android accessor that creates a thread pool whose tasks are finished by {@link #finishBackgroundThreadTasks()}
+     * and which is shut down at the end of the test.
+     */
+    public BackgroundThreadPool newBackgroundThreadPool() {
+        BackgroundThreadPool threadPool = new BackgroundThreadPool(backgroundThreadCount, shadowOf(mainLooper).getScheduler());
+        backgroundThreadPools.add(threadPool);
+        return threadPool;
+    }
+
+    /**
+     * Non-Android accessor that waits for the work on this application's thread pools, including any started while
+     * waiting, and posts what it posted to the UI thread in the order each pool's work was started.
+     */
+    public void finishBackgroundThreadTasks() {
+        boolean finishedAny = true;
+        while (finishedAny) {
+            finishedAny = false;
+            for (BackgroundThreadPool threadPool : new ArrayList<BackgroundThreadPool>(backgroundThreadPools)) {
+                finishedAny |= threadPool.finishTasks();
+            }
+        }
+    }
+
+    /**
+     * Non-Android accessor that stops this application's thread pools, abandoning any work still queued.
+     */
+    public void shutdownBackgroundThreadPools() {
+        for (BackgroundThreadPool threadPool : backgroundThreadPools) {
+            threadPool.shutdownNow();
+        }
+        backgroundThreadPools.clear();
+        backgroundThreadPool = null;
+    }
+
     @Override
     @Implementation
     public Context getApplicationContext() {
@@ -149,6 +219,7 @@ public class ShadowApplication extends ShadowContextWrapper {
                         throw new RuntimeException(e);
                     }
                     systemServices.put(name, service);
+                    createdSystemServiceNames.add(name);
                 }
             }
             return service;
@@ -476,6 +547,87 @@ public class ShadowApplication extends ShadowContextWrapper {
 
     public void setSystemService(String key, Object service) {
         systemServices.put(key, service);
+        createdSystemServiceNames.remove(key);
+    }
+
+    /**
+     * Non-Android accessor that captures the state this application has been set up with, so that
+     * {@link #restore(Snapshot)} can put it back before a later test instead of a new application being created.
+     *
+     * @return the snapshot
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    /**
+     * Non-Android accessor that returns this application to the state it was in when {@code snapshot} was taken.
+     * Collections are copied from the snapshot, so changes made by one test don't reach the next; the main looper,
+     * background scheduler, HTTP layer and lazily created services are replaced with new ones. Receivers registered
+     * and services set before the snapshot was taken, and the package manager, are the same objects after every
+     * restore.
+     *
+     * @param snapshot a snapshot taken of this application
+     */
+    public void restore(Snapshot snapshot) {
+        restoreContextWrapperState(snapshot.contextWrapperState);
+        contentResolver = null;
+        resources = ShadowResources.bind(new Resources(null, null, null), resourceLoader);
+        systemServices = new HashMap<String, Object>(snapshot.systemServices);
+        createdSystemServiceNames = new HashSet<String>();
+        startedActivities = new ArrayList<Intent>();
+        startedServices = new ArrayList<Intent>();
+        stoppedServies = new ArrayList<Intent>();
+        unboundServiceConnections = new ArrayList<ServiceConnection>();
+        registeredReceivers = new ArrayList<Wrapper>(snapshot.registeredReceivers);
+        stickyIntents = new HashMap<String, Intent>(snapshot.stickyIntents);
+        fakeHttpLayer = new FakeHttpLayer();
+        mainLooper = ShadowLooper.myLooper();
+        backgroundScheduler = new Scheduler();
+        shutdownBackgroundThreadPools();
+        usesRealBackgroundThreads = false;
+        sharedPreferenceMap = copySharedPreferences(snapshot.sharedPreferenceMap);
+        shownToasts = new ArrayList<Toast>();
+        latestAlertDialog = null;
+        latestDialog = null;
+        bluetoothAdapter = Robolectric.newInstanceOf("android.bluetooth.BluetoothAdapter");
+        layoutInflater = null;
+        appWidgetManager = null;
+        serviceConnection = null;
+        componentNameForBindService = null;
+        serviceForBindService = null;
+        unbindableActions = new ArrayList<String>(snapshot.unbindableActions);
+    }
+
+    private static Map<String, Map<String, Object>> copySharedPreferences(Map<String, Map<String, Object>> sharedPreferenceMap) {
+        Map<String, Map<String, Object>> copy = new HashMap<String, Map<String, Object>>();
+        for (Map.Entry<String, Map<String, Object>> entry : sharedPreferenceMap.entrySet()) {
+            copy.put(entry.getKey(), new HashMap<String, Object>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * The state of an application as captured by {@link ShadowApplication#snapshot()}.
+     */
+    public static class Snapshot {
+        private final ContextWrapperState contextWrapperState;
+        private final Map<String, Object> systemServices;
+        private final List<Wrapper> registeredReceivers;
+        private final Map<String, Intent> stickyIntents;
+        private final Map<String, Map<String, Object>> sharedPreferenceMap;
+        private final List<String> unbindableActions;
+
+        private Snapshot(ShadowApplication shadowApplication) {
+            contextWrapperState = shadowApplication.saveContextWrapperState();
+            // services getSystemService created hold what tests did with them, so they're created again after a restore
+            systemServices = new HashMap<String, Object>(shadowApplication.systemServices);
+            systemServices.keySet().removeAll(shadowApplication.createdSystemServiceNames);
+            registeredReceivers = new ArrayList<Wrapper>(shadowApplication.registeredReceivers);
+            stickyIntents = new HashMap<String, Intent>(shadowApplication.stickyIntents);
+            sharedPreferenceMap = copySharedPreferences(shadowApplication.sharedPreferenceMap);
+            unbindableActions = new ArrayList<String>(shadowApplication.unbindableActions);
+        }
     }
 
     public class Wrapper {
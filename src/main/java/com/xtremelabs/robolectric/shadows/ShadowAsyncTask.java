@@ -6,6 +6,7 @@ import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
+import com.xtremelabs.robolectric.util.BackgroundThreadPool;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
@@ -29,13 +30,13 @@ public class ShadowAsyncTask<Params, Progress, Result> {
         	protected void done() {
 				try {
 					final Result result = get();
-					Robolectric.getUiThreadScheduler().post(new Runnable() {
+					postToUiThread(new Runnable() {
 						@Override public void run() {
 							getBridge().onPostExecute(result);
 						}
 					});
 				} catch (CancellationException e) {
-					Robolectric.getUiThreadScheduler().post(new Runnable() {
+					postToUiThread(new Runnable() {
 						@Override public void run() {
 							getBridge().onCancelled();
 						}
@@ -77,11 +78,17 @@ public class ShadowAsyncTask<Params, Progress, Result> {
         
         worker.params = params;
 
-        Robolectric.getBackgroundScheduler().post(new Runnable() {
+        Runnable runnable = new Runnable() {
             @Override public void run() {
             	future.run();
             }
-        });
+        };
+        BackgroundThreadPool backgroundThreadPool = Robolectric.getShadowApplication().getBackgroundThreadPool();
+        if (backgroundThreadPool != null) {
+            backgroundThreadPool.execute(runnable);
+        } else {
+            Robolectric.getBackgroundScheduler().post(runnable);
+        }
         
         return null;
     }
@@ -95,13 +102,23 @@ public class ShadowAsyncTask<Params, Progress, Result> {
      */
     @Implementation
     public void publishProgress(final Progress... values) {
-        Robolectric.getUiThreadScheduler().post(new Runnable() {
+        postToUiThread(new Runnable() {
             @Override public void run() {
                 getBridge().onProgressUpdate(values);
             }
         });
     }
 
+    /*
+     * On a real background thread the UI scheduler can't be touched, so the pool holds the runnable until the test's
+     * thread collects it.
+     */
+    private static void postToUiThread(Runnable runnable) {
+        if (!BackgroundThreadPool.postToUiThread(runnable)) {
+            Robolectric.getUiThreadScheduler().post(runnable);
+        }
+    }
+
     private ShadowAsyncTaskBridge<Params, Progress, Result> getBridge() {
         return new ShadowAsyncTaskBridge<Params, Progress, Result>(realAsyncTask);
     }
@@ -264,4 +264,30 @@ public class ShadowContextWrapper extends ShadowContext {
             grantedPermissions.add(permissionName);
         }
     }
+
+    ContextWrapperState saveContextWrapperState() {
+        return new ContextWrapperState(packageManager, appName, packageName, grantedPermissions);
+    }
+
+    void restoreContextWrapperState(ContextWrapperState state) {
+        packageManager = state.packageManager;
+        appName = state.appName;
+        packageName = state.packageName;
+        broadcastIntents = new ArrayList<Intent>();
+        grantedPermissions = new HashSet<String>(state.grantedPermissions);
+    }
+
+    static class ContextWrapperState {
+        private final PackageManager packageManager;
+        private final String appName;
+        private final String packageName;
+        private final Set<String> grantedPermissions;
+
+        ContextWrapperState(PackageManager packageManager, String appName, String packageName, Set<String> grantedPermissions) {
+            this.packageManager = packageManager;
+            this.appName = appName;
+            this.packageName = packageName;
+            this.grantedPermissions = new HashSet<String>(grantedPermissions);
+        }
+    }
 }
@@ -4,6 +4,7 @@ import android.os.Looper;
 import com.xtremelabs.robolectric.Robolectric;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
+import com.xtremelabs.robolectric.util.BackgroundThreadPool;
 import com.xtremelabs.robolectric.util.Scheduler;
 
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
@@ -107,17 +108,23 @@ public class ShadowLooper {
     }
 
     /**
-     * Enqueue a task to be run later.
+     * Enqueue a task to be run later. If this is the main looper and the caller is one of a
+     * {@link com.xtremelabs.robolectric.annotation.RealBackgroundThreads} pool's threads, the task is held until the
+     * test's thread finishes the background work, since the scheduler isn't thread-safe.
      *
      * @param runnable    the task to be run
      * @param delayMillis how many milliseconds into the (virtual) future to run it
      */
     public void post(Runnable runnable, long delayMillis) {
-        scheduler.postDelayed(runnable, delayMillis);
+        if (!BackgroundThreadPool.postToUiThread(scheduler, runnable, delayMillis)) {
+            scheduler.postDelayed(runnable, delayMillis);
+        }
     }
 
     public void postAtFrontOfQueue(Runnable runnable) {
-        scheduler.postAtFrontOfQueue(runnable);
+        if (!BackgroundThreadPool.postToUiThreadAtFrontOfQueue(scheduler, runnable)) {
+            scheduler.postAtFrontOfQueue(runnable);
+        }
     }
 
     public void pause() {
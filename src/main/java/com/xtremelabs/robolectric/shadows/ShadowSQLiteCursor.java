@@ -4,14 +4,9 @@ import android.database.sqlite.SQLiteCursor;
 import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
 
-import java.sql.Clob;
-import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.sql.Statement;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * Simulates an Android Cursor object, by wrapping a JDBC ResultSet.
@@ -20,6 +15,9 @@ import java.util.Map;
 public class ShadowSQLiteCursor extends ShadowAbstractCursor {
 
     private ResultSet resultSet;
+    private ResultSetRowBuffer rowBuffer;
+    private boolean isForwardOnly;
+    private boolean isExhausted;
     
     
     /**
@@ -67,100 +65,130 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
         return columnIndex;
     }
 
+    @Implementation
+    @Override
+    public int getCount() {
+        if (rowBuffer != null && !isExhausted) {
+            // a forward-only cursor has to read the rest of its rows to count them, so it keeps them
+            while (readRow()) {
+            }
+        }
+        return rowCount;
+    }
+
     @Implementation
     @Override
     public final boolean moveToLast() {
-        return super.moveToLast();
+        if (getCount() == 0) {
+            return false;
+        }
+        currentRowNumber = getCount() - 1;
+        return true;
     }
     
     @Implementation
     @Override
     public final boolean moveToFirst() {
-        return super.moveToFirst();
+        boolean hasFirstRow = hasRow(0);
+        currentRowNumber = 0;
+        return hasFirstRow;
     }
 
     @Implementation
     @Override
     public boolean moveToNext() {
-        return super.moveToNext();
+        if (!hasRow(currentRowNumber + 1)) {
+            currentRowNumber = getCount();
+            return false;
+        }
+        currentRowNumber++;
+        return true;
     }
     
     @Implementation
     @Override
     public boolean moveToPrevious() {
-        return super.moveToPrevious();
+        if (currentRowNumber < 0 || !hasAnyRows()) {
+            return false;
+        }
+        if (currentRowNumber > 0) {
+            hasRow(currentRowNumber - 1);
+        }
+        currentRowNumber--;
+        return true;
     }
     
     @Implementation
     @Override
     public boolean moveToPosition(int pos) {
-    	return super.moveToPosition(pos);
+        if (pos >= 0 && !hasRow(pos)) {
+            if (isForwardOnly) {
+                // the current row was left behind looking for this one
+                currentRowNumber = getCount();
+            }
+            return false;
+        }
+        currentRowNumber = pos;
+        return true;
     }
 
     @Implementation
     public byte[] getBlob(int columnIndex) {
-    	checkPosition();
-        return (byte[]) this.currentRow.get(getColumnNames()[columnIndex]);
+        checkPosition();
+        return (byte[]) rowBuffer.get(currentRowNumber, columnIndex);
     }
 
     @Implementation
     public String getString(int columnIndex) {
         checkPosition();
-        Object value = this.currentRow.get(getColumnNames()[columnIndex]);
-        if (value instanceof Clob) {
-            try {
-                return ((Clob) value).getSubString(1, (int)((Clob) value).length());
-            } catch (SQLException x) {
-                throw new RuntimeException(x);
-            }
-        } else {
-            return (String)value;
+        return (String) rowBuffer.get(currentRowNumber, columnIndex);
+    }
+
+    @Implementation
+    public short getShort(int columnIndex) {
+        checkPosition();
+        if (rowBuffer.isNull(currentRowNumber, columnIndex)) return 0;
+        long value = rowBuffer.getLong(currentRowNumber, columnIndex);
+        if (value != (short) value) {
+            throw new NumberFormatException("Value out of range. Value:\"" + value + "\"");
         }
+        return (short) value;
     }
-	
-	@Implementation
-	public short getShort(int columnIndex) {
-		checkPosition();
-		Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Short(o.toString());
-	}
-	
+
     @Implementation
     public int getInt(int columnIndex) {
-    	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Integer(o.toString());
+        checkPosition();
+        if (rowBuffer.isNull(currentRowNumber, columnIndex)) return 0;
+        long value = rowBuffer.getLong(currentRowNumber, columnIndex);
+        if (value != (int) value) {
+            throw new NumberFormatException("For input string: \"" + value + "\"");
+        }
+        return (int) value;
     }
 
     @Implementation
     public long getLong(int columnIndex) {
-    	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Long(o.toString());
+        checkPosition();
+        if (rowBuffer.isNull(currentRowNumber, columnIndex)) return 0;
+        return rowBuffer.getLong(currentRowNumber, columnIndex);
     }
 
     @Implementation
     public float getFloat(int columnIndex) {
-    	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-        return new Float(o.toString());
-        
+        checkPosition();
+        if (rowBuffer.isNull(currentRowNumber, columnIndex)) return 0;
+        return rowBuffer.getFloat(currentRowNumber, columnIndex);
     }
 
     @Implementation
     public double getDouble(int columnIndex) {
-    	checkPosition();
-    	Object o =this.currentRow.get(getColumnNames()[columnIndex]);
-    	if (o==null) return 0;
-    	return new Double(o.toString());
+        checkPosition();
+        if (rowBuffer.isNull(currentRowNumber, columnIndex)) return 0;
+        return rowBuffer.getDouble(currentRowNumber, columnIndex);
     }
     
     private void checkPosition() {
-        if (-1 == currentRowNumber || getCount() == currentRowNumber) {      
+        if (rowBuffer == null || !rowBuffer.contains(currentRowNumber)) {
             throw new IndexOutOfBoundsException(currentRowNumber + " " + getCount());
         }
     }
@@ -174,8 +202,7 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
         try {
             resultSet.close();
             resultSet = null;
-            rows = null;
-            currentRow = null;
+            rowBuffer = null;
         } catch (SQLException e) {
             throw new RuntimeException("SQL exception in close", e);
         }
@@ -188,8 +215,8 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
 
     @Implementation
     public boolean isNull(int columnIndex) {
-        Object o = this.currentRow.get(getColumnNames()[columnIndex]);
-        return o == null;
+        checkPosition();
+        return rowBuffer.isNull(currentRowNumber, columnIndex);
     }
 
     /**
@@ -213,50 +240,85 @@ public class ShadowSQLiteCursor extends ShadowAbstractCursor {
     }    
     
     /**
-     * loads a row's values
-     * @param rs
-     * @return
-     * @throws SQLException
+     * Reads the rows of {@code result} into this cursor, just as Android caches results in a {@code CursorWindow} so
+     * that the cursor can move backwards over a forward-only result set. The rows are read column by column into a
+     * {@link ResultSetRowBuffer} rather than into a map per row.
+     *
+     * @param sql no longer used; the rows are read from {@code result} itself rather than by running the query again
      */
-    private Map<String,Object> fillRowValues(ResultSet rs) throws SQLException {
-    	Map<String,Object> row = new HashMap<String,Object>();
-    	for (String s : getColumnNames()) {
-			  row.put(s, rs.getObject(s));
-    	}
-    	return row;
+    public void setResultSet(ResultSet result, String sql) {
+        setResultSet(result, false);
     }
-    private void fillRows(String sql, Connection connection) throws SQLException {
-    	//ResultSets in SQLite\Android are only TYPE_FORWARD_ONLY. Android caches results in the WindowedCursor to allow moveToPrevious() to function.
-    	//Robolectric will have to cache the results too. In the rows map.
-    	Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-        ResultSet rs = statement.executeQuery(sql);
-        int count = 0;
-        if (rs.next()) {  
-        	     do {
-        	    	Map<String,Object> row = fillRowValues(rs);
-         	    	rows.put(count, row);
-        	    	count++;
-        	     } while (rs.next());  
-        	 } else {  
-        		 rs.close(); 
-        	 } 
-        
-        rowCount = count;
-        
+
+    /**
+     * Reads the rows of {@code result} only as the cursor moves forward to them, holding just the current one, for
+     * queries with more rows than are worth keeping in memory. The cursor can't move back to a row it has left, and
+     * counting its rows, e.g. with {@code getCount()} or {@code moveToLast()}, reads and keeps all the rows after the
+     * current one. Failing to move to a row past the last leaves the cursor after the last row. The result set stays
+     * open until the cursor is closed.
+     */
+    public void setForwardOnlyResultSet(ResultSet result) {
+        setResultSet(result, true);
     }
-    
-    public void setResultSet(ResultSet result, String sql) {
+
+    private void setResultSet(ResultSet result, boolean isForwardOnly) {
         this.resultSet = result;
+        this.isForwardOnly = isForwardOnly;
         rowCount = 0;
+        currentRowNumber = -1;
+        isExhausted = false;
 
-        //Cache all rows.  Caching rows should be thought of as a simple replacement for ShadowCursorWindow
         if (resultSet != null) {
-        	cacheColumnNames(resultSet);
-        	try {
-        		fillRows(sql, result.getStatement().getConnection());
-			} catch (SQLException e) {
-			    throw new RuntimeException("SQL exception in setResultSet", e);
-			}
+            cacheColumnNames(resultSet);
+            rowBuffer = new ResultSetRowBuffer(columnNameArray.length);
+            if (!isForwardOnly) {
+                getCount();
+            }
+        }
+    }
+
+    private boolean hasAnyRows() {
+        return rowBuffer != null && (rowBuffer.getEndRowNumber() > 0 || hasRow(0));
+    }
+
+    /**
+     * Reads rows up to {@code rowNumber} if they haven't been read yet.
+     *
+     * @return false if there's no such row
+     */
+    private boolean hasRow(int rowNumber) {
+        if (rowBuffer == null) {
+            return false;
+        }
+        if (rowNumber < rowBuffer.getFirstRowNumber()) {
+            throw new UnsupportedOperationException("a forward-only cursor can't move back to row " + rowNumber
+                    + " from row " + currentRowNumber);
+        }
+        while (rowNumber >= rowBuffer.getEndRowNumber()) {
+            if (isForwardOnly && !isExhausted) {
+                rowBuffer.discardRows();
+            }
+            if (!readRow()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readRow() {
+        if (isExhausted) {
+            return false;
+        }
+        try {
+            if (resultSet.next()) {
+                rowBuffer.append(resultSet);
+                return true;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("SQL exception reading rows", e);
         }
+        isExhausted = true;
+        rowCount = rowBuffer.getEndRowNumber();
+        return false;
     }
 }
@@ -6,13 +6,16 @@ import static com.xtremelabs.robolectric.util.SQLite.buildDeleteString;
 import static com.xtremelabs.robolectric.util.SQLite.buildInsertString;
 import static com.xtremelabs.robolectric.util.SQLite.buildUpdateString;
 import static com.xtremelabs.robolectric.util.SQLite.buildWhereClause;
+import static com.xtremelabs.robolectric.util.SQLite.checkWhereArgs;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.Iterator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.WeakHashMap;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -21,7 +24,6 @@ import com.xtremelabs.robolectric.internal.Implementation;
 import com.xtremelabs.robolectric.internal.Implements;
 import com.xtremelabs.robolectric.internal.RealObject;
 import com.xtremelabs.robolectric.util.DatabaseConfig;
-import com.xtremelabs.robolectric.util.SQLite.SQLStringAndBindings;
 
 import android.content.ContentValues;
 import android.database.Cursor;
@@ -40,12 +42,19 @@ import android.database.sqlite.SQLiteStatement;
  */
 @Implements(SQLiteDatabase.class)
 public class ShadowSQLiteDatabase  {
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
 	@RealObject	SQLiteDatabase realSQLiteDatabase;
     private static Connection connection;
+    // the cached statements are shared, and AsyncTasks can run on real threads (see RealBackgroundThreads), so each
+    // statement is bound and run while holding this lock, or one thread's values could end up in another's statement
+    private static final Object STATEMENT_LOCK = new Object();
+    private static PreparedStatementCache statementCache;
     private final ReentrantLock mLock = new ReentrantLock(true);
     private boolean mLockingEnabled = true;
     private WeakHashMap<SQLiteClosable, Object> mPrograms;
     private boolean transactionSuccess = false;
+    private boolean forwardOnlyCursors = false;
     
     @Implementation
     public void setLockingEnabled(boolean lockingEnabled) {
@@ -64,7 +73,13 @@ public class ShadowSQLiteDatabase  {
     
     @Implementation
     public static SQLiteDatabase openDatabase(String path, SQLiteDatabase.CursorFactory factory, int flags) {
-     	connection = DatabaseConfig.getMemoryConnection();
+        synchronized (STATEMENT_LOCK) {
+            if (statementCache != null) {
+                statementCache.close();
+            }
+            connection = DatabaseConfig.getMemoryConnection();
+            statementCache = new PreparedStatementCache(STATEMENT_CACHE_SIZE);
+        }
         return newInstanceOf(SQLiteDatabase.class);
     }
     
@@ -82,24 +97,31 @@ public class ShadowSQLiteDatabase  {
     public long insertWithOnConflict(String table, String nullColumnHack,
             ContentValues initialValues, int conflictAlgorithm) {
 
-        try {
-            SQLStringAndBindings sqlInsertString = buildInsertString(table, initialValues, conflictAlgorithm);
-            PreparedStatement insert = connection.prepareStatement(sqlInsertString.sql, Statement.RETURN_GENERATED_KEYS);
-            Iterator<Object> columns = sqlInsertString.columnValues.iterator();
-            int i = 1;
-            long result = -1;
-            while (columns.hasNext()) {
-                insert.setObject(i++, columns.next());
-            }
-            insert.executeUpdate();
-            ResultSet resultSet = insert.getGeneratedKeys();
-            if (resultSet.next()) {
-                result = resultSet.getLong(1);
+        List<Object> bindings = new ArrayList<Object>(initialValues.size());
+        String key = "INSERT " + conflictAlgorithm + " INTO " + table
+                + " (" + columnNames(initialValues, bindings) + ")";
+
+        synchronized (STATEMENT_LOCK) {
+            try {
+                PreparedStatement insert = statementCache.get(key);
+                if (insert == null) {
+                    // buildInsertString goes through the values in the same order, so the statement's parameters match
+                    String sql = buildInsertString(table, initialValues, conflictAlgorithm).sql;
+                    insert = statementCache.put(key, connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS));
+                }
+                bind(insert, bindings);
+
+                long result = -1;
+                insert.executeUpdate();
+                ResultSet resultSet = insert.getGeneratedKeys();
+                if (resultSet.next()) {
+                    result = resultSet.getLong(1);
+                }
+                resultSet.close();
+                return result;
+            } catch (SQLException e) {
+                return -1; // this is how SQLite behaves, unlike H2 which throws exceptions
             }
-            resultSet.close();
-            return result;
-        } catch (SQLException e) {
-            return -1; // this is how SQLite behaves, unlike H2 which throws exceptions
         }
     }
 
@@ -124,9 +146,7 @@ public class ShadowSQLiteDatabase  {
             throw new RuntimeException("SQL exception in query", e);
         }
 
-        SQLiteCursor cursor = new SQLiteCursor(null, null, null, null);
-        shadowOf(cursor).setResultSet(resultSet,sql);
-        return cursor;
+        return newCursor(resultSet, sql);
     }
 
     @Implementation
@@ -145,31 +165,78 @@ public class ShadowSQLiteDatabase  {
 
     @Implementation
     public int update(String table, ContentValues values, String whereClause, String[] whereArgs) {
-        SQLStringAndBindings sqlUpdateString = buildUpdateString(table, values, whereClause, whereArgs);
-
-        try {               
-            String scrubbedSql = DatabaseConfig.getScrubSQL(sqlUpdateString.sql);
-            PreparedStatement statement = connection.prepareStatement(scrubbedSql);
-            Iterator<Object> columns = sqlUpdateString.columnValues.iterator();             
-            int i = 1;
-            while (columns.hasNext()) {
-                statement.setObject(i++, columns.next());
-            }
+        List<Object> bindings = new ArrayList<Object>(values.size());
+        String key = "UPDATE " + table + " SET " + columnNames(values, bindings) + where(whereClause, whereArgs, bindings);
 
-            return statement.executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("SQL exception in update", e);
+        synchronized (STATEMENT_LOCK) {
+            try {
+                PreparedStatement statement = statementCache.get(key);
+                if (statement == null) {
+                    // the where arguments are bound along with the values, rather than written into the SQL
+                    String sql = buildUpdateString(table, values, whereClause, null).sql;
+                    statement = statementCache.put(key, connection.prepareStatement(DatabaseConfig.getScrubSQL(sql)));
+                }
+                bind(statement, bindings);
+
+                return statement.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("SQL exception in update", e);
+            }
         }
     }
 
     @Implementation
     public int delete(String table, String whereClause, String[] whereArgs) {
-        String sql = buildDeleteString(table, whereClause, whereArgs);
-        try {
-            String scrubbedSql = DatabaseConfig.getScrubSQL(sql);
-            return connection.prepareStatement(scrubbedSql).executeUpdate();
-        } catch (SQLException e) {
-            throw new RuntimeException("SQL exception in delete", e);
+        List<Object> bindings = new ArrayList<Object>();
+        String key = "DELETE FROM " + table + where(whereClause, whereArgs, bindings);
+
+        synchronized (STATEMENT_LOCK) {
+            try {
+                PreparedStatement statement = statementCache.get(key);
+                if (statement == null) {
+                    String sql = buildDeleteString(table, whereClause, null);
+                    statement = statementCache.put(key, connection.prepareStatement(DatabaseConfig.getScrubSQL(sql)));
+                }
+                bind(statement, bindings);
+
+                return statement.executeUpdate();
+            } catch (SQLException e) {
+                throw new RuntimeException("SQL exception in delete", e);
+            }
+        }
+    }
+
+    /*
+     * Adds the values to bindings in the order their columns are named in.
+     */
+    private static String columnNames(ContentValues values, List<Object> bindings) {
+        StringBuilder columnNames = new StringBuilder();
+        for (Map.Entry<String, Object> entry : values.valueSet()) {
+            if (columnNames.length() > 0) {
+                columnNames.append(", ");
+            }
+            columnNames.append(entry.getKey());
+            bindings.add(entry.getValue());
+        }
+        return columnNames.toString();
+    }
+
+    private static String where(String whereClause, String[] whereArgs, List<Object> bindings) {
+        if (whereClause == null) {
+            return "";
+        }
+        checkWhereArgs(whereClause, whereArgs);
+        if (whereArgs != null) {
+            for (String whereArg : whereArgs) {
+                bindings.add(whereArg);
+            }
+        }
+        return " WHERE " + whereClause;
+    }
+
+    private static void bind(PreparedStatement statement, List<Object> bindings) throws SQLException {
+        for (int i = 0; i < bindings.size(); i++) {
+            statement.setObject(i + 1, bindings.get(i));
         }
     }
 
@@ -241,8 +308,26 @@ public class ShadowSQLiteDatabase  {
           //TODO: assert rawquery with args returns actual values
           
           
+        return newCursor(resultSet, sqlBody);
+    }
+
+    /**
+     * Non-Android accessor that makes the cursors this database returns from now on read their rows only as they're
+     * moved forward to, rather than all at once, for tests that page through large query results.
+     *
+     * @see ShadowSQLiteCursor#setForwardOnlyResultSet(ResultSet)
+     */
+    public void setForwardOnlyCursors(boolean forwardOnlyCursors) {
+        this.forwardOnlyCursors = forwardOnlyCursors;
+    }
+
+    private Cursor newCursor(ResultSet resultSet, String sql) {
         SQLiteCursor cursor = new SQLiteCursor(null, null, null, null);
-        shadowOf(cursor).setResultSet(resultSet, sqlBody);
+        if (forwardOnlyCursors) {
+            shadowOf(cursor).setForwardOnlyResultSet(resultSet);
+        } else {
+            shadowOf(cursor).setResultSet(resultSet, sql);
+        }
         return cursor;
     }
     
@@ -256,11 +341,14 @@ public class ShadowSQLiteDatabase  {
         if (!isOpen()) {
             return;
         }
-        try {
-            connection.close();
-            connection = null;
-        } catch (SQLException e) {
-            throw new RuntimeException("SQL exception in close", e);
+        synchronized (STATEMENT_LOCK) {
+            try {
+                statementCache.close();
+                connection.close();
+                connection = null;
+            } catch (SQLException e) {
+                throw new RuntimeException("SQL exception in close", e);
+            }
         }
     }
 
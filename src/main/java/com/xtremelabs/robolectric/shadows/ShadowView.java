@@ -6,6 +6,7 @@ import android.graphics.Bitmap;
 import android.graphics.Point;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Looper;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
@@ -788,17 +789,17 @@ public class ShadowView {
 
     @Implementation
     public void post(Runnable action) {
-        Robolectric.getUiThreadScheduler().post(action);
+        shadowOf(Looper.getMainLooper()).post(action, 0);
     }
 
     @Implementation
     public void postDelayed(Runnable action, long delayMills) {
-        Robolectric.getUiThreadScheduler().postDelayed(action, delayMills);
+        shadowOf(Looper.getMainLooper()).post(action, delayMills);
     }
 
     @Implementation
     public void postInvalidateDelayed(long delayMilliseconds) {
-        Robolectric.getUiThreadScheduler().postDelayed(new Runnable() {
+        shadowOf(Looper.getMainLooper()).post(new Runnable() {
             @Override
             public void run() {
                 realView.invalidate();
@@ -0,0 +1,261 @@
+package com.xtremelabs.robolectric.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An {@code ExecutorService} that runs background work on a bounded pool of real threads, for tests annotated with
+ * {@link com.xtremelabs.robolectric.annotation.RealBackgroundThreads}.
+ * <p/>
+ * The UI thread's {@link Scheduler} isn't safe to use from other threads, so runnables that tasks post to the UI thread
+ * through {@link #postToUiThread(Runnable)} and its variants are held with the task. The shadow {@code Looper} sends
+ * what's posted to the main looper from a pool's thread here, which covers {@code Handler}s on the main looper,
+ * {@code Activity.runOnUiThread} and {@code View.post}. {@link #finishTasks()}, called on the test's thread, waits for
+ * the tasks in the order they were submitted and posts each one's runnables to the UI scheduler as it finishes, with
+ * the delay it was posted with counting from then. The UI thread sees the same order however the pool's threads were
+ * scheduled.
+ * <p/>
+ * Pool threads are started by the threads that submit work, so they inherit the test thread's
+ * {@link com.xtremelabs.robolectric.bytecode.ShadowWrangler}. They exit once they've been idle for a few seconds.
+ */
+public class BackgroundThreadPool extends AbstractExecutorService {
+    private static final int IDLE_THREAD_SECONDS = 5;
+    private static final ThreadLocal<Task<?>> currentTask = new ThreadLocal<Task<?>>();
+
+    private final Scheduler uiScheduler;
+    private final ThreadPoolExecutor threadPool;
+    private final List<Task<?>> unfinishedTasks = new ArrayList<Task<?>>();
+
+    /**
+     * @param threadCount the number of threads, or 0 for one per processor
+     * @param uiScheduler the scheduler to post tasks' UI runnables to
+     */
+    public BackgroundThreadPool(int threadCount, Scheduler uiScheduler) {
+        this.uiScheduler = uiScheduler;
+        if (threadCount <= 0) {
+            threadCount = Runtime.getRuntime().availableProcessors();
+        }
+        threadPool = new ThreadPoolExecutor(threadCount, threadCount, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "robolectric-background-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        threadPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Holds {@code runnable} to be posted to the UI scheduler when the task running on this thread is finished, if
+     * this is one of a pool's threads. If the task has been cancelled, {@code runnable} is dropped.
+     *
+     * @return false if this isn't one of a pool's threads, in which case the caller should post {@code runnable} itself
+     */
+    public static boolean postToUiThread(Runnable runnable) {
+        Task<?> task = currentTask.get();
+        if (task == null) {
+            return false;
+        }
+        task.hold(new UiRunnable(runnable, 0, false));
+        return true;
+    }
+
+    /**
+     * Holds {@code runnable} to be posted to {@code scheduler} when the task running on this thread is finished, if
+     * this is one of a pool's threads and {@code scheduler} is the UI scheduler the pool posts to. If the task has been
+     * cancelled, {@code runnable} is dropped.
+     *
+     * @return false if the runnable isn't held, in which case the caller should post {@code runnable} itself
+     */
+    public static boolean postToUiThread(Scheduler scheduler, Runnable runnable, long delayMillis) {
+        return hold(scheduler, new UiRunnable(runnable, delayMillis, false));
+    }
+
+    /**
+     * Like {@link #postToUiThread(Scheduler, Runnable, long)}, but posts {@code runnable} at the front of the queue.
+     */
+    public static boolean postToUiThreadAtFrontOfQueue(Scheduler scheduler, Runnable runnable) {
+        return hold(scheduler, new UiRunnable(runnable, 0, true));
+    }
+
+    private static boolean hold(Scheduler scheduler, UiRunnable uiRunnable) {
+        Task<?> task = currentTask.get();
+        if (task == null || task.getUiScheduler() != scheduler) {
+            return false;
+        }
+        task.hold(uiRunnable);
+        return true;
+    }
+
+    /**
+     * Waits for every task submitted so far, and any they or the UI runnables submit, posting each one's UI runnables
+     * in the order the tasks were submitted. Must be called on the test's thread.
+     *
+     * @return true if there were any tasks to wait for
+     * @throws RuntimeException if a task passed to {@link #execute(Runnable)} threw, since nothing else would see it
+     */
+    public boolean finishTasks() {
+        boolean finishedAny = false;
+        while (true) {
+            Task<?> task;
+            synchronized (unfinishedTasks) {
+                if (unfinishedTasks.isEmpty()) {
+                    return finishedAny;
+                }
+                task = unfinishedTasks.remove(0);
+            }
+            finishedAny = true;
+
+            Throwable failure = null;
+            try {
+                task.get();
+            } catch (CancellationException e) {
+                continue; // it may still be running, but nothing it posts is wanted
+            } catch (ExecutionException e) {
+                failure = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+
+            for (UiRunnable uiRunnable : task.takeUiRunnables()) {
+                uiRunnable.postTo(uiScheduler);
+            }
+            if (failure != null && task.isExecuted) {
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                }
+                throw new RuntimeException(failure);
+            }
+        }
+    }
+
+    @Override
+    public void execute(Runnable runnable) {
+        Task<?> task = runnable instanceof Task ? (Task<?>) runnable : new Task<Object>(runnable, null, true);
+        synchronized (unfinishedTasks) {
+            unfinishedTasks.add(task);
+        }
+        try {
+            threadPool.execute(task);
+        } catch (RejectedExecutionException e) {
+            synchronized (unfinishedTasks) {
+                unfinishedTasks.remove(task);
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new Task<T>(callable);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new Task<T>(runnable, value, false);
+    }
+
+    @Override
+    public void shutdown() {
+        threadPool.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        synchronized (unfinishedTasks) {
+            unfinishedTasks.clear();
+        }
+        return threadPool.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return threadPool.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return threadPool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return threadPool.awaitTermination(timeout, unit);
+    }
+
+    private class Task<T> extends FutureTask<T> {
+        private final List<UiRunnable> uiRunnables = new ArrayList<UiRunnable>();
+        final boolean isExecuted;
+
+        Task(Callable<T> callable) {
+            super(callable);
+            isExecuted = false;
+        }
+
+        Task(Runnable runnable, T value, boolean isExecuted) {
+            super(runnable, value);
+            this.isExecuted = isExecuted;
+        }
+
+        Scheduler getUiScheduler() {
+            return uiScheduler;
+        }
+
+        synchronized void hold(UiRunnable uiRunnable) {
+            if (!isCancelled()) {
+                uiRunnables.add(uiRunnable);
+            }
+        }
+
+        synchronized List<UiRunnable> takeUiRunnables() {
+            List<UiRunnable> taken = new ArrayList<UiRunnable>(uiRunnables);
+            uiRunnables.clear();
+            return taken;
+        }
+
+        @Override public void run() {
+            currentTask.set(this);
+            try {
+                super.run();
+            } finally {
+                currentTask.remove();
+            }
+        }
+    }
+
+    private static class UiRunnable {
+        final Runnable runnable;
+        final long delayMillis;
+        final boolean atFrontOfQueue;
+
+        UiRunnable(Runnable runnable, long delayMillis, boolean atFrontOfQueue) {
+            this.runnable = runnable;
+            this.delayMillis = delayMillis;
+            this.atFrontOfQueue = atFrontOfQueue;
+        }
+
+        void postTo(Scheduler scheduler) {
+            if (atFrontOfQueue) {
+                scheduler.postAtFrontOfQueue(runnable);
+            } else {
+                scheduler.postDelayed(runnable, delayMillis);
+            }
+        }
+    }
+}
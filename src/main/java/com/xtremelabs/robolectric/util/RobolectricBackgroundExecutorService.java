@@ -1,6 +1,7 @@
 package com.xtremelabs.robolectric.util;
 
 import com.xtremelabs.robolectric.Robolectric;
+import com.xtremelabs.robolectric.shadows.ShadowApplication;
 
 import java.util.Collection;
 import java.util.List;
@@ -12,30 +13,37 @@ import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+/**
+ * Runs tasks on the application's background scheduler, or, for tests using
+ * {@link com.xtremelabs.robolectric.annotation.RealBackgroundThreads}, on a {@link BackgroundThreadPool} of its own,
+ * which implements all of {@code ExecutorService}.
+ */
 public class RobolectricBackgroundExecutorService implements ExecutorService {
+    private BackgroundThreadPool threadPool;
+
     @Override
     public void shutdown() {
-        throw new UnsupportedOperationException();
+        realThreadPool().shutdown();
     }
 
     @Override
     public List<Runnable> shutdownNow() {
-        throw new UnsupportedOperationException();
+        return realThreadPool().shutdownNow();
     }
 
     @Override
     public boolean isShutdown() {
-        throw new UnsupportedOperationException();
+        return realThreadPool().isShutdown();
     }
 
     @Override
     public boolean isTerminated() {
-        throw new UnsupportedOperationException();
+        return realThreadPool().isTerminated();
     }
 
     @Override
     public boolean awaitTermination(long l, TimeUnit timeUnit) throws InterruptedException {
-        throw new UnsupportedOperationException();
+        return realThreadPool().awaitTermination(l, timeUnit);
     }
 
     @Override
@@ -54,6 +62,12 @@ public class RobolectricBackgroundExecutorService implements ExecutorService {
     }
 
     private <T> Future<T> schedule(final FutureTask<T> futureTask) {
+        BackgroundThreadPool threadPool = threadPool();
+        if (threadPool != null) {
+            threadPool.execute(futureTask);
+            return futureTask;
+        }
+
         Robolectric.getShadowApplication().getBackgroundScheduler().post(new Runnable() {
             @Override
             public void run() {
@@ -66,27 +80,50 @@ public class RobolectricBackgroundExecutorService implements ExecutorService {
 
     @Override
     public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> callables) throws InterruptedException {
-        throw new UnsupportedOperationException();
+        return realThreadPool().invokeAll(callables);
     }
 
     @Override
     public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> callables, long l, TimeUnit timeUnit) throws InterruptedException {
-        throw new UnsupportedOperationException();
+        return realThreadPool().invokeAll(callables, l, timeUnit);
     }
 
     @Override
     public <T> T invokeAny(Collection<? extends Callable<T>> callables) throws InterruptedException, ExecutionException {
-        throw new UnsupportedOperationException();
+        return realThreadPool().invokeAny(callables);
     }
 
     @Override
     public <T> T invokeAny(Collection<? extends Callable<T>> callables, long l, TimeUnit timeUnit) throws InterruptedException, ExecutionException, TimeoutException {
-        throw new UnsupportedOperationException();
+        return realThreadPool().invokeAny(callables, l, timeUnit);
     }
 
     @Override
     public void execute(Runnable runnable) {
         submit(runnable);
     }
-}
 
+    /*
+     * Created on first use, since services are often created before the test's application is.
+     */
+    private BackgroundThreadPool threadPool() {
+        if (threadPool == null) {
+            ShadowApplication shadowApplication = Robolectric.getShadowApplication();
+            if (shadowApplication.usesRealBackgroundThreads()) {
+                threadPool = shadowApplication.newBackgroundThreadPool();
+            }
+        }
+        return threadPool;
+    }
+
+    /*
+     * Waiting on or shutting down tasks queued on the virtual background scheduler would never finish.
+     */
+    private BackgroundThreadPool realThreadPool() {
+        BackgroundThreadPool threadPool = threadPool();
+        if (threadPool == null) {
+            throw new UnsupportedOperationException();
+        }
+        return threadPool;
+    }
+}
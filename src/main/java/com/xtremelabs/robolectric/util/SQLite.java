@@ -111,7 +111,25 @@ public class SQLite {
      * @return where clause
      */
     public static String buildWhereClause(String selection, String[] selectionArgs) throws SQLiteException {
+        checkWhereArgs(selection, selectionArgs);
+
         String whereClause = selection;
+        if (selectionArgs != null) {
+            for (String selectionArg : selectionArgs) {
+                whereClause = whereClause.replaceFirst("\\?", "'" + selectionArg + "'");
+            }
+        }
+        return whereClause;
+    }
+
+    /**
+     * Check that there's an argument for each (?) placeholder in a where clause, and that none of them is null, as
+     * SQLite does when they're bound.
+     *
+     * @param selection     SQL where clause fragment
+     * @param selectionArgs Array of substitutions for args in selection
+     */
+    public static void checkWhereArgs(String selection, String[] selectionArgs) throws SQLiteException {
         int argsNeeded = 0;
         int args = 0;
 
@@ -122,17 +140,13 @@ public class SQLite {
             for (int x = 0; x < selectionArgs.length; x++) {
                 if (selectionArgs[x] == null) {
                     throw new IllegalArgumentException("the bind value at index " + x + " is null");
-                } else {
-                    args++;
                 }
-                whereClause = whereClause.replaceFirst("\\?", "'" + selectionArgs[x] + "'");
+                args++;
             }
         }
         if (argsNeeded != args) {
             throw new SQLiteException("bind or column index out of range: count of selectionArgs does not match count of (?) placeholders for given sql statement!");
         }
-
-        return whereClause;
     }
 
    /**
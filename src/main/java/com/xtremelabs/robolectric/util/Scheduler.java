@@ -1,15 +1,30 @@
 package com.xtremelabs.robolectric.util;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.ListIterator;
+import java.util.IdentityHashMap;
+import java.util.Map;
 
+/**
+ * Runs posted runnables in virtual time. Runnables are kept in a binary heap ordered by when they're scheduled and,
+ * for runnables scheduled at the same time, the order they were posted in, so posting and running one is O(log n)
+ * however many are queued. Each runnable's posts are chained together, so {@link #remove(Runnable)} can take them out
+ * without scanning the queue, and a post is unlinked from its chain in constant time when it's run.
+ * <p/>
+ * Each scheduler has its own clock; {@link VirtualClock} advances all of them together.
+ */
 public class Scheduler {
-    private List<PostedRunnable> postedRunnables = new ArrayList<PostedRunnable>();
+    private PostedRunnable[] queue = new PostedRunnable[16];
+    private int queueSize = 0;
+    // the most recent post of each runnable, which chains to its earlier ones
+    private Map<Runnable, PostedRunnable> latestPostsByRunnable = new IdentityHashMap<Runnable, PostedRunnable>();
+    private long nextSequence = 0;
+    private long nextFrontOfQueueSequence = -1;
     private long currentTime = 0;
     private boolean paused = false;
 
+    public Scheduler() {
+        VirtualClock.register(this);
+    }
+
     public long getCurrentTime() {
         return currentTime;
     }
@@ -29,8 +44,7 @@ public class Scheduler {
 
     public void postDelayed(Runnable runnable, long delayMillis) {
         if (paused || delayMillis > 0) {
-            postedRunnables.add(new PostedRunnable(runnable, currentTime + delayMillis));
-            Collections.sort(postedRunnables);
+            enqueue(new PostedRunnable(runnable, currentTime + delayMillis, nextSequence++));
         } else {
             runnable.run();
         }
@@ -42,19 +56,18 @@ public class Scheduler {
 
     public void postAtFrontOfQueue(Runnable runnable) {
         if (paused) {
-            postedRunnables.add(0, new PostedRunnable(runnable, currentTime));
+            // ahead of everything else due now, including runnables posted at the front of the queue before it
+            enqueue(new PostedRunnable(runnable, currentTime, nextFrontOfQueueSequence--));
         } else {
             runnable.run();
         }
     }
 
     public void remove(Runnable runnable) {
-        ListIterator<PostedRunnable> iterator = postedRunnables.listIterator();
-        while (iterator.hasNext()) {
-            PostedRunnable next = iterator.next();
-            if (next.runnable == runnable) {
-                iterator.remove();
-            }
+        PostedRunnable postedRunnable = latestPostsByRunnable.remove(runnable);
+        while (postedRunnable != null) {
+            removeAt(postedRunnable.queueIndex);
+            postedRunnable = postedRunnable.earlierPost;
         }
     }
 
@@ -63,7 +76,11 @@ public class Scheduler {
             return false;
         }
 
-        return advanceTo(postedRunnables.get(postedRunnables.size() - 1).scheduledTime);
+        long lastScheduledTime = queue[0].scheduledTime;
+        for (int i = 1; i < queueSize; i++) {
+            lastScheduledTime = Math.max(lastScheduledTime, queue[i].scheduledTime);
+        }
+        return advanceTo(lastScheduledTime);
     }
 
     public boolean advanceToNextPostedRunnable() {
@@ -71,7 +88,7 @@ public class Scheduler {
             return false;
         }
 
-        return advanceTo(postedRunnables.get(0).scheduledTime);
+        return advanceTo(queue[0].scheduledTime);
     }
 
     public boolean advanceBy(long intervalMs) {
@@ -99,7 +116,7 @@ public class Scheduler {
             return false;
         }
 
-        PostedRunnable postedRunnable = postedRunnables.remove(0);
+        PostedRunnable postedRunnable = dequeue();
         currentTime = postedRunnable.scheduledTime;
         postedRunnable.run();
         return true;
@@ -111,7 +128,7 @@ public class Scheduler {
         }
 
         while (howMany > 0) {
-            PostedRunnable postedRunnable = postedRunnables.remove(0);
+            PostedRunnable postedRunnable = dequeue();
             currentTime = postedRunnable.scheduledTime;
             postedRunnable.run();
             howMany--;
@@ -120,7 +137,7 @@ public class Scheduler {
     }
 
     public int enqueuedTaskCount() {
-        return postedRunnables.size();
+        return queueSize;
     }
 
     public boolean areAnyRunnable() {
@@ -128,26 +145,51 @@ public class Scheduler {
     }
 
     public void reset() {
-        postedRunnables.clear();
+        queue = new PostedRunnable[16];
+        queueSize = 0;
+        latestPostsByRunnable.clear();
         paused = false;
     }
 
     public int size() {
-        return postedRunnables.size();
+        return queueSize;
+    }
+
+    /**
+     * @return when the next queued runnable is scheduled; only meaningful if any are queued
+     */
+    long getNextScheduledTime() {
+        return queue[0].scheduledTime;
+    }
+
+    /**
+     * Moves the clock forward to {@code time} without running anything, for {@link VirtualClock}, which only does so
+     * when nothing here is due before then.
+     */
+    void advanceClockTo(long time) {
+        currentTime = Math.max(currentTime, time);
     }
 
     class PostedRunnable implements Comparable<PostedRunnable> {
         Runnable runnable;
         long scheduledTime;
+        long sequence;
+        int queueIndex;
+        PostedRunnable earlierPost;
+        PostedRunnable laterPost;
 
-        PostedRunnable(Runnable runnable, long scheduledTime) {
+        PostedRunnable(Runnable runnable, long scheduledTime, long sequence) {
             this.runnable = runnable;
             this.scheduledTime = scheduledTime;
+            this.sequence = sequence;
         }
 
         @Override
         public int compareTo(PostedRunnable postedRunnable) {
-            return (int) (scheduledTime - postedRunnable.scheduledTime);
+            if (scheduledTime != postedRunnable.scheduledTime) {
+                return scheduledTime < postedRunnable.scheduledTime ? -1 : 1;
+            }
+            return sequence < postedRunnable.sequence ? -1 : (sequence == postedRunnable.sequence ? 0 : 1);
         }
 
         public void run() {
@@ -156,6 +198,98 @@ public class Scheduler {
     }
 
     private boolean nextTaskIsScheduledBefore(long endingTime) {
-        return enqueuedTaskCount() > 0 && postedRunnables.get(0).scheduledTime <= endingTime;
+        return enqueuedTaskCount() > 0 && queue[0].scheduledTime <= endingTime;
+    }
+
+    private void enqueue(PostedRunnable postedRunnable) {
+        PostedRunnable latestPost = latestPostsByRunnable.put(postedRunnable.runnable, postedRunnable);
+        if (latestPost != null) {
+            latestPost.laterPost = postedRunnable;
+            postedRunnable.earlierPost = latestPost;
+        }
+
+        if (queueSize == queue.length) {
+            PostedRunnable[] biggerQueue = new PostedRunnable[queue.length * 2];
+            System.arraycopy(queue, 0, biggerQueue, 0, queueSize);
+            queue = biggerQueue;
+        }
+        place(postedRunnable, queueSize++);
+        siftUp(postedRunnable.queueIndex);
+    }
+
+    private PostedRunnable dequeue() {
+        PostedRunnable postedRunnable = queue[0];
+        unlink(postedRunnable);
+        removeAt(0);
+        return postedRunnable;
+    }
+
+    private void unlink(PostedRunnable postedRunnable) {
+        if (postedRunnable.earlierPost != null) {
+            postedRunnable.earlierPost.laterPost = postedRunnable.laterPost;
+        }
+        if (postedRunnable.laterPost != null) {
+            postedRunnable.laterPost.earlierPost = postedRunnable.earlierPost;
+        } else if (postedRunnable.earlierPost != null) {
+            latestPostsByRunnable.put(postedRunnable.runnable, postedRunnable.earlierPost);
+        } else {
+            latestPostsByRunnable.remove(postedRunnable.runnable);
+        }
+    }
+
+    /**
+     * Takes the runnable at {@code index} out of the heap; the caller keeps {@link #latestPostsByRunnable} in step.
+     */
+    private void removeAt(int index) {
+        queueSize--;
+        PostedRunnable last = queue[queueSize];
+        queue[queueSize] = null;
+        if (index == queueSize) {
+            return;
+        }
+
+        place(last, index);
+        siftDown(index);
+        if (queue[index] == last) {
+            siftUp(index);
+        }
+    }
+
+    private void siftUp(int index) {
+        PostedRunnable postedRunnable = queue[index];
+        while (index > 0) {
+            int parentIndex = (index - 1) / 2;
+            PostedRunnable parent = queue[parentIndex];
+            if (parent.compareTo(postedRunnable) <= 0) {
+                break;
+            }
+            place(parent, index);
+            index = parentIndex;
+        }
+        place(postedRunnable, index);
+    }
+
+    private void siftDown(int index) {
+        PostedRunnable postedRunnable = queue[index];
+        while (true) {
+            int childIndex = 2 * index + 1;
+            if (childIndex >= queueSize) {
+                break;
+            }
+            if (childIndex + 1 < queueSize && queue[childIndex + 1].compareTo(queue[childIndex]) < 0) {
+                childIndex++;
+            }
+            if (postedRunnable.compareTo(queue[childIndex]) <= 0) {
+                break;
+            }
+            place(queue[childIndex], index);
+            index = childIndex;
+        }
+        place(postedRunnable, index);
+    }
+
+    private void place(PostedRunnable postedRunnable, int index) {
+        queue[index] = postedRunnable;
+        postedRunnable.queueIndex = index;
     }
 }
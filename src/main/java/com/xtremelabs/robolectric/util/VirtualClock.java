@@ -0,0 +1,133 @@
+package com.xtremelabs.robolectric.util;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Advances every {@link Scheduler} together: the UI thread's, the background scheduler, and those of any other
+ * loopers. Due tasks run one at a time in the order of their scheduled times across all the schedulers, and each
+ * scheduler's clock is moved up to a task's time before it runs. A task that posts to another scheduler therefore
+ * sees the same time there, and a simulated timeline of hours takes only as long as its tasks do.
+ * <p/>
+ * Each scheduler counts from its own start time, so times are compared as offsets from where each clock stood when
+ * the advance began. Tasks due at the same offset on different schedulers run in the order their schedulers were
+ * created.
+ * <p/>
+ * Schedulers register themselves when they're created, and are forgotten when they're garbage or at {@link #reset()}.
+ */
+public class VirtualClock {
+    private static final List<WeakReference<Scheduler>> schedulers = new ArrayList<WeakReference<Scheduler>>();
+
+    static void register(Scheduler scheduler) {
+        synchronized (schedulers) {
+            schedulers.add(new WeakReference<Scheduler>(scheduler));
+        }
+    }
+
+    /**
+     * Forgets the schedulers created so far, so that advancing the clock in one test doesn't run tasks left on the
+     * schedulers of earlier tests.
+     */
+    public static void reset() {
+        synchronized (schedulers) {
+            schedulers.clear();
+        }
+    }
+
+    /**
+     * Runs the tasks due on any scheduler within the next {@code intervalMillis} milliseconds, in time order, and
+     * leaves every scheduler's clock {@code intervalMillis} later than it was.
+     *
+     * @return true if any task was run
+     */
+    public static boolean advanceBy(long intervalMillis) {
+        if (intervalMillis < 0) {
+            return false;
+        }
+
+        Map<Scheduler, Long> startTimes = new IdentityHashMap<Scheduler, Long>();
+        long elapsed = 0;
+        int runCount = 0;
+        while (true) {
+            Scheduler nextScheduler = null;
+            long nextOffset = 0;
+            // looked up again each time, since tasks can create loopers
+            List<Scheduler> liveSchedulers = getSchedulers();
+            for (Scheduler scheduler : liveSchedulers) {
+                long startTime = startTime(startTimes, scheduler, elapsed);
+                if (scheduler.enqueuedTaskCount() > 0) {
+                    long offset = scheduler.getNextScheduledTime() - startTime;
+                    if (offset <= intervalMillis && (nextScheduler == null || offset < nextOffset)) {
+                        nextScheduler = scheduler;
+                        nextOffset = offset;
+                    }
+                }
+            }
+            if (nextScheduler == null) {
+                break;
+            }
+
+            for (Scheduler scheduler : liveSchedulers) {
+                scheduler.advanceClockTo(startTimes.get(scheduler) + nextOffset);
+            }
+            elapsed = nextOffset;
+            nextScheduler.runOneTask();
+            runCount++;
+        }
+
+        for (Map.Entry<Scheduler, Long> startTime : startTimes.entrySet()) {
+            startTime.getKey().advanceClockTo(startTime.getValue() + intervalMillis);
+        }
+        return runCount > 0;
+    }
+
+    /**
+     * Advances every scheduler to the earliest time any of them has a task due, running the tasks due then.
+     *
+     * @return true if any task was run
+     */
+    public static boolean advanceToNextPostedRunnable() {
+        Long nextDelay = null;
+        for (Scheduler scheduler : getSchedulers()) {
+            if (scheduler.enqueuedTaskCount() > 0) {
+                long delay = scheduler.getNextScheduledTime() - scheduler.getCurrentTime();
+                if (nextDelay == null || delay < nextDelay) {
+                    nextDelay = delay;
+                }
+            }
+        }
+        return nextDelay != null && advanceBy(nextDelay);
+    }
+
+    /*
+     * A scheduler created by a task partway through an advance starts at its current time, so it's treated as having
+     * started as far back as the others have been advanced so far.
+     */
+    private static long startTime(Map<Scheduler, Long> startTimes, Scheduler scheduler, long elapsed) {
+        Long startTime = startTimes.get(scheduler);
+        if (startTime == null) {
+            startTime = scheduler.getCurrentTime() - elapsed;
+            startTimes.put(scheduler, startTime);
+        }
+        return startTime;
+    }
+
+    private static List<Scheduler> getSchedulers() {
+        List<Scheduler> liveSchedulers = new ArrayList<Scheduler>();
+        synchronized (schedulers) {
+            for (Iterator<WeakReference<Scheduler>> iterator = schedulers.iterator(); iterator.hasNext(); ) {
+                Scheduler scheduler = iterator.next().get();
+                if (scheduler == null) {
+                    iterator.remove();
+                } else {
+                    liveSchedulers.add(scheduler);
+                }
+            }
+        }
+        return liveSchedulers;
+    }
+}
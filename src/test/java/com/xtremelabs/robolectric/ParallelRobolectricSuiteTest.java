@@ -0,0 +1,65 @@
+package com.xtremelabs.robolectric;
+
+import com.xtremelabs.robolectric.bytecode.RobolectricClassLoader;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite.SuiteClasses;
+
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelRobolectricSuiteTest {
+    @Test
+    public void shouldRunEachTestClassOnAWorkerWithItsOwnClassLoader() throws Exception {
+        Result result = JUnitCore.runClasses(ParallelTests.class);
+
+        assertEquals(result.getFailures().toString(), 0, result.getFailureCount());
+        assertEquals(2, result.getRunCount());
+        assertNotNull(FirstTest.classLoader);
+        assertNotNull(SecondTest.classLoader);
+        assertThat(FirstTest.classLoader, not(sameInstance(SecondTest.classLoader)));
+    }
+
+    @RunWith(ParallelRobolectricSuite.class)
+    @SuiteClasses({FirstTest.class, SecondTest.class})
+    @ParallelRobolectricSuite.WorkerCount(2)
+    public static class ParallelTests {
+    }
+
+    @RunWith(WithTestDefaultsRunner.class)
+    public static class FirstTest {
+        static ClassLoader classLoader;
+
+        @Test
+        public void shouldRunInItsOwnClassLoader() throws Exception {
+            assertTrue(Thread.currentThread().getName().startsWith("robolectric-worker-"));
+            assertEquals(RobolectricClassLoader.class.getName(), getClass().getClassLoader().getClass().getName());
+            assertNotNull(Robolectric.application);
+            recordClassLoader(FirstTest.class, getClass().getClassLoader());
+        }
+    }
+
+    @RunWith(WithTestDefaultsRunner.class)
+    public static class SecondTest {
+        static ClassLoader classLoader;
+
+        @Test
+        public void shouldRunInItsOwnClassLoader() throws Exception {
+            assertTrue(Thread.currentThread().getName().startsWith("robolectric-worker-"));
+            assertNotNull(Robolectric.application);
+            recordClassLoader(SecondTest.class, getClass().getClassLoader());
+        }
+    }
+
+    // the tests run in instrumented copies of these classes, so record on the originals
+    private static void recordClassLoader(Class<?> testClass, ClassLoader classLoader) throws Exception {
+        Class<?> originalTestClass = classLoader.getParent().loadClass(testClass.getName());
+        originalTestClass.getDeclaredField("classLoader").set(null, classLoader);
+    }
+}
@@ -0,0 +1,122 @@
+package com.xtremelabs.robolectric;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.view.View;
+import com.xtremelabs.robolectric.annotation.RealBackgroundThreads;
+import com.xtremelabs.robolectric.util.RobolectricBackgroundExecutorService;
+import com.xtremelabs.robolectric.util.Transcript;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+@RealBackgroundThreads(2)
+@RunWith(WithTestDefaultsRunner.class)
+public class RealBackgroundThreadsTest {
+    private Transcript transcript;
+    private Thread testThread;
+    private RobolectricBackgroundExecutorService executorService;
+
+    @Before
+    public void setUp() throws Exception {
+        transcript = new Transcript();
+        testThread = Thread.currentThread();
+        executorService = new RobolectricBackgroundExecutorService();
+    }
+
+    @Test
+    public void shouldRunAsyncTasksOnAnotherThreadAndTheirCallbacksOnTheTestThread() throws Exception {
+        final Thread[] backgroundThread = new Thread[1];
+        AsyncTask<String, String, String> asyncTask = new AsyncTask<String, String, String>() {
+            @Override protected String doInBackground(String... strings) {
+                backgroundThread[0] = Thread.currentThread();
+                publishProgress("halfway");
+                return strings[0] + " done";
+            }
+
+            @Override protected void onProgressUpdate(String... values) {
+                transcript.add("onProgressUpdate " + values[0] + onTestThread());
+            }
+
+            @Override protected void onPostExecute(String result) {
+                transcript.add("onPostExecute " + result + onTestThread());
+            }
+        };
+
+        asyncTask.execute("task");
+        assertThat(asyncTask.get(10, TimeUnit.SECONDS), equalTo("task done"));
+        transcript.assertNoEventsSoFar();
+
+        Robolectric.runBackgroundTasks();
+        transcript.assertEventsSoFar("onProgressUpdate halfway on the test thread", "onPostExecute task done on the test thread");
+        assertThat(backgroundThread[0], not(sameInstance(testThread)));
+    }
+
+    @Test
+    public void shouldRunInvokeAllOnSeveralThreads() throws Exception {
+        final CountDownLatch allRunning = new CountDownLatch(2);
+        List<Callable<Boolean>> callables = new ArrayList<Callable<Boolean>>();
+        for (int i = 0; i < 2; i++) {
+            callables.add(new Callable<Boolean>() {
+                @Override public Boolean call() throws Exception {
+                    allRunning.countDown();
+                    return allRunning.await(10, TimeUnit.SECONDS) && Thread.currentThread() != testThread;
+                }
+            });
+        }
+
+        for (Future<Boolean> future : executorService.invokeAll(callables)) {
+            assertTrue(future.get());
+        }
+        Robolectric.runBackgroundTasks();
+    }
+
+    @Test
+    public void shouldHoldWhatIsPostedToTheMainLooperUntilBackgroundTasksAreRun() throws Exception {
+        final Handler handler = new Handler();
+        final View view = new View(Robolectric.application);
+        executorService.submit(new Runnable() {
+            @Override public void run() {
+                handler.post(new AddToTranscript("posted to a handler"));
+                view.post(new AddToTranscript("posted to a view"));
+                handler.postDelayed(new AddToTranscript("posted with a delay"), 100);
+            }
+        }).get(10, TimeUnit.SECONDS);
+        transcript.assertNoEventsSoFar();
+
+        Robolectric.runBackgroundTasks();
+        transcript.assertEventsSoFar("posted to a handler on the test thread", "posted to a view on the test thread");
+
+        Robolectric.idleMainLooper(100);
+        transcript.assertEventsSoFar("posted with a delay on the test thread");
+    }
+
+    private String onTestThread() {
+        return Thread.currentThread() == testThread ? " on the test thread" : " on another thread";
+    }
+
+    private class AddToTranscript implements Runnable {
+        private final String event;
+
+        AddToTranscript(String event) {
+            this.event = event;
+        }
+
+        @Override public void run() {
+            transcript.add(event + onTestThread());
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.xtremelabs.robolectric;
+
+import android.app.Application;
+import android.content.Intent;
+import com.xtremelabs.robolectric.annotation.ReuseApplication;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static com.xtremelabs.robolectric.Robolectric.shadowOf;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+
+@ReuseApplication
+@RunWith(WithTestDefaultsRunner.class)
+public class ReuseApplicationTest {
+    private static Application firstApplication;
+
+    @Test
+    public void shouldStartFromTheSameApplicationState() throws Exception {
+        checkApplicationIsRestored();
+    }
+
+    @Test
+    public void shouldAlsoStartFromTheSameApplicationState() throws Exception {
+        checkApplicationIsRestored();
+    }
+
+    private void checkApplicationIsRestored() {
+        if (firstApplication == null) {
+            firstApplication = Robolectric.application;
+        }
+        assertThat(Robolectric.application, sameInstance(firstApplication));
+        assertNull(shadowOf(Robolectric.application).getNextStartedActivity());
+
+        Robolectric.application.startActivity(new Intent("Foo"));
+    }
+}
@@ -0,0 +1,45 @@
+package com.xtremelabs.robolectric;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class TestTimingReportTest {
+    @Test
+    public void shouldWriteARowPerTestAndATotal() throws Exception {
+        TestTimingReport report = new TestTimingReport();
+        report.testFinished(testTiming("FooTest", "shouldFoo", 3000000, 1000000, 2, 40, 100));
+        report.testFinished(testTiming("BarTest", "shouldBar", 0, 5000, 0, 3, 7));
+
+        StringWriter writer = new StringWriter();
+        report.writeTo(writer);
+
+        assertEquals("test,bootstrap_us,create_resource_loader_us,bind_shadow_classes_us,reset_static_state_us,"
+                + "create_application_us,test_us,total_us,classes_instrumented,class_cache_hits,shadow_dispatches\n"
+                + "FooTest.shouldFoo,3000,0,0,0,0,1000,4000,2,40,100\n"
+                + "BarTest.shouldBar,0,0,0,0,0,5,5,0,3,7\n"
+                + "TOTAL,3000,0,0,0,0,1005,4005,2,43,107\n", writer.toString());
+    }
+
+    @Test
+    public void shouldAddUpTimeSpentInTheSamePhase() throws Exception {
+        TestTiming testTiming = new TestTiming("FooTest", "shouldFoo");
+        testTiming.addPhaseNanos(TestTiming.Phase.CREATE_APPLICATION, 10);
+        testTiming.addPhaseNanos(TestTiming.Phase.CREATE_APPLICATION, 5);
+        testTiming.addPhaseNanos(TestTiming.Phase.TEST, 1);
+
+        assertEquals(15, testTiming.getPhaseNanos(TestTiming.Phase.CREATE_APPLICATION));
+        assertEquals(16, testTiming.getTotalNanos());
+    }
+
+    private TestTiming testTiming(String className, String methodName, long bootstrapNanos, long testNanos,
+                                  long classesInstrumented, long classCacheHits, long shadowDispatches) {
+        TestTiming testTiming = new TestTiming(className, methodName);
+        testTiming.addPhaseNanos(TestTiming.Phase.BOOTSTRAP, bootstrapNanos);
+        testTiming.addPhaseNanos(TestTiming.Phase.TEST, testNanos);
+        testTiming.setCounts(classesInstrumented, classCacheHits, shadowDispatches);
+        return testTiming;
+    }
+}
@@ -0,0 +1,89 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AheadOfTimeInstrumenterTest {
+    private File baseDirectory;
+    private ClassCache classCache;
+
+    @Before
+    public void setUp() throws Exception {
+        baseDirectory = new File("target/aot-instrumenter-test");
+        deleteRecursively(baseDirectory);
+        baseDirectory.mkdirs();
+        classCache = new ClassCache(new File(baseDirectory, "cache").getPath(), AndroidTranslator.CACHE_VERSION, getClass().getClassLoader());
+    }
+
+    @Test
+    public void shouldWriteInstrumentedClassesToTheCache() throws Exception {
+        AheadOfTimeInstrumenter instrumenter = new AheadOfTimeInstrumenter(getClass().getClassLoader(), classCache,
+                Arrays.asList(Instrumentable.class.getName()));
+
+        List<String> failedClassNames = instrumenter.instrument(Arrays.asList(Instrumentable.class.getName(), NotInstrumentable.class.getName()), 2);
+
+        assertTrue(failedClassNames.isEmpty());
+        assertEquals(1, instrumenter.getInstrumentedClassCount());
+        byte[] classBytes = classCache.getClassBytesFor(Instrumentable.class.getName());
+        assertNotNull(classBytes);
+        assertTrue(new String(classBytes, "ISO-8859-1").contains(RobolectricInternals.class.getName().replace('.', '/')));
+        assertNull(classCache.getClassBytesFor(NotInstrumentable.class.getName()));
+    }
+
+    @Test
+    public void shouldReportClassesItCouldNotFind() throws Exception {
+        AheadOfTimeInstrumenter instrumenter = new AheadOfTimeInstrumenter(getClass().getClassLoader(), classCache,
+                Arrays.<String>asList());
+
+        List<String> failedClassNames = instrumenter.instrument(Arrays.asList("android.DoesNotExist"), 1);
+
+        assertEquals(Arrays.asList("android.DoesNotExist"), failedClassNames);
+    }
+
+    @Test
+    public void shouldListTheClassesInAJar() throws Exception {
+        File jarFile = new File(baseDirectory, "classes.jar");
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(jarFile));
+        try {
+            jarOutputStream.putNextEntry(new JarEntry("android/view/View.class"));
+            jarOutputStream.putNextEntry(new JarEntry("android/view/View$OnClickListener.class"));
+            jarOutputStream.putNextEntry(new JarEntry("META-INF/MANIFEST.MF"));
+        } finally {
+            jarOutputStream.close();
+        }
+
+        assertEquals(Arrays.asList("android.view.View", "android.view.View$OnClickListener"),
+                AheadOfTimeInstrumenter.getClassNames(jarFile));
+    }
+
+    private void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    public static class Instrumentable {
+        public String getName() {
+            return "name";
+        }
+    }
+
+    public static class NotInstrumentable {
+    }
+}
@@ -2,10 +2,14 @@ package com.xtremelabs.robolectric.bytecode;
 
 import javassist.ClassPool;
 import javassist.CtClass;
+import javassist.CtField;
+import javassist.Modifier;
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class AndroidTranslatorUnitTest {
     private ClassPool classPool;
@@ -23,8 +27,9 @@ public class AndroidTranslatorUnitTest {
                 ctClass, ctClass.getDeclaredMethod("substring", new CtClass[]{CtClass.intType}),
                 ctClass, Type.OBJECT, false, false);
         assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__noShadow__substring__int) return null;\n" +
                 "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
-                "  java.lang.String.class, \"substring\", this, new String[] {\"int\"}, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
+                "  java.lang.String.class, \"substring\", this, __paramTypes__0, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
                 "if (x != null) return ((java.lang.String) x);\n" +
                 "return null;\n" +
                 "}\n", methodBody);
@@ -34,13 +39,27 @@ public class AndroidTranslatorUnitTest {
     public void whenMethodReturnsPrimitive_shouldGenerateMethodBody() throws Exception {
         CtClass ctClass = classPool.get("java.lang.String");
         String methodBody = androidTranslator.generateMethodBody(
-                ctClass, ctClass.getDeclaredMethod("length"),
-                ctClass, Type.OBJECT, false, false);
+                ctClass, ctClass.getDeclaredMethod("hashCode"),
+                CtClass.intType, Type.INT, false, false);
+        assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__noShadow__hashCode__) return 0;\n" +
+                "return com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvokedI(\n" +
+                "  java.lang.String.class, \"hashCode\", this, __paramTypes__0);\n" +
+                "}\n", methodBody);
+    }
+
+    @Test
+    public void whenMethodReturnsPrimitiveAndTakesObject_shouldGenerateBoxingMethodBody() throws Exception {
+        CtClass ctClass = classPool.get("java.lang.String");
+        String methodBody = androidTranslator.generateMethodBody(
+                ctClass, ctClass.getDeclaredMethod("indexOf", new CtClass[]{ctClass}),
+                CtClass.intType, Type.INT, false, false);
         assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__noShadow__indexOf__java_2e_lang_2e_String) return 0;\n" +
                 "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
-                "  java.lang.String.class, \"length\", this, new String[0], new Object[0]);\n" +
-                "if (x != null) return ((java.lang.String) x);\n" +
-                "return null;\n" +
+                "  java.lang.String.class, \"indexOf\", this, __paramTypes__0, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
+                "if (x != null) return ((java.lang.Integer) x).intValue();\n" +
+                "return 0;\n" +
                 "}\n", methodBody);
     }
 
@@ -48,11 +67,26 @@ public class AndroidTranslatorUnitTest {
     public void whenMethodReturnsVoid_shouldGenerateMethodBody() throws Exception {
         CtClass ctClass = classPool.get("java.lang.Object");
         String methodBody = androidTranslator.generateMethodBody(
-                ctClass, ctClass.getDeclaredMethod("wait"),
+                ctClass, ctClass.getDeclaredMethod("wait", new CtClass[]{CtClass.longType, CtClass.intType}),
                 ctClass, Type.VOID, false, false);
         assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__noShadow__wait__long_2c_int) return;\n" +
                 "com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
-                "  java.lang.Object.class, \"wait\", this, new String[] {\"long\"}, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
+                "  java.lang.Object.class, \"wait\", this, __paramTypes__0, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1), com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($2)});\n" +
+                "return;\n" +
+                "}\n", methodBody);
+    }
+
+    @Test
+    public void whenMethodReturnsVoidAndTakesOnePrimitive_shouldGenerateSpecializedMethodBody() throws Exception {
+        CtClass ctClass = classPool.get("java.lang.Object");
+        String methodBody = androidTranslator.generateMethodBody(
+                ctClass, ctClass.getDeclaredMethod("wait", new CtClass[]{CtClass.longType}),
+                ctClass, Type.VOID, false, false);
+        assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__noShadow__wait__long) return;\n" +
+                "com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvokedV(\n" +
+                "  java.lang.Object.class, \"wait\", this, __paramTypes__0, $1);\n" +
                 "return;\n" +
                 "}\n", methodBody);
     }
@@ -64,13 +98,47 @@ public class AndroidTranslatorUnitTest {
                 ctClass, ctClass.getDeclaredMethod("valueOf", new CtClass[]{CtClass.intType}),
                 ctClass, Type.OBJECT, true, false);
         assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(java.lang.String.class)) {\n" +
+                "if (__noShadow__valueOf__int) return null;\n" +
                 "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
-                "  java.lang.String.class, \"valueOf\", null, new String[] {\"int\"}, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
+                "  java.lang.String.class, \"valueOf\", null, __paramTypes__0, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
                 "if (x != null) return ((java.lang.String) x);\n" +
                 "return null;\n" +
                 "}\n", methodBody);
     }
 
+    @Test
+    public void shouldDeclareOneStaticParamTypesFieldPerDistinctSignature() throws Exception {
+        CtClass ctClass = classPool.get("java.lang.String");
+        String indexOfBody = androidTranslator.generateMethodBody(
+                ctClass, ctClass.getDeclaredMethod("indexOf", new CtClass[]{CtClass.intType}),
+                CtClass.intType, Type.INT, false, false);
+        String substringBody = androidTranslator.generateMethodBody(
+                ctClass, ctClass.getDeclaredMethod("substring", new CtClass[]{CtClass.intType}),
+                ctClass, Type.OBJECT, false, false);
+        String lengthBody = androidTranslator.generateMethodBody(
+                ctClass, ctClass.getDeclaredMethod("length"),
+                CtClass.intType, Type.INT, false, false);
+
+        assertTrue(indexOfBody.contains("__paramTypes__0"));
+        assertTrue(substringBody.contains("__paramTypes__0"));
+        assertTrue(lengthBody.contains("__paramTypes__1"));
+
+        CtField field = ctClass.getDeclaredField("__paramTypes__0");
+        assertEquals("[Ljava/lang/String;", field.getSignature());
+        assertTrue(Modifier.isStatic(field.getModifiers()));
+        assertTrue(Modifier.isFinal(field.getModifiers()));
+    }
+
+    @Test
+    public void shouldGenerateDistinctNoShadowGuardFieldNames() throws Exception {
+        assertEquals("__noShadow__setText__java_2e_lang_2e_CharSequence",
+                AndroidTranslator.noShadowGuardFieldName("setText", new String[]{"java.lang.CharSequence"}));
+        assertEquals("__noShadow___3c_init_3e___int_5b__5d_",
+                AndroidTranslator.noShadowGuardFieldName("<init>", new String[]{"int[]"}));
+        assertFalse(AndroidTranslator.noShadowGuardFieldName("a_b", new String[0]).equals(
+                AndroidTranslator.noShadowGuardFieldName("a", new String[]{"b"})));
+    }
+
     @Test
     public void shouldGenerateParameterList() throws Exception {
         assertEquals(androidTranslator.makeParameterReplacementList(0), "");
@@ -85,8 +153,9 @@ public class AndroidTranslatorUnitTest {
                 ctClass, ctClass.getDeclaredMethod("equals", new CtClass[]{ctClass}),
                 ctClass, Type.BOOLEAN, false, true);
         assertEquals("if (!com.xtremelabs.robolectric.bytecode.RobolectricInternals.shouldCallDirectly(this)) {\n" +
+                "if (__noShadow__equals__java_2e_lang_2e_Object) return super.equals($1);\n" +
                 "Object x = com.xtremelabs.robolectric.bytecode.RobolectricInternals.methodInvoked(\n" +
-                "  java.lang.Object.class, \"equals\", this, new String[] {\"java.lang.Object\"}, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
+                "  java.lang.Object.class, \"equals\", this, __paramTypes__0, new Object[] {com.xtremelabs.robolectric.bytecode.RobolectricInternals.autobox($1)});\n" +
                 "if (x != null) return ((java.lang.Boolean) x).booleanValue();\n" +
                 "return super.equals($1);}\n", methodBody);
     }
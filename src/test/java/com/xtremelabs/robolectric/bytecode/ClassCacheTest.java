@@ -1,124 +1,182 @@
 package com.xtremelabs.robolectric.bytecode;
 
-import org.junit.Assert;
+import org.junit.Before;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
 public class ClassCacheTest {
+    private File cacheDirectory;
+    private File originalClassesDirectory;
+    private ClassLoader originalClassLoader;
+
+    @Before
+    public void setUp() throws Exception {
+        File baseDirectory = new File("target/class-cache-test");
+        deleteRecursively(baseDirectory);
+        cacheDirectory = new File(baseDirectory, "cache");
+        originalClassesDirectory = new File(baseDirectory, "classes");
+        originalClassesDirectory.mkdirs();
+        originalClassLoader = new URLClassLoader(new URL[]{originalClassesDirectory.toURI().toURL()}, null);
+    }
+
+    @Test
+    public void shouldReturnInstrumentedBytesForClassesItHasSeen() throws Exception {
+        writeOriginalClass("com.example.Foo", "original");
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader);
+
+        assertNull(classCache.getClassBytesFor("com.example.Foo"));
+        classCache.addClass("com.example.Foo", "instrumented".getBytes());
 
+        assertArrayEquals("instrumented".getBytes(), classCache.getClassBytesFor("com.example.Foo"));
+    }
 
     @Test
-    public void fixForCorberturaAndSonarCodeCoverage() throws InterruptedException {
-        final ClassCache classCache = new ClassCache("target/test.txt", AndroidTranslator.CACHE_VERSION);
-        
-        // Substitute this LOCK with your monitor (could be you object you are
-        // testing etc.)
-        Thread locker = new Thread() {
-            @Override
-            public void run() {
-                synchronized (classCache) {
-                    try {
-                        Thread.sleep(Long.MAX_VALUE);
-                    } catch (InterruptedException e) {
-                        return;
-                    }
-                }
-            }
-        };
+    public void shouldShareEntriesBetweenCachesUsingTheSameDirectory() throws Exception {
+        writeOriginalClass("com.example.Foo", "original");
+        ClassCache writer = new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader);
+        ClassCache reader = new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader);
 
-        locker.start();
+        writer.addClass("com.example.Foo", "instrumented".getBytes());
 
-        TestThreadIsWriting attempt = new TestThreadIsWriting(classCache);
-        
-        try {
-            int timeToWait = 500;
-            locker.join(timeToWait, 0);
-
-            attempt.start();
-            long before = System.currentTimeMillis();
-            attempt.join(timeToWait, 0);
-            long after = System.currentTimeMillis();
-            Assert.assertEquals(false, attempt.ready);
-            Assert.assertEquals(1, (after - before) / timeToWait);
-            locker.interrupt();
-        } finally {
-            
-        }
+        assertArrayEquals("instrumented".getBytes(), reader.getClassBytesFor("com.example.Foo"));
     }
 
     @Test
-    public void fixForCorberturaAndSonarCodeCoverageTheOtherWayAround() throws InterruptedException {
-        final ClassCache classCache = new ClassCache("target/test.txt", AndroidTranslator.CACHE_VERSION);
-        
-        // Substitute this LOCK with your monitor (could be you object you are
-        // testing etc.)
-        Thread locker = new Thread() {
-            @Override
-            public void run() {
-                synchronized (classCache) {
-                    try {
-                        Thread.sleep(Long.MAX_VALUE);
-                    } catch (InterruptedException e) {
-                        return;
-                    }
-                }
-            }
-        };
+    public void shouldNotReturnEntriesMadeFromDifferentOriginalBytecode() throws Exception {
+        writeOriginalClass("com.example.Foo", "original");
+        new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader).addClass("com.example.Foo", "instrumented".getBytes());
 
-        locker.start();
+        writeOriginalClass("com.example.Foo", "changed");
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader);
 
-        TestThreadSaveAllClassesToCache attempt = new TestThreadSaveAllClassesToCache(classCache);
-        
-        try {
-            int timeToWait = 500;
-            locker.join(timeToWait, 0);
-
-            attempt.start();
-            long before = System.currentTimeMillis();
-            attempt.join(timeToWait, 0);
-            long after = System.currentTimeMillis();
-            Assert.assertEquals(false, attempt.ready);
-            Assert.assertEquals(1, (after - before) / timeToWait);
-            locker.interrupt();
-                        
-        } finally {
-            
-        }
+        assertNull(classCache.getClassBytesFor("com.example.Foo"));
     }
 
-    class TestThreadIsWriting extends  Thread {
-        public boolean ready = false;
-        final ClassCache classCache;
-        
-        
-        public TestThreadIsWriting(ClassCache classCache) {
-            super();
-            this.classCache = classCache;
-        }
+    @Test
+    public void shouldDiscardEntriesFromOtherCacheVersions() throws Exception {
+        writeOriginalClass("com.example.Foo", "original");
+        new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader).addClass("com.example.Foo", "instrumented".getBytes());
 
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 2, originalClassLoader);
 
-        @Override
-        public void run() {
-            classCache.isWriting();
-            ready = true;
-        }
-    };
-
-    class TestThreadSaveAllClassesToCache extends  Thread {
-        public boolean ready = false;
-        final ClassCache classCache;
-        
-        
-        public TestThreadSaveAllClassesToCache(ClassCache classCache) {
-            super();
-            this.classCache = classCache;
-        }
+        assertNull(classCache.getClassBytesFor("com.example.Foo"));
+        assertFalse(new File(cacheDirectory, "v1").exists());
+    }
+
+    @Test
+    public void shouldNotLeaveTemporaryFilesBehind() throws Exception {
+        writeOriginalClass("com.example.Foo", "original");
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader);
+        classCache.addClass("com.example.Foo", "instrumented".getBytes());
+        classCache.addClass("com.example.Foo", "instrumented".getBytes());
+
+        File entryFile = classCache.entryFile(classCache.keyFor("com.example.Foo"));
+        assertTrue(entryFile.isFile());
+        assertEquals(1, entryFile.getParentFile().list().length);
+    }
+
+    @Test
+    public void shouldIgnoreClassesWithoutOriginalBytecode() throws Exception {
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader);
+        classCache.addClass("com.example.Missing", "instrumented".getBytes());
+
+        assertNull(classCache.getClassBytesFor("com.example.Missing"));
+    }
+
+    @Test
+    public void shouldPackEarlierEntriesWhenMemoryMapped() throws Exception {
+        writeOriginalClass("com.example.Foo", "original foo");
+        writeOriginalClass("com.example.Bar", "original bar");
+        ClassCache writer = new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader);
+        writer.addClass("com.example.Foo", "instrumented foo".getBytes());
+        writer.addClass("com.example.Bar", "instrumented bar".getBytes());
+
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader, true);
+
+        assertTrue(classCache.packFile().isFile());
+        assertFalse(classCache.entryFile(classCache.keyFor("com.example.Foo")).exists());
+        assertArrayEquals("instrumented foo".getBytes(), classCache.getClassBytesFor("com.example.Foo"));
+        assertArrayEquals("instrumented bar".getBytes(), toByteArray(classCache.getClassBufferFor("com.example.Bar")));
+    }
+
+    @Test
+    public void shouldAddNewEntriesToAnExistingPack() throws Exception {
+        writeOriginalClass("com.example.Foo", "original foo");
+        writeOriginalClass("com.example.Bar", "original bar");
+        new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader).addClass("com.example.Foo", "instrumented foo".getBytes());
+        new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader, true).addClass("com.example.Bar", "instrumented bar".getBytes());
+
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader, true);
+
+        assertFalse(classCache.entryFile(classCache.keyFor("com.example.Bar")).exists());
+        assertArrayEquals("instrumented foo".getBytes(), classCache.getClassBytesFor("com.example.Foo"));
+        assertArrayEquals("instrumented bar".getBytes(), classCache.getClassBytesFor("com.example.Bar"));
+    }
+
+    @Test
+    public void shouldReadPackedEntriesWhenNotMemoryMapped() throws Exception {
+        writeOriginalClass("com.example.Foo", "original foo");
+        writeOriginalClass("com.example.Bar", "original bar");
+        new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader).addClass("com.example.Foo", "instrumented foo".getBytes());
+        new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader, true);
+
+        ClassCache classCache = new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader);
+        classCache.addClass("com.example.Bar", "instrumented bar".getBytes());
+
+        assertFalse(classCache.entryFile(classCache.keyFor("com.example.Foo")).exists());
+        assertArrayEquals("instrumented foo".getBytes(), classCache.getClassBytesFor("com.example.Foo"));
+        assertArrayEquals("instrumented foo".getBytes(), toByteArray(classCache.getClassBufferFor("com.example.Foo")));
+        assertArrayEquals("instrumented bar".getBytes(), classCache.getClassBytesFor("com.example.Bar"));
+        assertTrue(classCache.entryFile(classCache.keyFor("com.example.Bar")).isFile());
+    }
+
+    @Test
+    public void shouldIgnorePacksFromOtherCacheVersions() throws Exception {
+        writeOriginalClass("com.example.Foo", "original foo");
+        ClassCache writer = new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader);
+        writer.addClass("com.example.Foo", "instrumented foo".getBytes());
+        new ClassCache(cacheDirectory.getPath(), 1, originalClassLoader, true);
+
+        assertNull(ClassCachePack.open(writer.packFile(), 2));
+        assertEquals(1, ClassCachePack.open(writer.packFile(), 1).size());
+    }
 
+    private byte[] toByteArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
 
-        @Override
-        public void run() {
-            classCache.saveAllClassesToCache(null, null);
-            ready = true;
+    private void writeOriginalClass(String className, String contents) throws IOException {
+        File classFile = new File(originalClassesDirectory, className.replace('.', '/') + ".class");
+        classFile.getParentFile().mkdirs();
+        FileOutputStream outputStream = new FileOutputStream(classFile);
+        try {
+            outputStream.write(contents.getBytes());
+        } finally {
+            outputStream.close();
         }
-    };
+    }
 
+    private void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
 }
@@ -0,0 +1,57 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InstrumentationMatcherTest {
+    @Test
+    public void shouldMatchTheDefaultPrefixes() throws Exception {
+        InstrumentationMatcher matcher = InstrumentationMatcher.DEFAULT;
+
+        assertEquals("android.", matcher.findMatchingPrefix("android.view.View"));
+        assertEquals("com.google.android.maps", matcher.findMatchingPrefix("com.google.android.maps.MapView"));
+        assertEquals("org.apache.http.impl.client.DefaultRequestDirector",
+                matcher.findMatchingPrefix("org.apache.http.impl.client.DefaultRequestDirector"));
+        assertFalse(matcher.matches("androidx.View"));
+        assertFalse(matcher.matches("org.apache.http.impl.client.DefaultHttpClient"));
+        assertFalse(matcher.matches("java.lang.String"));
+    }
+
+    @Test
+    public void shouldReportTheShortestMatchingPrefix() throws Exception {
+        InstrumentationMatcher matcher = new InstrumentationMatcher(Arrays.asList("com.example.widget.", "com.example."));
+
+        assertEquals("com.example.", matcher.findMatchingPrefix("com.example.widget.Button"));
+        assertEquals("com.example.", matcher.findMatchingPrefix("com.example.Foo"));
+        assertNull(matcher.findMatchingPrefix("com.exampl"));
+    }
+
+    @Test
+    public void shouldMatchClassNamesEqualToAPrefix() throws Exception {
+        InstrumentationMatcher matcher = new InstrumentationMatcher(Arrays.asList("com.example.Foo"));
+
+        assertTrue(matcher.matches("com.example.Foo"));
+        assertTrue(matcher.matches("com.example.Foo$Inner"));
+        assertFalse(matcher.matches("com.example.Fo"));
+    }
+
+    @Test
+    public void shouldAddPrefixesWithoutDuplicatingThem() throws Exception {
+        InstrumentationMatcher matcher = InstrumentationMatcher.DEFAULT.with(Arrays.asList("com.example.", "com.example."));
+
+        assertEquals(Arrays.asList("android.", "com.google.android.maps",
+                "org.apache.http.impl.client.DefaultRequestDirector", "com.example."), matcher.getPrefixes());
+        assertTrue(matcher.matches("com.example.Foo"));
+        assertFalse(InstrumentationMatcher.DEFAULT.matches("com.example.Foo"));
+        assertSame(matcher, matcher.with(Collections.singletonList("com.example.")));
+        assertSame(matcher, matcher.with(null));
+    }
+}
@@ -0,0 +1,102 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import com.xtremelabs.robolectric.res.ResourceCache;
+import com.xtremelabs.robolectric.res.ResourceIdTable;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RobolectricClassLoaderTest {
+    private File classCacheDirectory;
+
+    @Before
+    public void setUp() throws Exception {
+        classCacheDirectory = new File("target/robolectric-class-loader-test");
+        deleteRecursively(classCacheDirectory);
+    }
+
+    @Test
+    public void shouldLoadClassesWarmedUpInTheBackground() throws Exception {
+        final String className = WarmedUp.class.getName();
+        RobolectricClassLoader classLoader = new RobolectricClassLoader(ShadowWrangler.getInstance(),
+                Arrays.asList(className), classCacheDirectory.getPath());
+        ClassCache classCache = new ClassCache(RobolectricClassLoader.getClassCacheDirectory(classCacheDirectory.getPath()).getAbsolutePath(),
+                AndroidTranslator.CACHE_VERSION);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        classLoader.warmUp(new Callable<Collection<String>>() {
+            @Override public Collection<String> call() {
+                return Arrays.asList(className);
+            }
+        }, executorService);
+        assertTrue(executorService.awaitTermination(10, TimeUnit.SECONDS));
+        assertNotNull(classCache.getClassBytesFor(className));
+
+        Class<?> warmedUpClass = classLoader.loadClass(className);
+        assertSame(classLoader, warmedUpClass.getClassLoader());
+        assertTrue(Arrays.asList(warmedUpClass.getDeclaredFields()).toString().contains(ShadowWrangler.SHADOW_FIELD_NAME));
+        assertEquals(1, classLoader.getClassCacheHitCount());
+        assertEquals(0, classLoader.getInstrumentedClassCount());
+    }
+
+    @Test
+    public void shouldOnlyLookUpClassesItInstrumentsInTheClassCache() throws Exception {
+        final List<String> lookedUpClassNames = new ArrayList<String>();
+        ClassCache classCache = new ClassCache(classCacheDirectory.getPath(), AndroidTranslator.CACHE_VERSION) {
+            @Override public ByteBuffer getClassBufferFor(String className) {
+                lookedUpClassNames.add(className);
+                return super.getClassBufferFor(className);
+            }
+        };
+        RobolectricClassLoader classLoader = new RobolectricClassLoader(ShadowWrangler.getInstance(),
+                Arrays.asList(WarmedUp.class.getName()), classCache);
+
+        classLoader.loadClass(NotInstrumented.class.getName());
+        classLoader.loadClass(WarmedUp.class.getName());
+
+        assertEquals(Arrays.asList(WarmedUp.class.getName()), lookedUpClassNames);
+    }
+
+    @Test
+    public void shouldShareParsedResourcesWithOtherLoaders() throws Exception {
+        RobolectricClassLoader classLoader = new RobolectricClassLoader(ShadowWrangler.getInstance(), null,
+                classCacheDirectory.getPath());
+
+        assertSame(ResourceCache.class, classLoader.loadClass(ResourceCache.class.getName()));
+        assertSame(ResourceIdTable.class, classLoader.loadClass(ResourceIdTable.class.getName()));
+    }
+
+    private void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+
+    public static class NotInstrumented {
+    }
+
+    public static class WarmedUp {
+        public String getName() {
+            return "name";
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.xtremelabs.robolectric.bytecode;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ShadowInvokerGeneratorTest {
+    private ShadowInvokerGenerator generator;
+
+    @Before public void setUp() throws Exception {
+        generator = new ShadowInvokerGenerator();
+    }
+
+    @Test
+    public void whenMethodTakesPrimitivesAndReturnsObject_shouldGenerateInvokeMethod() throws Exception {
+        String source = generator.generateInvokeMethod(String.class.getMethod("substring", int.class, int.class));
+        assertEquals("public Object invoke(Object shadow, Object[] params) {\n" +
+                "return ((java.lang.String) shadow).substring(((java.lang.Integer) params[0]).intValue(), ((java.lang.Integer) params[1]).intValue());\n" +
+                "}", source);
+    }
+
+    @Test
+    public void whenMethodIsStaticAndReturnsPrimitive_shouldGenerateInvokeMethod() throws Exception {
+        String source = generator.generateInvokeMethod(Math.class.getMethod("max", long.class, long.class));
+        assertEquals("public Object invoke(Object shadow, Object[] params) {\n" +
+                "return java.lang.Long.valueOf(java.lang.Math.max(((java.lang.Long) params[0]).longValue(), ((java.lang.Long) params[1]).longValue()));\n" +
+                "}", source);
+    }
+
+    @Test
+    public void whenMethodReturnsVoidAndTakesArray_shouldGenerateInvokeMethod() throws Exception {
+        String source = generator.generateInvokeMethod(StringBuilder.class.getMethod("getChars", int.class, int.class, char[].class, int.class));
+        assertEquals("public Object invoke(Object shadow, Object[] params) {\n" +
+                "((java.lang.StringBuilder) shadow).getChars(((java.lang.Integer) params[0]).intValue(), ((java.lang.Integer) params[1]).intValue(), (char[]) params[2], ((java.lang.Integer) params[3]).intValue());\n" +
+                "return null;\n" +
+                "}", source);
+    }
+
+    @Test
+    public void whenMethodHasSpecializedDescriptor_shouldGenerateUnboxedInvokeMethod() throws Exception {
+        String source = generator.generateSpecializedInvokeMethod(StringBuilder.class.getMethod("setLength", int.class));
+        assertEquals("public void invokeV(Object shadow, int p0) {\n" +
+                "((java.lang.StringBuilder) shadow).setLength(p0);\n" +
+                "}", source);
+
+        source = generator.generateSpecializedInvokeMethod(String.class.getMethod("length"));
+        assertEquals("public int invokeI(Object shadow) {\n" +
+                "return ((java.lang.String) shadow).length();\n" +
+                "}", source);
+    }
+
+    @Test
+    public void whenMethodHasNoSpecializedDescriptor_shouldNotGenerateUnboxedInvokeMethod() throws Exception {
+        assertNull(generator.generateSpecializedInvokeMethod(String.class.getMethod("substring", int.class)));
+    }
+
+    @Test
+    public void shouldGenerateWorkingSpecializedInvoker() throws Throwable {
+        ShadowInvoker invoker = generator.generate(ShadowInvokerGeneratorTest.class.getMethod("answer"));
+        assertEquals(42, invoker.invokeI(null));
+        assertEquals(42, invoker.invoke(null, new Object[0]));
+    }
+
+    @Test
+    public void shouldGenerateWorkingInvoker() throws Throwable {
+        ShadowInvoker invoker = generator.generate(ShadowInvokerGeneratorTest.class.getMethod("concat", String.class, int.class));
+        assertEquals("abc3", invoker.invoke(null, new Object[] {"abc", 3}));
+    }
+
+    public static int answer() {
+        return 42;
+    }
+
+    public static String concat(String s, int i) {
+        return s + i;
+    }
+}
@@ -15,6 +15,15 @@ import org.junit.runner.RunWith;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.not;
@@ -109,6 +118,164 @@ public class ShadowWranglerTest {
         assertThat(shadowOf(textFoo), instanceOf(ShadowTextFoo.class));
     }
 
+    @Test
+    public void shouldDispatchToNewlyBoundShadowAfterEarlierCallsWentUnshadowed() throws Exception {
+        Foo unshadowedFoo = new Foo(name);
+        assertNull(unshadowedFoo.getName());
+
+        Robolectric.bindShadowClass(ShadowFoo.class);
+
+        Foo foo = new Foo(name);
+        assertSame(name, foo.getName());
+    }
+
+    @Test
+    public void shouldDispatchRepeatedCallsToTheSameShadowMethod() throws Exception {
+        Robolectric.bindShadowClass(ShadowFoo.class);
+
+        Foo foo1 = new Foo("one");
+        Foo foo2 = new Foo("two");
+        for (int i = 0; i < 3; i++) {
+            assertEquals("one", foo1.getName());
+            assertEquals("two", foo2.getName());
+        }
+    }
+
+    @Test
+    public void shouldDispatchCallsFromSeveralThreadsAtOnce() throws Exception {
+        ShadowWrangler.getInstance().beforeTest();
+        Robolectric.bindShadowClass(ShadowFoo.class);
+        final int threadCount = 4;
+        final int callsPerThread = 1000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+        long dispatchCountBefore = ShadowWrangler.getInstance().getDispatchCount();
+        for (int i = 0; i < threadCount; i++) {
+            final String threadName = "thread " + i;
+            results.add(executor.submit(new Callable<Boolean>() {
+                @Override public Boolean call() throws Exception {
+                    start.await();
+                    for (int j = 0; j < callsPerThread; j++) {
+                        Foo foo = new Foo(threadName);
+                        if (!threadName.equals(foo.getName())) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            }));
+        }
+        start.countDown();
+        for (Future<Boolean> result : results) {
+            assertTrue(result.get(10, TimeUnit.SECONDS));
+        }
+        executor.shutdown();
+
+        // each iteration dispatches the constructor and getName()
+        assertEquals(dispatchCountBefore + 2 * threadCount * callsPerThread, ShadowWrangler.getInstance().getDispatchCount());
+    }
+
+    @Test
+    public void shouldKeepDefaultShadowsBoundUntilTheNextTest() throws Exception {
+        RobolectricInternals.bindDefaultShadowClasses(Arrays.<Class<?>>asList(ShadowFoo.class));
+        assertSame(name, new Foo(name).getName());
+
+        ShadowWrangler.getInstance().beforeTest();
+        assertNull(new Foo(name).getName());
+
+        RobolectricInternals.bindDefaultShadowClasses(Arrays.<Class<?>>asList(ShadowFoo.class));
+        assertSame(name, new Foo(name).getName());
+    }
+
+    @Test
+    public void shouldPreferShadowsBoundByTheTestOverDefaultShadows() throws Exception {
+        RobolectricInternals.bindDefaultShadowClasses(Arrays.<Class<?>>asList(ShadowFoo.class));
+        Robolectric.bindShadowClass(WithToString.class);
+        assertEquals("the expected string", new Foo(name).toString());
+
+        ShadowWrangler.getInstance().beforeTest();
+        RobolectricInternals.bindDefaultShadowClasses(Arrays.<Class<?>>asList(ShadowFoo.class));
+        Foo foo = new Foo(name);
+        assertSame(name, foo.getName());
+        assertThat(foo.toString(), not(containsString("the expected string")));
+    }
+
+    @Test
+    public void shouldDispatchToShadowBoundInALaterTestAfterCallsWentUnshadowed() throws Exception {
+        assertNull(new Foo(name).getName());
+
+        ShadowWrangler.getInstance().beforeTest();
+        Robolectric.bindShadowClass(ShadowFoo.class);
+
+        assertSame(name, new Foo(name).getName());
+    }
+
+    @Test
+    public void shouldDelegateThroughGeneratedInvokers() throws Exception {
+        ShadowWrangler.getInstance().setUseGeneratedInvokers(true);
+        try {
+            Robolectric.bindShadowClass(ShadowFoo.class);
+
+            Foo foo = new Foo(name);
+            assertSame(name, foo.getName());
+            assertSame(foo, shadowOf(foo).realFooInConstructor);
+        } finally {
+            ShadowWrangler.getInstance().setUseGeneratedInvokers(false);
+        }
+    }
+
+    @Test
+    public void shouldRemoveGeneratedInvokersFromStackTraces() throws Exception {
+        ShadowWrangler.getInstance().setUseGeneratedInvokers(true);
+        try {
+            Robolectric.bindShadowClass(ExceptionThrowingShadowFoo.class);
+            Foo foo = new Foo(null);
+
+            Exception e = null;
+            try {
+                foo.getName();
+            } catch (Exception e1) {
+                e = e1;
+            }
+
+            assertNotNull(e);
+            assertEquals(IOException.class, e.getClass());
+            StringWriter stringWriter = new StringWriter();
+            e.printStackTrace(new PrintWriter(stringWriter));
+            String stackTrace = stringWriter.getBuffer().toString();
+
+            assertThat(stackTrace, containsString(ExceptionThrowingShadowFoo.class.getName() + ".getName("));
+            assertThat(stackTrace, not(containsString(ShadowInvokerGenerator.INVOKER_CLASS_MARKER)));
+        } finally {
+            ShadowWrangler.getInstance().setUseGeneratedInvokers(false);
+        }
+    }
+
+    @Test
+    public void shouldPassPrimitiveArgumentsThroughSpecializedEntryPoint() throws Exception {
+        Robolectric.bindShadowClass(ShadowFooWithFindById.class);
+
+        Foo foo = new Foo(name);
+        foo.findFooById(1234567);
+        assertEquals(1234567, ((ShadowFooWithFindById) Robolectric.shadowOf_(foo)).lastId);
+    }
+
+    @Test
+    public void shouldPassPrimitiveArgumentsThroughSpecializedEntryPointWithGeneratedInvokers() throws Exception {
+        ShadowWrangler.getInstance().setUseGeneratedInvokers(true);
+        try {
+            Robolectric.bindShadowClass(ShadowFooWithFindById.class);
+
+            Foo foo = new Foo(name);
+            foo.findFooById(1234567);
+            assertEquals(1234567, ((ShadowFooWithFindById) Robolectric.shadowOf_(foo)).lastId);
+        } finally {
+            ShadowWrangler.getInstance().setUseGeneratedInvokers(false);
+        }
+    }
+
     @Test
     public void testPrimitiveArrays() throws Exception {
         Class<?> objArrayClass = ShadowWrangler.loadClass("java.lang.Object[]", getClass().getClassLoader());
@@ -200,6 +367,16 @@ public class ShadowWranglerTest {
         }
     }
     
+    @Implements(Foo.class)
+    public static class ShadowFooWithFindById {
+        int lastId;
+
+        @SuppressWarnings({"UnusedDeclaration"})
+        public void findFooById(int id) {
+            lastId = id;
+        }
+    }
+
     @Implements(Foo.class)
     public static class ShadowFooI18n {
     	String name;
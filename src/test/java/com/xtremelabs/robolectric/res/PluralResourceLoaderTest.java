@@ -30,4 +30,17 @@ public class PluralResourceLoaderTest {
         assertThat(pluralResourceLoader.getValue(R.plurals.beer, 2), equalTo("Two beers"));
         assertThat(pluralResourceLoader.getValue(R.plurals.beer, 3), equalTo("%d beers, yay!"));
     }
+
+    @Test
+    public void shouldResolveStringsLoadedInTheSamePass() throws Exception {
+        ResourceExtractor resourceExtractor = new ResourceExtractor();
+        resourceExtractor.addLocalRClass(R.class);
+        StringResourceLoader stringResourceLoader = new StringResourceLoader(resourceExtractor);
+        pluralResourceLoader = new PluralResourceLoader(resourceExtractor, stringResourceLoader);
+
+        new DocumentLoader(pluralResourceLoader, stringResourceLoader).loadResourceXmlDir(resourceFile("res", "values"));
+
+        assertThat(pluralResourceLoader.getValue(R.plurals.beer, 0), equalTo("Howdy"));
+        assertThat(stringResourceLoader.getValue(R.string.hello), equalTo("Hello"));
+    }
 }
@@ -0,0 +1,157 @@
+package com.xtremelabs.robolectric.res;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static com.xtremelabs.robolectric.util.TestUtil.resourceFile;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceCacheTest {
+    private File cacheDirectory;
+    private File cacheFile;
+
+    @Before public void setUp() throws Exception {
+        cacheDirectory = File.createTempFile("resource-cache", "");
+        cacheDirectory.delete();
+        cacheDirectory.mkdirs();
+        cacheFile = new File(cacheDirectory, ResourceCache.FILE_NAME);
+    }
+
+    @After public void tearDown() throws Exception {
+        for (File file : cacheDirectory.listFiles()) {
+            file.delete();
+        }
+        cacheDirectory.delete();
+    }
+
+    @Test
+    public void shouldBuildTheSameDocumentsInALaterRun() throws Exception {
+        File layoutFile = resourceFile("res", "layout", "main.xml");
+        Document parsedDocument = parse(new ResourceCache(cacheFile), layoutFile, true);
+
+        ResourceCache resourceCache = new ResourceCache(cacheFile);
+        Document cachedDocument = parse(resourceCache, layoutFile, false);
+
+        assertEquals(1, resourceCache.getHitCount());
+        assertTrue(cachedDocument.isEqualNode(parsedDocument));
+        Element linearLayout = cachedDocument.getDocumentElement();
+        assertEquals("LinearLayout", linearLayout.getLocalName());
+        assertEquals("wrap_content", linearLayout.getAttributeNS("http://schemas.android.com/apk/res/android", "layout_width"));
+    }
+
+    @Test
+    public void shouldParseFilesThatChangedAgain() throws Exception {
+        File valuesFile = new File(cacheDirectory, "strings.xml");
+        write(valuesFile, "<resources><string name=\"hello\">Hello</string></resources>");
+        parse(new ResourceCache(cacheFile), valuesFile, true);
+
+        write(valuesFile, "<resources><string name=\"hello\">Howdy, partner</string></resources>");
+        ResourceCache resourceCache = new ResourceCache(cacheFile);
+        Document document = parse(resourceCache, valuesFile, true);
+
+        assertEquals(0, resourceCache.getHitCount());
+        assertEquals("Howdy, partner", document.getDocumentElement().getTextContent());
+
+        resourceCache = new ResourceCache(cacheFile);
+        document = parse(resourceCache, valuesFile, false);
+        assertEquals(1, resourceCache.getHitCount());
+        assertEquals("Howdy, partner", document.getDocumentElement().getTextContent());
+    }
+
+    @Test
+    public void shouldUseFilesThatWereOnlyTouched() throws Exception {
+        File valuesFile = new File(cacheDirectory, "strings.xml");
+        write(valuesFile, "<resources><string name=\"hello\">Hello</string></resources>");
+        parse(new ResourceCache(cacheFile), valuesFile, true);
+
+        assertTrue(valuesFile.setLastModified(valuesFile.lastModified() - 10000));
+        ResourceCache resourceCache = new ResourceCache(cacheFile);
+        Document document = parse(resourceCache, valuesFile, false);
+
+        assertEquals(1, resourceCache.getHitCount());
+        assertEquals("Hello", document.getDocumentElement().getTextContent());
+    }
+
+    @Test
+    public void shouldIgnoreACorruptCacheFile() throws Exception {
+        write(cacheFile, "not a cache");
+        ResourceCache resourceCache = new ResourceCache(cacheFile);
+
+        parse(resourceCache, resourceFile("res", "values", "strings.xml"), false);
+
+        assertEquals(0, resourceCache.getHitCount());
+    }
+
+    @Test
+    public void shouldIgnoreACacheFileWithADamagedLength() throws Exception {
+        File valuesFile = new File(cacheDirectory, "strings.xml");
+        write(valuesFile, "<resources><string name=\"hello\">Hello</string></resources>");
+        parse(new ResourceCache(cacheFile), valuesFile, true);
+
+        RandomAccessFile damagedFile = new RandomAccessFile(cacheFile, "rw");
+        try {
+            damagedFile.seek(dataOffset(valuesFile) - 4);
+            damagedFile.writeInt(-1);
+        } finally {
+            damagedFile.close();
+        }
+        ResourceCache resourceCache = new ResourceCache(cacheFile);
+        Document document = parse(resourceCache, valuesFile, false);
+
+        assertEquals(0, resourceCache.getHitCount());
+        assertEquals("Hello", document.getDocumentElement().getTextContent());
+    }
+
+    @Test
+    public void shouldParseFilesWhoseCachedRecordingIsDamagedAgain() throws Exception {
+        File valuesFile = new File(cacheDirectory, "strings.xml");
+        write(valuesFile, "<resources><string name=\"hello\">Hello</string></resources>");
+        parse(new ResourceCache(cacheFile), valuesFile, true);
+
+        RandomAccessFile damagedFile = new RandomAccessFile(cacheFile, "rw");
+        try {
+            damagedFile.seek(dataOffset(valuesFile));
+            damagedFile.writeByte(99);
+        } finally {
+            damagedFile.close();
+        }
+        Document document = parse(new ResourceCache(cacheFile), valuesFile, false);
+
+        assertEquals("Hello", document.getDocumentElement().getTextContent());
+    }
+
+    /*
+     * Where the recording of the only file in the cache starts: after the header, the file's path, length, modification
+     * time and hash, and the recording's length.
+     */
+    private long dataOffset(File xmlFile) throws IOException {
+        return 4 + 4 + 4 + 2 + xmlFile.getAbsolutePath().getBytes("UTF-8").length + 8 + 8 + 1 + 20 + 4;
+    }
+
+    private Document parse(ResourceCache resourceCache, File xmlFile, boolean save) throws Exception {
+        resourceCache.load();
+        Document document = new ResourceXmlParser(0, resourceCache).parse(xmlFile);
+        if (save) {
+            resourceCache.save();
+        }
+        return document;
+    }
+
+    private void write(File file, String contents) throws IOException {
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+    }
+}
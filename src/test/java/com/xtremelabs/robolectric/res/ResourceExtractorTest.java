@@ -6,6 +6,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class ResourceExtractorTest {
@@ -28,4 +29,23 @@ public class ResourceExtractorTest {
     public void shouldPrefixAllSystemResourcesWithAndroid() throws Exception {
         assertThat(resourceExtractor.getResourceId("android:id/text1"), equalTo(android.R.id.text1));
     }
+
+    @Test
+    public void shouldLookUpNamesById() throws Exception {
+        assertThat(resourceExtractor.getResourceName(R.id.textStyle), equalTo("id/textStyle"));
+        assertThat(resourceExtractor.getResourceName(android.R.id.text1), equalTo("android:id/text1"));
+        assertThat(resourceExtractor.getResourceName(0), nullValue());
+    }
+
+    @Test
+    public void shouldStripReferencePrefixes() throws Exception {
+        assertThat(resourceExtractor.getLocalResourceId("@+id/textStyle"), equalTo(R.id.textStyle));
+        assertThat(resourceExtractor.getResourceId("@android:id/text1"), equalTo(android.R.id.text1));
+        assertThat(resourceExtractor.getLocalResourceId("id/noSuchId"), nullValue());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldNotAllowTheSameIdTwice() throws Exception {
+        resourceExtractor.addLocalRClass(R.class);
+    }
 }
@@ -0,0 +1,68 @@
+package com.xtremelabs.robolectric.res;
+
+import org.junit.After;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXParseException;
+
+import java.io.File;
+
+import static com.xtremelabs.robolectric.util.TestUtil.resourceFile;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class ResourceXmlParserTest {
+    private ResourceXmlParser resourceXmlParser;
+
+    @After public void tearDown() throws Exception {
+        resourceXmlParser.shutdown();
+    }
+
+    @Test
+    public void shouldParseEachFileOnlyOnce() throws Exception {
+        resourceXmlParser = new ResourceXmlParser();
+        File stringsFile = resourceFile("res", "values", "strings.xml");
+
+        Document document = resourceXmlParser.parse(stringsFile);
+
+        assertEquals("resources", document.getDocumentElement().getTagName());
+        assertThat(resourceXmlParser.parse(stringsFile), sameInstance(document));
+    }
+
+    @Test
+    public void shouldHandOutFilesParsedInTheBackground() throws Exception {
+        resourceXmlParser = new ResourceXmlParser(2);
+        resourceXmlParser.parseInBackground(resourceFile("res", "values"), resourceFile("res", "no-such-dir"), null);
+        resourceXmlParser.parseInBackground((File[]) null);
+
+        Document document = resourceXmlParser.parse(resourceFile("res", "values", "colors.xml"));
+
+        assertEquals("resources", document.getDocumentElement().getTagName());
+        assertThat(resourceXmlParser.parse(resourceFile("res", "values", "colors.xml")), sameInstance(document));
+    }
+
+    @Test
+    public void shouldParseFilesAgainOnceForgotten() throws Exception {
+        resourceXmlParser = new ResourceXmlParser();
+        File stringsFile = resourceFile("res", "values", "strings.xml");
+        File colorsFile = resourceFile("res", "values", "colors.xml");
+        Document strings = resourceXmlParser.parse(stringsFile);
+        Document colors = resourceXmlParser.parse(colorsFile);
+
+        resourceXmlParser.forget(stringsFile);
+        assertThat(resourceXmlParser.parse(stringsFile), not(sameInstance(strings)));
+        assertThat(resourceXmlParser.parse(colorsFile), sameInstance(colors));
+
+        resourceXmlParser.forgetFilesIn(resourceFile("res", "values"), null);
+        assertThat(resourceXmlParser.parse(colorsFile), not(sameInstance(colors)));
+    }
+
+    @Test(expected = SAXParseException.class)
+    public void shouldThrowParseErrorsFromParse() throws Exception {
+        resourceXmlParser = new ResourceXmlParser(2);
+
+        resourceXmlParser.parse(resourceFile("assets", "assetsHome.txt"));
+    }
+}
@@ -334,6 +334,21 @@ public class ViewLoaderTest {
     	viewLoader.inflateView(context,"layout/text_views");
     }
 
+    @Test
+    public void shouldLoadIndexedLayoutsTheFirstTimeTheyreInflated() throws Exception {
+        ResourceExtractor resourceExtractor = new ResourceExtractor();
+        resourceExtractor.addLocalRClass(R.class);
+        ViewLoader lazyViewLoader = new ViewLoader(resourceExtractor, new AttrResourceLoader(resourceExtractor));
+
+        lazyViewLoader.indexLayoutDirs(new DocumentLoader(lazyViewLoader), false, resourceFile("res", "layout"));
+        assertTrue(lazyViewLoader.viewNodesByLayoutName.isEmpty());
+
+        ViewGroup view = (ViewGroup) lazyViewLoader.inflateView(context, "layout/media");
+        TestUtil.assertInstanceOf(LinearLayout.class, view);
+        assertTrue(lazyViewLoader.viewNodesByLayoutName.containsKey("layout/snippet"));
+        assertFalse(lazyViewLoader.viewNodesByLayoutName.containsKey("layout/main"));
+    }
+
     public static class ClickActivity extends Activity {
         public boolean clicked = false;
 
@@ -2,6 +2,7 @@ package com.xtremelabs.robolectric.shadows;
 
 import android.app.Activity;
 import android.app.Application;
+import android.content.BroadcastReceiver;
 import android.content.ComponentName;
 import android.content.Context;
 import android.content.ContextWrapper;
@@ -24,8 +25,11 @@ import org.junit.runner.RunWith;
 
 import java.io.FileDescriptor;
 
+import static android.content.pm.PackageManager.PERMISSION_DENIED;
+import static android.content.pm.PackageManager.PERMISSION_GRANTED;
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 import static com.xtremelabs.robolectric.util.TestUtil.newConfig;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.core.IsInstanceOf.instanceOf;
 import static org.junit.Assert.*;
@@ -221,6 +225,45 @@ public class ApplicationTest {
         shadowOf(Robolectric.application).assertNoBroadcastListenersOfActionRegistered(activity, "Bar");
     }
 
+    @Test
+    public void restore_shouldDiscardWhatWasDoneSinceTheSnapshot() throws Exception {
+        ShadowApplication shadowApplication = shadowOf(Robolectric.application);
+        shadowApplication.setPackageName("com.example");
+        shadowApplication.grantPermissions("android.permission.INTERNET");
+        TestBroadcastReceiver receiver = new TestBroadcastReceiver();
+        Robolectric.application.registerReceiver(receiver, new IntentFilter("Foo"));
+        ShadowApplication.Snapshot snapshot = shadowApplication.snapshot();
+
+        shadowApplication.setPackageName("com.example.other");
+        shadowApplication.grantPermissions("android.permission.CAMERA");
+        Robolectric.application.registerReceiver(new TestBroadcastReceiver(), new IntentFilter("Bar"));
+        Robolectric.application.startActivity(new Intent("Baz"));
+        Robolectric.application.getSharedPreferences("prefs", Context.MODE_PRIVATE).edit().putString("key", "value").commit();
+        shadowApplication.restore(snapshot);
+
+        assertEquals("com.example", Robolectric.application.getPackageName());
+        assertEquals(PERMISSION_GRANTED, Robolectric.application.checkPermission("android.permission.INTERNET", 0, 0));
+        assertEquals(PERMISSION_DENIED, Robolectric.application.checkPermission("android.permission.CAMERA", 0, 0));
+        assertEquals(1, shadowApplication.getRegisteredReceivers().size());
+        assertThat(shadowApplication.getRegisteredReceivers().get(0).getBroadcastReceiver(), sameInstance((BroadcastReceiver) receiver));
+        assertNull(shadowApplication.getNextStartedActivity());
+        assertTrue(shadowApplication.getSharedPreferenceMap().isEmpty());
+    }
+
+    @Test
+    public void restore_shouldCreateServicesAgainButKeepServicesThatWereSet() throws Exception {
+        ShadowApplication shadowApplication = shadowOf(Robolectric.application);
+        Object createdService = Robolectric.application.getSystemService(Context.LOCATION_SERVICE);
+        Object setService = new Object();
+        shadowApplication.setSystemService("custom", setService);
+        ShadowApplication.Snapshot snapshot = shadowApplication.snapshot();
+
+        shadowApplication.restore(snapshot);
+
+        assertThat(Robolectric.application.getSystemService(Context.LOCATION_SERVICE), not(sameInstance(createdService)));
+        assertThat(Robolectric.application.getSystemService("custom"), sameInstance(setService));
+    }
+
     private static class NullBinder implements IBinder {
         @Override
         public String getInterfaceDescriptor() throws RemoteException {
@@ -13,6 +13,12 @@ import org.junit.runner.RunWith;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static com.xtremelabs.robolectric.Robolectric.shadowOf;
 import static org.hamcrest.CoreMatchers.equalTo;
@@ -288,6 +294,38 @@ public abstract class DatabaseTestBase {
         assertThat(cursor.moveToNext(), equalTo(false));
     }
 
+    @Test
+    public void testUpdateWithWhereArgs() throws Exception {
+        addChuck();
+        addJulie();
+
+        ContentValues values = new ContentValues();
+        values.put("name", "O'Brien");
+        assertThat(database.update("table_name", values, "id=?", new String[]{"1235"}), equalTo(1));
+        values.put("name", "Buster");
+        assertThat(database.update("table_name", values, "name=?", new String[]{"O'Brien"}), equalTo(1));
+
+        Cursor cursor = database.query("table_name", new String[]{"id", "name"}, null, null, null, null, "id");
+        assertThat(cursor.moveToFirst(), equalTo(true));
+        assertIdAndName(cursor, 1234L, "Chuck");
+        assertThat(cursor.moveToNext(), equalTo(true));
+        assertIdAndName(cursor, 1235L, "Buster");
+    }
+
+    @Test
+    public void testInsertAndDeleteManyRows() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            ContentValues values = new ContentValues();
+            values.put("name", "name" + i);
+            values.put("big_int", i % 2);
+            assertThat(database.insert("table_name", null, values), not(equalTo(-1L)));
+        }
+
+        assertThat(database.delete("table_name", "big_int=?", new String[]{"1"}), equalTo(500));
+        assertThat(database.delete("table_name", "big_int=?", new String[]{"0"}), equalTo(500));
+        assertEmptyDatabase();
+    }
+
     @Test
     public void testDelete() throws Exception {
         addChuck();
@@ -457,6 +495,37 @@ public abstract class DatabaseTestBase {
         assertThat(database.isOpen(), equalTo(false));
     }
 
+    @Test
+    public void shouldKeepEachThreadsValuesInItsOwnInsertsWhenInsertingFromSeveralThreads() throws Exception {
+        database.delete("table_name", null, null);
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < 4; i++) {
+            final int thread = i;
+            futures.add(executorService.submit(new Runnable() {
+                @Override public void run() {
+                    for (int row = 0; row < 100; row++) {
+                        ContentValues values = new ContentValues();
+                        values.put("name", thread + ":" + row);
+                        values.put("big_int", thread * 1000 + row);
+                        database.insert("table_name", null, values);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(10, TimeUnit.SECONDS);
+        }
+        executorService.shutdown();
+
+        Cursor cursor = database.query("table_name", new String[]{"name", "big_int"}, null, null, null, null, null);
+        assertThat(cursor.getCount(), equalTo(400));
+        while (cursor.moveToNext()) {
+            String[] threadAndRow = cursor.getString(0).split(":");
+            assertThat(cursor.getLong(1), equalTo(Long.parseLong(threadAndRow[0]) * 1000 + Long.parseLong(threadAndRow[1])));
+        }
+    }
+
     @Test
     public void shouldStoreGreatBigHonkinIntegersCorrectly() throws Exception {
         database.execSQL("INSERT INTO table_name(big_int) VALUES(1234567890123456789);");
@@ -0,0 +1,59 @@
+package com.xtremelabs.robolectric.shadows;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class PreparedStatementCacheTest {
+    private Connection connection;
+    private PreparedStatementCache cache;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        connection = DriverManager.getConnection("jdbc:h2:mem:");
+        cache = new PreparedStatementCache(2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    public void shouldCloseTheLeastRecentlyUsedStatementWhenFull() throws Exception {
+        PreparedStatement first = cache.put("first", connection.prepareStatement("SELECT 1"));
+        PreparedStatement second = cache.put("second", connection.prepareStatement("SELECT 2"));
+        assertThat(cache.get("first"), sameInstance(first));
+
+        PreparedStatement third = cache.put("third", connection.prepareStatement("SELECT 3"));
+
+        assertThat(cache.size(), equalTo(2));
+        assertThat(cache.get("second"), nullValue());
+        assertThat(second.isClosed(), equalTo(true));
+        assertThat(cache.get("first"), sameInstance(first));
+        assertThat(cache.get("third"), sameInstance(third));
+        assertThat(first.isClosed(), equalTo(false));
+    }
+
+    @Test
+    public void shouldCloseEveryStatementOnClose() throws Exception {
+        PreparedStatement first = cache.put("first", connection.prepareStatement("SELECT 1"));
+        PreparedStatement second = cache.put("second", connection.prepareStatement("SELECT 2"));
+
+        cache.close();
+
+        assertThat(cache.size(), equalTo(0));
+        assertThat(first.isClosed(), equalTo(true));
+        assertThat(second.isClosed(), equalTo(true));
+    }
+}
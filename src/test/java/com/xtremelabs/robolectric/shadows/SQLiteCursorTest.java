@@ -324,6 +324,46 @@ public class SQLiteCursorTest {
         assertThat(cursor.isNull(5), equalTo(true));
     }
 
+    @Test
+    public void shouldReadRowsFromTheResultSetRatherThanRunningTheQueryAgain() throws Exception {
+        Statement statement = connection.createStatement(DatabaseConfig.getResultSetType(), ResultSet.CONCUR_READ_ONLY);
+        resultSet = statement.executeQuery("SELECT * FROM table_name WHERE id > 1234;");
+        cursor = new SQLiteCursor(null, null, null, null);
+        Robolectric.shadowOf(cursor).setResultSet(resultSet, "SELECT * FROM no_such_table;");
+
+        assertThat(cursor.getCount(), equalTo(2));
+        cursor.moveToLast();
+        assertThat(cursor.getString(1), equalTo("Chris"));
+        cursor.moveToPrevious();
+        assertThat(cursor.getString(1), equalTo("Julie"));
+    }
+
+    @Test
+    public void testForwardOnlyCursorReadsRowsAsItMovesForward() throws Exception {
+        setupForwardOnlyCursor();
+
+        assertThat(cursor.moveToFirst(), equalTo(true));
+        assertThat(cursor.getInt(0), equalTo(1234));
+        assertThat(cursor.moveToNext(), equalTo(true));
+        assertThat(cursor.getString(1), equalTo("Julie"));
+        assertThat(cursor.isNull(2), equalTo(true));
+
+        assertThat(cursor.getCount(), equalTo(3));
+        assertThat(cursor.getString(1), equalTo("Julie"));
+        assertThat(cursor.moveToNext(), equalTo(true));
+        assertThat(cursor.moveToNext(), equalTo(false));
+        assertThat(cursor.isAfterLast(), equalTo(true));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testForwardOnlyCursorCantMoveBackToARowItLeft() throws Exception {
+        setupForwardOnlyCursor();
+        cursor.moveToFirst();
+        cursor.moveToNext();
+
+        cursor.moveToPrevious();
+    }
+
     private void addPeople() throws Exception {
         String[] inserts = {
                 "INSERT INTO table_name (id, name, long_value, float_value, double_value) VALUES(1234, 'Chuck', 3463, 1.5, 3.14159);",
@@ -344,6 +384,13 @@ public class SQLiteCursorTest {
         Robolectric.shadowOf(cursor).setResultSet(resultSet, sql);
     }
 
+    private void setupForwardOnlyCursor() throws Exception {
+        Statement statement = connection.createStatement(DatabaseConfig.getResultSetType(), ResultSet.CONCUR_READ_ONLY);
+        resultSet = statement.executeQuery("SELECT * FROM table_name ORDER BY id;");
+        cursor = new SQLiteCursor(null, null, null, null);
+        Robolectric.shadowOf(cursor).setForwardOnlyResultSet(resultSet);
+    }
+
     private void setupEmptyResult() throws Exception {
         Statement statement = connection.createStatement();
         statement.executeUpdate("DELETE FROM table_name;");
@@ -0,0 +1,193 @@
+package com.xtremelabs.robolectric.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BackgroundThreadPoolTest {
+    private Transcript transcript;
+    private Scheduler uiScheduler;
+    private BackgroundThreadPool threadPool;
+
+    @Before
+    public void setUp() throws Exception {
+        transcript = new Transcript();
+        uiScheduler = new Scheduler();
+        threadPool = new BackgroundThreadPool(4, uiScheduler);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void shouldPostToTheUiThreadInTheOrderTasksWereSubmitted() throws Exception {
+        final CountDownLatch firstTaskMayFinish = new CountDownLatch(1);
+        threadPool.execute(new PostToUiThread("first") {
+            @Override public void run() {
+                try {
+                    firstTaskMayFinish.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                super.run();
+            }
+        });
+        Future<?> second = threadPool.submit(new PostToUiThread("second"));
+        second.get();
+        firstTaskMayFinish.countDown();
+
+        transcript.assertNoEventsSoFar();
+        assertThat(threadPool.finishTasks(), equalTo(true));
+        transcript.assertEventsSoFar("first", "second");
+        assertThat(threadPool.finishTasks(), equalTo(false));
+    }
+
+    @Test
+    public void shouldWaitForTasksSubmittedWhileFinishing() throws Exception {
+        threadPool.execute(new Runnable() {
+            @Override public void run() {
+                threadPool.execute(new PostToUiThread("submitted by a task"));
+            }
+        });
+        uiScheduler.pause();
+        threadPool.execute(new PostToUiThread("submitted by the test"));
+
+        threadPool.finishTasks();
+
+        uiScheduler.advanceBy(0);
+        transcript.assertEventsSoFar("submitted by the test", "submitted by a task");
+    }
+
+    @Test
+    public void shouldRunTasksOnSeveralThreads() throws Exception {
+        final CountDownLatch allRunning = new CountDownLatch(4);
+        List<Callable<Boolean>> callables = new ArrayList<Callable<Boolean>>();
+        for (int i = 0; i < 4; i++) {
+            callables.add(new Callable<Boolean>() {
+                @Override public Boolean call() throws Exception {
+                    allRunning.countDown();
+                    return allRunning.await(10, TimeUnit.SECONDS);
+                }
+            });
+        }
+
+        for (Future<Boolean> future : threadPool.invokeAll(callables)) {
+            assertTrue(future.get());
+        }
+    }
+
+    @Test
+    public void shouldRethrowExceptionsFromExecutedTasksOnFinishing() throws Exception {
+        threadPool.execute(new PostToUiThread("before"));
+        threadPool.execute(new Runnable() {
+            @Override public void run() {
+                throw new IllegalStateException("from the background");
+            }
+        });
+
+        try {
+            threadPool.finishTasks();
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("from the background"));
+        }
+        transcript.assertEventsSoFar("before");
+    }
+
+    @Test
+    public void shouldNotPostWhatACancelledTaskPostsWhileStillRunning() throws Exception {
+        final CountDownLatch cancelled = new CountDownLatch(1);
+        final CountDownLatch posted = new CountDownLatch(1);
+        Future<?> future = threadPool.submit(new Runnable() {
+            @Override public void run() {
+                try {
+                    cancelled.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                new PostToUiThread("from a cancelled task").run();
+                posted.countDown();
+            }
+        });
+        threadPool.execute(new PostToUiThread("from the next task"));
+
+        assertTrue(future.cancel(false));
+        cancelled.countDown();
+        assertTrue(posted.await(10, TimeUnit.SECONDS));
+
+        threadPool.finishTasks();
+        transcript.assertEventsSoFar("from the next task");
+    }
+
+    @Test
+    public void shouldNotHoldRunnablesPostedFromOtherThreads() throws Exception {
+        assertThat(BackgroundThreadPool.postToUiThread(new PostToUiThread("not held")), equalTo(false));
+    }
+
+    @Test
+    public void shouldHoldRunnablesPostedToTheUiSchedulerWithTheirDelayOrPlaceInTheQueue() throws Exception {
+        final Scheduler otherScheduler = new Scheduler();
+        otherScheduler.pause();
+        threadPool.submit(new Runnable() {
+            @Override public void run() {
+                BackgroundThreadPool.postToUiThread(uiScheduler, new AddToTranscript("delayed"), 100);
+                BackgroundThreadPool.postToUiThread(uiScheduler, new AddToTranscript("not delayed"), 0);
+                BackgroundThreadPool.postToUiThreadAtFrontOfQueue(uiScheduler, new AddToTranscript("at the front"));
+                if (!BackgroundThreadPool.postToUiThread(otherScheduler, new AddToTranscript("other scheduler"), 0)) {
+                    otherScheduler.post(new AddToTranscript("other scheduler"));
+                }
+            }
+        }).get();
+        uiScheduler.pause();
+
+        threadPool.finishTasks();
+
+        uiScheduler.advanceBy(0);
+        transcript.assertEventsSoFar("at the front", "not delayed");
+        uiScheduler.advanceBy(100);
+        transcript.assertEventsSoFar("delayed");
+        assertThat(otherScheduler.enqueuedTaskCount(), equalTo(1));
+    }
+
+    private class AddToTranscript implements Runnable {
+        private final String event;
+
+        AddToTranscript(String event) {
+            this.event = event;
+        }
+
+        @Override public void run() {
+            transcript.add(event);
+        }
+    }
+
+    private class PostToUiThread implements Runnable {
+        private final String event;
+
+        PostToUiThread(String event) {
+            this.event = event;
+        }
+
+        @Override public void run() {
+            BackgroundThreadPool.postToUiThread(new Runnable() {
+                @Override public void run() {
+                    transcript.add(event);
+                }
+            });
+        }
+    }
+}
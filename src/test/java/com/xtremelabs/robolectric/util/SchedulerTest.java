@@ -149,6 +149,69 @@ public class SchedulerTest {
         assertThat(runnable2.wasRun, equalTo(true));
     }
 
+    @Test
+    public void shouldRunRunnablesPostedForTheSameTimeInTheOrderTheyWerePosted() throws Exception {
+        scheduler.postDelayed(new AddToTranscript("one"), 1000);
+        scheduler.postDelayed(new AddToTranscript("two"), 500);
+        scheduler.postDelayed(new AddToTranscript("three"), 1000);
+        scheduler.postDelayed(new AddToTranscript("four"), 500);
+        scheduler.postAtFrontOfQueue(new AddToTranscript("five"));
+        scheduler.postAtFrontOfQueue(new AddToTranscript("six"));
+
+        scheduler.advanceBy(1000);
+        transcript.assertEventsSoFar("six", "five", "two", "four", "one", "three");
+    }
+
+    @Test
+    public void shouldOrderRunnablesPostedMoreThanIntegerMaxValueMillisApart() throws Exception {
+        scheduler.postDelayed(new AddToTranscript("later"), Integer.MAX_VALUE + 1000L);
+        scheduler.postDelayed(new AddToTranscript("sooner"), 1);
+        scheduler.postDelayed(new AddToTranscript("much later"), 3L * Integer.MAX_VALUE);
+
+        scheduler.runOneTask();
+        transcript.assertEventsSoFar("sooner");
+        scheduler.runOneTask();
+        transcript.assertEventsSoFar("later");
+        scheduler.runOneTask();
+        transcript.assertEventsSoFar("much later");
+    }
+
+    @Test
+    public void removeShouldLeaveOtherRunnablesInOrder() throws Exception {
+        Runnable removed = new AddToTranscript("removed");
+        for (int i = 0; i < 100; i++) {
+            scheduler.postDelayed(new AddToTranscript(String.valueOf(i)), 100 - i);
+            scheduler.postDelayed(removed, i);
+        }
+
+        scheduler.remove(removed);
+
+        assertThat(scheduler.enqueuedTaskCount(), equalTo(100));
+        for (int i = 99; i >= 0; i--) {
+            scheduler.runOneTask();
+            transcript.assertEventsSoFar(String.valueOf(i));
+        }
+    }
+
+    @Test
+    public void removeShouldOnlyRemovePostsThatHaveNotRunYet() throws Exception {
+        Runnable removed = new AddToTranscript("removed");
+        scheduler.postDelayed(removed, 30);
+        scheduler.postDelayed(removed, 10);
+        scheduler.postDelayed(new AddToTranscript("kept"), 20);
+        scheduler.postDelayed(removed, 40);
+
+        scheduler.runOneTask();
+        transcript.assertEventsSoFar("removed");
+        scheduler.remove(removed);
+
+        assertThat(scheduler.enqueuedTaskCount(), equalTo(1));
+        scheduler.advanceToLastPostedRunnable();
+        transcript.assertEventsSoFar("kept");
+        scheduler.postDelayed(removed, 10);
+        assertThat(scheduler.enqueuedTaskCount(), equalTo(1));
+    }
+
     private class AddToTranscript implements Runnable {
         private String event;
 
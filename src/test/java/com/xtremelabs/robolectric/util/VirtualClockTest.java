@@ -0,0 +1,108 @@
+package com.xtremelabs.robolectric.util;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class VirtualClockTest {
+    private Transcript transcript;
+    private Scheduler uiScheduler;
+    private Scheduler backgroundScheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        VirtualClock.reset();
+        uiScheduler = new Scheduler();
+        uiScheduler.pause();
+        backgroundScheduler = new Scheduler();
+        backgroundScheduler.pause();
+        transcript = new Transcript();
+    }
+
+    @Test
+    public void shouldRunTasksOnAllSchedulersInTimeOrder() throws Exception {
+        uiScheduler.postDelayed(new AddToTranscript("ui 300"), 300);
+        backgroundScheduler.postDelayed(new AddToTranscript("background 200"), 200);
+        uiScheduler.postDelayed(new AddToTranscript("ui 100"), 100);
+        backgroundScheduler.postDelayed(new AddToTranscript("background 400"), 400);
+
+        assertThat(VirtualClock.advanceBy(300), equalTo(true));
+        transcript.assertEventsSoFar("ui 100", "background 200", "ui 300");
+        assertThat(uiScheduler.getCurrentTime(), equalTo(300L));
+        assertThat(backgroundScheduler.getCurrentTime(), equalTo(300L));
+
+        assertThat(VirtualClock.advanceToNextPostedRunnable(), equalTo(true));
+        transcript.assertEventsSoFar("background 400");
+        assertThat(uiScheduler.getCurrentTime(), equalTo(400L));
+    }
+
+    @Test
+    public void shouldShowTasksTheSameTimeOnEveryScheduler() throws Exception {
+        backgroundScheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                transcript.add("background at " + backgroundScheduler.getCurrentTime());
+                uiScheduler.postDelayed(new AddToTranscript("ui posted from background"), 50);
+            }
+        }, 100);
+
+        VirtualClock.advanceBy(149);
+        transcript.assertEventsSoFar("background at 100");
+
+        VirtualClock.advanceBy(1);
+        transcript.assertEventsSoFar("ui posted from background");
+    }
+
+    @Test
+    public void shouldCompareSchedulersFromWhereTheirClocksStood() throws Exception {
+        backgroundScheduler.advanceClockTo(10000);
+        backgroundScheduler.postDelayed(new AddToTranscript("background"), 100);
+        uiScheduler.postDelayed(new AddToTranscript("ui"), 50);
+
+        VirtualClock.advanceBy(100);
+        transcript.assertEventsSoFar("ui", "background");
+        assertThat(backgroundScheduler.getCurrentTime(), equalTo(10100L));
+        assertThat(uiScheduler.getCurrentTime(), equalTo(100L));
+    }
+
+    @Test
+    public void shouldRunALongTimelineOfRepeatingTasks() throws Exception {
+        final int[] ticks = new int[1];
+        uiScheduler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                ticks[0]++;
+                uiScheduler.postDelayed(this, 1000);
+            }
+        }, 1000);
+
+        VirtualClock.advanceBy(24 * 60 * 60 * 1000);
+
+        assertThat(ticks[0], equalTo(24 * 60 * 60));
+    }
+
+    @Test
+    public void shouldForgetSchedulersAtReset() throws Exception {
+        uiScheduler.postDelayed(new AddToTranscript("left over"), 100);
+
+        VirtualClock.reset();
+
+        assertThat(VirtualClock.advanceBy(100), equalTo(false));
+        transcript.assertNoEventsSoFar();
+    }
+
+    private class AddToTranscript implements Runnable {
+        private String event;
+
+        public AddToTranscript(String event) {
+            this.event = event;
+        }
+
+        @Override
+        public void run() {
+            transcript.add(event);
+        }
+    }
+}